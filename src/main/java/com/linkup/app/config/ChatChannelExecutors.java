@@ -0,0 +1,175 @@
+package com.linkup.app.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Executors for the STOMP client inbound, client outbound and broker channels
+ * (app.chat.channels.{inbound,outbound,broker}.executor):
+ * <ul>
+ *     <li>pool: a fixed pool with a bounded queue. When the queue is full the task
+ *     runs on the submitting thread, which slows down whoever is producing (for the
+ *     inbound channel, reading from the client's socket).</li>
+ *     <li>virtual: one virtual thread per task, at most pool-size at once; further
+ *     submitters wait. Handlers blocked on the database then cost no platform threads.</li>
+ *     <li>direct: run on the submitting thread.</li>
+ * </ul>
+ * Each channel reports chat.channel.pending (submitted, not started), chat.channel.active,
+ * chat.channel.caller-runs, and the chat.channel.wait / chat.channel.run timers, tagged
+ * with the channel, so a backlog shows up before sessions stall.
+ */
+@Component
+public class ChatChannelExecutors {
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Value("${app.chat.channels.inbound.executor:pool}")
+    private String inboundExecutor;
+
+    @Value("${app.chat.channels.inbound.pool-size:32}")
+    private int inboundPoolSize;
+
+    @Value("${app.chat.channels.inbound.queue-capacity:10000}")
+    private int inboundQueueCapacity;
+
+    @Value("${app.chat.channels.outbound.executor:pool}")
+    private String outboundExecutor;
+
+    @Value("${app.chat.channels.outbound.pool-size:16}")
+    private int outboundPoolSize;
+
+    @Value("${app.chat.channels.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity;
+
+    @Value("${app.chat.channels.broker.executor:direct}")
+    private String brokerExecutor;
+
+    @Value("${app.chat.channels.broker.pool-size:8}")
+    private int brokerPoolSize;
+
+    @Value("${app.chat.channels.broker.queue-capacity:10000}")
+    private int brokerQueueCapacity;
+
+    public Executor inbound() {
+        return create("inbound", inboundExecutor, inboundPoolSize, inboundQueueCapacity);
+    }
+
+    public Executor outbound() {
+        return create("outbound", outboundExecutor, outboundPoolSize, outboundQueueCapacity);
+    }
+
+    public Executor broker() {
+        return create("broker", brokerExecutor, brokerPoolSize, brokerQueueCapacity);
+    }
+
+    Executor create(String channel, String type, int poolSize, int queueCapacity) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("app.chat.channels." + channel + ".pool-size must be at least 1");
+        }
+        ChannelStats stats = new ChannelStats(channel);
+
+        switch (type) {
+            case "pool" -> {
+                // Initialized and shut down by the container, as the channel's executor bean
+                ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+                executor.setThreadNamePrefix("chat-" + channel + "-");
+                executor.setCorePoolSize(poolSize);
+                executor.setMaxPoolSize(poolSize);
+                executor.setQueueCapacity(queueCapacity);
+                executor.setTaskDecorator(stats);
+                executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy() {
+                    @Override
+                    public void rejectedExecution(Runnable task, ThreadPoolExecutor pool) {
+                        stats.callerRuns.increment();
+                        super.rejectedExecution(task, pool);
+                    }
+                });
+                return executor;
+            }
+            case "virtual" -> {
+                SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("chat-" + channel + "-");
+                executor.setVirtualThreads(true);
+                executor.setConcurrencyLimit(poolSize);
+                executor.setTaskDecorator(stats);
+                return executor;
+            }
+            case "direct" -> {
+                return new SyncTaskExecutor();
+            }
+            default -> throw new IllegalArgumentException(
+                    "app.chat.channels." + channel + ".executor must be pool, virtual or direct, got " + type);
+        }
+    }
+
+    /**
+     * Counts tasks from submission to completion
+     */
+    private class ChannelStats implements TaskDecorator {
+
+        final AtomicInteger pending = new AtomicInteger();
+        final AtomicInteger active = new AtomicInteger();
+        final LongAdder callerRuns = new LongAdder();
+        Timer waitTimer;
+        Timer runTimer;
+
+        ChannelStats(String channel) {
+            meterRegistry.ifAvailable(registry -> {
+                Gauge.builder("chat.channel.pending", pending, AtomicInteger::get)
+                        .tag("channel", channel)
+                        .description("Tasks submitted to the channel executor and not started yet")
+                        .register(registry);
+                Gauge.builder("chat.channel.active", active, AtomicInteger::get)
+                        .tag("channel", channel)
+                        .register(registry);
+                FunctionCounter.builder("chat.channel.caller-runs", callerRuns, LongAdder::sum)
+                        .tag("channel", channel)
+                        .description("Tasks run by the submitting thread because the queue was full")
+                        .register(registry);
+                waitTimer = Timer.builder("chat.channel.wait")
+                        .tag("channel", channel)
+                        .description("Time from submission until a thread picked the task up")
+                        .register(registry);
+                runTimer = Timer.builder("chat.channel.run")
+                        .tag("channel", channel)
+                        .register(registry);
+            });
+        }
+
+        @Override
+        public Runnable decorate(Runnable task) {
+            long submitted = System.nanoTime();
+            pending.incrementAndGet();
+            return () -> {
+                long started = System.nanoTime();
+                pending.decrementAndGet();
+                active.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    active.decrementAndGet();
+                    if (waitTimer != null) {
+                        waitTimer.record(started - submitted, TimeUnit.NANOSECONDS);
+                        runTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                    }
+                }
+            };
+        }
+    }
+}
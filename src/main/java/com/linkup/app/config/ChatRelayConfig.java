@@ -0,0 +1,96 @@
+package com.linkup.app.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.linkup.app.service.ChatRelay;
+import com.linkup.app.service.ClusterChatRelay;
+import com.linkup.app.service.LocalChatRelay;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Picks how chat frames reach users connected to other nodes (app.chat.relay.type):
+ * <ul>
+ *     <li>local: single node, the in-memory broker only (default)</li>
+ *     <li>udp: nodes keep their in-memory brokers and forward frames to each other, see {@link ClusterChatRelay}</li>
+ *     <li>stomp-broker: all nodes share an external STOMP broker, see {@link WebSocketConfig}</li>
+ * </ul>
+ */
+@Configuration
+public class ChatRelayConfig {
+
+    @Bean
+    public ChatRelay chatRelay(@Value("${app.chat.relay.type:local}") String type,
+                               @Value("${app.chat.relay.bind-host:}") String bindHost,
+                               @Value("${app.chat.relay.port:47100}") int port,
+                               @Value("${app.chat.relay.advertise-host:}") String advertiseHost,
+                               @Value("${app.chat.relay.peers:}") String peers,
+                               @Value("${app.chat.relay.multicast-group:}") String multicastGroup,
+                               @Value("${app.chat.relay.multicast-interface:}") String multicastInterface,
+                               @Value("${app.chat.relay.announce-interval-ms:2000}") long announceIntervalMs,
+                               @Value("${app.chat.relay.secret:}") String secret,
+                               SimpMessagingTemplate messagingTemplate,
+                               ObjectMapper objectMapper) throws IOException {
+        if (!"udp".equals(type)) {
+            return new LocalChatRelay(messagingTemplate);
+        }
+
+        if (!StringUtils.hasText(secret)) {
+            throw new IllegalStateException("app.chat.relay.secret must be set for the udp relay");
+        }
+        // Not the wildcard address: the relay should only be reachable on the cluster network
+        String host = StringUtils.hasText(bindHost) ? bindHost : privateAddress();
+        ClusterChatRelay relay = new ClusterChatRelay(new InetSocketAddress(host, port), advertiseHost,
+                parseAddresses(peers),
+                StringUtils.hasText(multicastGroup) ? parseAddresses(multicastGroup).get(0) : null,
+                multicastInterface, announceIntervalMs, secret.getBytes(StandardCharsets.UTF_8),
+                messagingTemplate, objectMapper);
+        relay.start();
+        return relay;
+    }
+
+    /**
+     * @return This host's first private (site-local) IPv4 address, or loopback if it has none
+     */
+    static String privateAddress() throws SocketException {
+        for (NetworkInterface networkInterface : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+            if (!networkInterface.isUp() || networkInterface.isLoopback()) {
+                continue;
+            }
+            for (InetAddress address : Collections.list(networkInterface.getInetAddresses())) {
+                if (address instanceof Inet4Address && address.isSiteLocalAddress()) {
+                    return address.getHostAddress();
+                }
+            }
+        }
+        return InetAddress.getLoopbackAddress().getHostAddress();
+    }
+
+    private static List<InetSocketAddress> parseAddresses(String addresses) {
+        return Arrays.stream(addresses.split(","))
+                .map(String::trim)
+                .filter(StringUtils::hasText)
+                .map(address -> {
+                    int colon = address.lastIndexOf(':');
+                    if (colon < 0) {
+                        throw new IllegalArgumentException("Expected host:port, got " + address);
+                    }
+                    return new InetSocketAddress(address.substring(0, colon),
+                            Integer.parseInt(address.substring(colon + 1)));
+                })
+                .toList();
+    }
+}
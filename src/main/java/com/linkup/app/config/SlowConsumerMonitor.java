@@ -0,0 +1,64 @@
+package com.linkup.app.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reports sessions closed for not keeping up.
+ *
+ * Each session buffers what is sent to it while a previous send is in progress, so
+ * a slow client never blocks an outbound thread. Once its buffer passes
+ * app.chat.transport.send-buffer-size-limit, or a send has been stuck for
+ * app.chat.transport.send-time-limit-ms, that session alone is closed with
+ * SESSION_NOT_RELIABLE; the client reconnects and loads what it missed from history.
+ */
+@Component
+public class SlowConsumerMonitor implements WebSocketHandlerDecoratorFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(SlowConsumerMonitor.class);
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private final LongAdder closedSessions = new LongAdder();
+
+    @PostConstruct
+    public void registerMetrics() {
+        meterRegistry.ifAvailable(registry ->
+                FunctionCounter.builder("chat.sessions.slow-consumer", closedSessions, LongAdder::sum)
+                        .description("Sessions closed because they fell too far behind on outbound messages")
+                        .register(registry));
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                if (closeStatus.equalsCode(CloseStatus.SESSION_NOT_RELIABLE)) {
+                    closedSessions.increment();
+                    logger.warn("Closed slow chat session {} of {}", session.getId(),
+                            session.getPrincipal() != null ? session.getPrincipal().getName() : "anonymous");
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    public long getClosedSessions() {
+        return closedSessions.sum();
+    }
+}
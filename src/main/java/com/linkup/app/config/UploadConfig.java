@@ -0,0 +1,30 @@
+package com.linkup.app.config;
+
+import jakarta.servlet.MultipartConfigElement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+@Configuration
+public class UploadConfig {
+
+    /**
+     * Spool multipart uploads into a directory inside the upload dir, so that
+     * FileStorageService can rename parts into place instead of copying them
+     * (a rename only works within one filesystem).
+     */
+    @Bean
+    public MultipartConfigElement multipartConfigElement(MultipartProperties multipartProperties,
+                                                         @Value("${file.upload-dir}") String uploadDir) throws IOException {
+        Path spoolDir = Paths.get(uploadDir).toAbsolutePath().normalize().resolve(".multipart");
+        Files.createDirectories(spoolDir);
+        multipartProperties.setLocation(spoolDir.toString());
+        return multipartProperties.createMultipartConfig();
+    }
+}
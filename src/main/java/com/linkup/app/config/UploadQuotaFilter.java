@@ -0,0 +1,76 @@
+package com.linkup.app.config;
+
+import com.linkup.app.repository.UserRepository;
+import com.linkup.app.service.StorageQuotaService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Rejects uploads that would exceed the user's storage quota from the request's
+ * Content-Length, before the body is read. Multipart bodies are otherwise spooled
+ * in full before any controller runs. Registered after the security filter chain,
+ * so the authenticated user is known. Both paths still reserve the exact stored
+ * bytes when the content is recorded (PostService, ResumableUploadService).
+ */
+@Component
+public class UploadQuotaFilter extends OncePerRequestFilter {
+
+    private static final Set<String> UPLOAD_PATHS = Set.of("/api/posts", "/api/media/raw");
+
+    @Autowired
+    private StorageQuotaService storageQuotaService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || !UPLOAD_PATHS.contains(request.getServletPath());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long contentLength = request.getContentLengthLong();
+        String email = getUserEmail(SecurityContextHolder.getContext().getAuthentication());
+
+        if (contentLength > 0 && email != null) {
+            Long userId = userRepository.findByEmail(email).map(user -> user.getUserId()).orElse(null);
+            if (userId != null) {
+                try {
+                    storageQuotaService.checkQuota(userId, contentLength);
+                } catch (StorageQuotaService.QuotaExceededException e) {
+                    // Sent before the body is read; clients using Expect: 100-continue never send it
+                    response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, e.getMessage());
+                    return;
+                }
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private String getUserEmail(Authentication authentication) {
+        if (authentication == null) {
+            return null;
+        }
+        Object principal = authentication.getPrincipal();
+        if (principal instanceof OAuth2User oauth2User) {
+            return (String) oauth2User.getAttributes().get("email");
+        } else if (principal instanceof UserDetails userDetails) {
+            return userDetails.getUsername();
+        }
+        return null;
+    }
+}
@@ -1,11 +1,15 @@
 package com.linkup.app.config;
 
-import com.linkup.app.security.JwtTokenProvider;
-import com.linkup.app.security.CustomUserDetailsService;
+import com.linkup.app.security.ChatPrincipal;
+import com.linkup.app.security.JwtPrincipalCache;
+import com.linkup.app.service.PresenceRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.messaging.Message;
@@ -16,13 +20,17 @@ import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import java.util.List;
+import java.util.Optional;
 
 @Configuration
 @EnableWebSocketMessageBroker
@@ -32,28 +40,110 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     private static final Logger logger = LoggerFactory.getLogger(WebSocketConfig.class);
 
     @Autowired
-    private JwtTokenProvider tokenProvider;
+    private JwtPrincipalCache principalCache;
+
+    // Lazy: the registry depends on beans this configuration creates
+    @Lazy
+    @Autowired
+    private PresenceRegistry presenceRegistry;
 
+    @Lazy
     @Autowired
-    private CustomUserDetailsService userDetailsService;
+    @Qualifier("messageBrokerTaskScheduler")
+    private TaskScheduler messageBrokerTaskScheduler;
+
+    @Value("${app.chat.heartbeat-ms:10000}")
+    private long heartbeatMs;
+
+    @Autowired
+    private ChatChannelExecutors channelExecutors;
+
+    @Autowired
+    private SlowConsumerMonitor slowConsumerMonitor;
+
+    // Keeps each session's frames in order even when the channels run on several threads
+    @Value("${app.chat.channels.preserve-order:true}")
+    private boolean preserveOrder;
+
+    @Value("${app.chat.transport.message-size-limit:64KB}")
+    private DataSize messageSizeLimit;
+
+    @Value("${app.chat.transport.send-buffer-size-limit:512KB}")
+    private DataSize sendBufferSizeLimit;
+
+    @Value("${app.chat.transport.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        registry.setPreserveReceiveOrder(preserveOrder);
         registry
                 .addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
     }
 
+    @Value("${app.chat.relay.type:local}")
+    private String relayType;
+
+    @Value("${app.chat.relay.broker.host:localhost}")
+    private String brokerHost;
+
+    @Value("${app.chat.relay.broker.port:61613}")
+    private int brokerPort;
+
+    @Value("${app.chat.relay.broker.login:guest}")
+    private String brokerLogin;
+
+    @Value("${app.chat.relay.broker.passcode:guest}")
+    private String brokerPasscode;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
-        registry.enableSimpleBroker("/topic", "/queue", "/user");
+        if ("stomp-broker".equals(relayType)) {
+            // Every node relays to one external STOMP broker (RabbitMQ, ActiveMQ). Each node
+            // shares its local users on the registry topic, and user destinations it cannot
+            // resolve are broadcast so that the node holding the session delivers them.
+            registry.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(brokerHost)
+                    .setRelayPort(brokerPort)
+                    .setClientLogin(brokerLogin)
+                    .setClientPasscode(brokerPasscode)
+                    .setSystemLogin(brokerLogin)
+                    .setSystemPasscode(brokerPasscode)
+                    .setSystemHeartbeatSendInterval(heartbeatMs)
+                    .setSystemHeartbeatReceiveInterval(heartbeatMs)
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                    .setUserRegistryBroadcast("/topic/simp-user-registry");
+        } else {
+            // Heartbeats both ways let dead connections be noticed without a disconnect
+            registry.enableSimpleBroker("/topic", "/queue", "/user")
+                    .setHeartbeatValue(new long[]{heartbeatMs, heartbeatMs})
+                    .setTaskScheduler(messageBrokerTaskScheduler);
+        }
+        registry.configureBrokerChannel().executor(channelExecutors.broker());
+        registry.setPreservePublishOrder(preserveOrder);
         registry.setApplicationDestinationPrefixes("/app");
         registry.setUserDestinationPrefix("/user");
     }
 
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration
+                .setMessageSizeLimit((int) messageSizeLimit.toBytes())
+                .setSendBufferSizeLimit((int) sendBufferSizeLimit.toBytes())
+                .setSendTimeLimit(sendTimeLimitMs)
+                .addDecoratorFactory(slowConsumerMonitor);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.executor(channelExecutors.outbound());
+    }
+
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.executor(channelExecutors.inbound());
         registration.interceptors(new ChannelInterceptor() {
             @Override
             public Message<?> preSend(Message<?> message, MessageChannel channel) {
@@ -62,20 +152,17 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
                 if (StompCommand.CONNECT.equals(accessor.getCommand())) {
                     String token = extractToken(accessor);
-                    System.out.println(token);
                     if (StringUtils.hasText(token)) {
                         try {
-                            if (tokenProvider.validateToken(token)) {
-                                String username = tokenProvider.getUsernameFromJWT(token);
-                                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-
+                            Optional<ChatPrincipal> principal = principalCache.authenticate(token);
+                            if (principal.isPresent()) {
                                 UsernamePasswordAuthenticationToken auth =
-                                        new UsernamePasswordAuthenticationToken(
-                                                userDetails, null, userDetails.getAuthorities());
+                                        new UsernamePasswordAuthenticationToken(principal.get(), null, List.of());
 
-                                SecurityContextHolder.getContext().setAuthentication(auth);
+                                // Only on the session: the security context belongs to a pooled
+                                // inbound thread that goes on to serve other sessions
                                 accessor.setUser(auth);
-                                logger.debug("WebSocket CONNECT authenticated for user {}", username);
+                                logger.debug("WebSocket CONNECT authenticated for user {}", principal.get().userId());
                             } else {
                                 logger.warn("WebSocket CONNECT: JWT did not validate");
                             }
@@ -90,7 +177,7 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 }
                 return message;
             }
-        });
+        }, presenceRegistry);
     }
 
     private String extractToken(StompHeaderAccessor accessor) {
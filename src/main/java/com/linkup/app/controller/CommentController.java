@@ -1,5 +1,6 @@
 package com.linkup.app.controller;
 
+import com.linkup.app.dto.CommentPageResponse;
 import com.linkup.app.dto.CommentRequest;
 import com.linkup.app.dto.CommentResponse;
 import com.linkup.app.dto.UpdateCommentRequest;
@@ -14,6 +15,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -62,9 +64,21 @@ public class CommentController {
 
 
     @GetMapping("/post/{postId}")
-    public ResponseEntity<?> getPostComments(@PathVariable Long postId) {
-        List<CommentResponse> comments = commentService.getPostComments(postId);
-        return ResponseEntity.ok(comments);
+    public ResponseEntity<?> getPostComments(@PathVariable Long postId,
+                                             @RequestParam(value = "before", required = false) String before,
+                                             @RequestParam(value = "limit", required = false) Integer limit) {
+        // Without paging parameters keep returning the plain list for existing clients
+        if (before == null && limit == null) {
+            List<CommentResponse> comments = commentService.getPostComments(postId);
+            return ResponseEntity.ok(comments);
+        }
+
+        try {
+            CommentPageResponse page = commentService.getPostCommentsPage(postId, before, limit);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ResponseEntity.badRequest().body("Invalid cursor");
+        }
     }
 
     @GetMapping("/{commentId}")
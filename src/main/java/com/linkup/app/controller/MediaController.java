@@ -0,0 +1,77 @@
+package com.linkup.app.controller;
+
+import com.linkup.app.model.Content;
+import com.linkup.app.model.User;
+import com.linkup.app.repository.UserRepository;
+import com.linkup.app.service.ResumableUploadService;
+import com.linkup.app.service.StorageQuotaService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+import java.util.logging.Logger;
+
+@RestController
+@RequestMapping("/api/media")
+public class MediaController {
+    private static final Logger logger = Logger.getLogger(MediaController.class.getName());
+
+    @Autowired
+    private ResumableUploadService resumableUploadService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${spring.servlet.multipart.max-file-size}")
+    private DataSize maxFileSize;
+
+    /**
+     * Raw upload: the request body is the file itself (Content-Type is its MIME type),
+     * streamed into one staging file without multipart parsing, and attached to
+     * one of the caller's posts. Its stored size is charged to the caller's quota.
+     */
+    @PostMapping("/raw")
+    public ResponseEntity<?> uploadRaw(@AuthenticationPrincipal Object principal,
+                                       @RequestParam Long postId,
+                                       HttpServletRequest request,
+                                       @RequestHeader(value = "X-File-Name", required = false) String fileName) {
+        try {
+            Content content = resumableUploadService.storeRaw(getUser(principal).getUserId(), postId,
+                    request.getInputStream(), request.getContentType(), fileName, maxFileSize.toBytes());
+            return ResponseEntity.status(HttpStatus.CREATED).body(content);
+        } catch (IOException e) {
+            logger.warning("Raw upload failed: " + e.getMessage());
+            return ResponseEntity.badRequest().body("Failed to store file: " + e.getMessage());
+        } catch (StorageQuotaService.QuotaExceededException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    private User getUser(Object principal) {
+        String email;
+        if (principal instanceof OAuth2User oauth2User) {
+            email = (String) oauth2User.getAttributes().get("email");
+        } else if (principal instanceof UserDetails userDetails) {
+            email = userDetails.getUsername();
+        } else {
+            throw new SecurityException("Unauthorized: Invalid authentication");
+        }
+        return userRepository.findByEmail(email)
+                .orElseThrow(() -> new RuntimeException("User not found for email: " + email));
+    }
+}
@@ -0,0 +1,341 @@
+package com.linkup.app.controller;
+
+import com.linkup.app.service.HotMediaCache;
+import com.linkup.app.service.ImageDerivativeService;
+import com.linkup.app.util.MediaStorageLayout;
+import com.linkup.app.util.MediaUrls;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Serves uploaded media under /media/** (fingerprinted, immutable) and /uploads/**
+ * (legacy names, short caching).
+ *
+ * Supports single and multi byte-range requests (206 / 416) so video players can
+ * seek, and strong ETags and Last-Modified with 304 answered from file attributes
+ * alone. Requested ranges are sorted and merged; a Range header that does not
+ * parse, asks for more bytes than the file holds, or has too many ranges is ignored
+ * and the whole file sent, so one request cannot make the server send a file many
+ * times over.
+ *
+ * Whole files and single ranges are handed to Tomcat's sendfile when the connector
+ * supports it, which is zero-copy. Otherwise, and for multipart range bodies, the
+ * file is copied with FileChannel.transferTo into the response stream; the stream
+ * is not a file or socket channel, so that copy goes through a heap buffer.
+ * Small, frequently requested files are served from the off-heap HotMediaCache.
+ */
+@Controller
+public class MediaServingController {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    // More distinct ranges than a seeking player asks for
+    private static final int MAX_RANGES = 16;
+
+    private static final Set<String> VARIANTS = Set.of(ImageDerivativeService.THUMBNAIL, ImageDerivativeService.MEDIUM);
+
+    @Autowired
+    private MediaStorageLayout storageLayout;
+
+    @Autowired
+    private HotMediaCache hotMediaCache;
+
+    @Value("${file.serving.cache-seconds:3600}")
+    private long cacheSeconds;
+
+    @GetMapping("/uploads/{fileName:.+}")
+    public void serve(@PathVariable String fileName,
+                      @RequestParam(value = "variant", required = false) String variant,
+                      HttpServletRequest request,
+                      HttpServletResponse response) throws IOException {
+        Path file = locate(fileName, variant != null && VARIANTS.contains(variant) ? variant : null);
+        serveFile(file, "max-age=" + cacheSeconds, request, response);
+    }
+
+    /**
+     * Fingerprinted URLs (see MediaUrls): the name carries the content hash, so the
+     * response can be cached for a year without revalidation. Only exact names are
+     * served here; there is no fallback from a missing variant to its original, which
+     * would otherwise be pinned in caches under the variant's URL.
+     */
+    @GetMapping(MediaUrls.FINGERPRINTED_PREFIX + "{fileName:.+}")
+    public void serveFingerprinted(@PathVariable String fileName,
+                                   HttpServletRequest request,
+                                   HttpServletResponse response) throws IOException {
+        Path file = MediaUrls.isFingerprinted(fileName) ? locate(fileName, null) : null;
+        serveFile(file, IMMUTABLE_CACHE_CONTROL, request, response);
+    }
+
+    private Path locate(String fileName, String variant) {
+        try {
+            return storageLayout.locate(fileName, variant);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void serveFile(Path file, String cacheControl,
+                           HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (file == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long length = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis() / 1000 * 1000;
+        String etag = etag(file.getFileName().toString(), length, lastModified);
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        String contentType = MediaTypeFactory.getMediaType(file.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+        boolean head = "HEAD".equals(request.getMethod());
+
+        List<HttpRange> ranges = List.of();
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && isIfRangeSatisfied(request, etag, lastModified)) {
+            ranges = parseRanges(rangeHeader);
+            List<HttpRange> satisfiable = ranges.stream()
+                    .filter(range -> isSatisfiable(range, length))
+                    .toList();
+            // 416 only when the header parsed and none of its ranges overlap the file
+            if (!ranges.isEmpty() && satisfiable.isEmpty()) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            ranges = coalesce(satisfiable, length);
+        }
+
+        if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType);
+            response.setContentLengthLong(length);
+            if (!head) {
+                sendBody(request, response, file, 0, length, length, lastModified);
+            }
+        } else if (ranges.size() == 1) {
+            long start = ranges.get(0).getRangeStart(length);
+            long end = ranges.get(0).getRangeEnd(length);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            response.setContentLengthLong(end - start + 1);
+            if (!head) {
+                sendBody(request, response, file, start, end + 1, length, lastModified);
+            }
+        } else {
+            sendMultipartRanges(response, file, ranges, length, contentType, head);
+        }
+    }
+
+    /**
+     * Malformed headers, other units and too many ranges are ignored (RFC 9110 14.2),
+     * which serves the whole file
+     */
+    private static List<HttpRange> parseRanges(String rangeHeader) {
+        try {
+            return HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+    }
+
+    private static boolean isSatisfiable(HttpRange range, long length) {
+        try {
+            // Throws for ranges that start beyond the end of the file; a zero-length
+            // suffix ends before it starts
+            return range.getRangeStart(length) <= range.getRangeEnd(length);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Sort and merge overlapping or adjacent ranges, so no byte is sent twice.
+     * Returns no ranges, which sends the whole file, when the request adds up to more
+     * than the file or has more than MAX_RANGES parts left after merging.
+     */
+    private static List<HttpRange> coalesce(List<HttpRange> ranges, long length) {
+        List<long[]> bounds = new ArrayList<>();
+        long requested = 0;
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(length);
+            long end = range.getRangeEnd(length);
+            requested += end - start + 1;
+            bounds.add(new long[]{start, end});
+        }
+        if (bounds.isEmpty() || requested > length) {
+            return List.of();
+        }
+
+        bounds.sort(Comparator.comparingLong(bound -> bound[0]));
+        List<HttpRange> merged = new ArrayList<>();
+        long start = bounds.get(0)[0];
+        long end = bounds.get(0)[1];
+        for (long[] bound : bounds.subList(1, bounds.size())) {
+            if (bound[0] <= end + 1) {
+                end = Math.max(end, bound[1]);
+            } else {
+                merged.add(HttpRange.createByteRange(start, end));
+                start = bound[0];
+                end = bound[1];
+            }
+        }
+        merged.add(HttpRange.createByteRange(start, end));
+        return merged.size() > MAX_RANGES ? List.of() : merged;
+    }
+
+    private void sendMultipartRanges(HttpServletResponse response, Path file, List<HttpRange> ranges,
+                                     long length, String contentType, boolean head) throws IOException {
+        String boundary = UUID.randomUUID().toString();
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        if (head) {
+            return;
+        }
+
+        OutputStream out = response.getOutputStream();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            for (HttpRange range : ranges) {
+                long start = range.getRangeStart(length);
+                long end = range.getRangeEnd(length);
+                out.write(("\r\n--" + boundary + "\r\n" +
+                        "Content-Type: " + contentType + "\r\n" +
+                        "Content-Range: bytes " + start + "-" + end + "/" + length + "\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII));
+                transfer(channel, target, start, end + 1);
+            }
+            out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    private void sendBody(HttpServletRequest request, HttpServletResponse response, Path file,
+                          long start, long end, long length, long lastModified) throws IOException {
+        // Small hot files are written straight from off-heap memory
+        ByteBuffer cached = hotMediaCache.get(file.getFileName().toString(), file, length, lastModified);
+        if (cached != null) {
+            cached.position((int) start).limit((int) end);
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            while (cached.hasRemaining()) {
+                target.write(cached);
+            }
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat streams the file to the socket itself after we return (sendfile)
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            transfer(channel, Channels.newChannel(response.getOutputStream()), start, end);
+        }
+    }
+
+    private void transfer(FileChannel channel, WritableByteChannel target, long start, long end) throws IOException {
+        long position = start;
+        while (position < end) {
+            long sent = channel.transferTo(position, end - position, target);
+            if (sent <= 0) {
+                break;
+            }
+            position += sent;
+        }
+    }
+
+    /**
+     * Content-addressed names already identify the bytes, so the name is the tag;
+     * other files fall back to size and modification time.
+     */
+    private String etag(String storedName, long length, long lastModified) {
+        int dotIndex = storedName.lastIndexOf('.');
+        String base = dotIndex > 0 ? storedName.substring(0, dotIndex) : storedName;
+        if (MediaUrls.isFingerprinted(base)) {
+            return "\"" + base + "\"";
+        }
+        return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    private boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return matchesAny(ifNoneMatch, etag);
+        }
+        long ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince != -1 && lastModified <= ifModifiedSince;
+    }
+
+    private boolean isIfRangeSatisfied(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) == lastModified;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private boolean matchesAny(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
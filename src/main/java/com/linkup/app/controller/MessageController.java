@@ -1,23 +1,32 @@
 package com.linkup.app.controller;
 
 import com.linkup.app.dto.ChatNotification;
+import com.linkup.app.dto.ConversationSummary;
+import com.linkup.app.dto.MessagePageResponse;
 import com.linkup.app.dto.MessageRequest;
 import com.linkup.app.dto.MessageResponse;
+import com.linkup.app.dto.ReceiptRequest;
 import com.linkup.app.model.Message;
 import com.linkup.app.model.User;
 import com.linkup.app.repository.UserRepository;
+import com.linkup.app.security.ChatPrincipal;
+import com.linkup.app.service.ChatRelay;
+import com.linkup.app.service.MessageReceiptService;
 import com.linkup.app.service.MessageService;
+import com.linkup.app.service.OfflineSyncQueue;
+import com.linkup.app.service.PresenceRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
 import java.security.Principal;
@@ -30,11 +39,17 @@ public class MessageController {
     private static final Logger logger = LoggerFactory.getLogger(MessageController.class);
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private ChatRelay chatRelay;
     @Autowired
     private MessageService messageService;
     @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private MessageReceiptService messageReceiptService;
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+    @Autowired
+    private OfflineSyncQueue offlineSyncQueue;
 
     @MessageMapping("/chat")
     public void processMessage(
@@ -45,16 +60,16 @@ public class MessageController {
             logger.error("Unauthenticated WebSocket user tried to send a message.");
             return;
         }
-        String email = principal.getName();
-        Optional<User> senderOpt = userRepository.findByEmail(email);
-        if (senderOpt.isEmpty()) {
-            logger.error("Sender not found: {}", email);
+        ChatPrincipal chatPrincipal = chatPrincipal(principal);
+        if (chatPrincipal == null) {
+            logger.error("Unexpected WebSocket principal: {}", principal.getName());
             return;
         }
 
-        User sender = senderOpt.get();
+        // Resolved once on CONNECT, no lookup per frame
+        User sender = chatPrincipal.toUser();
         Message saved = messageService.saveMessage(
-                sender.getUserId(),
+                sender,
                 messageRequest.getReceiverId(),
                 messageRequest.getContent()
         );
@@ -69,10 +84,20 @@ public class MessageController {
                 saved.getTimestamp()
         );
 
-        // send to recipient’s queues
-        String dest = saved.getReceiver().getUserId().toString();
-        messagingTemplate.convertAndSendToUser(dest, "/queue/messages", resp);
-        messagingTemplate.convertAndSendToUser(
+        // send to recipient’s queues, or keep it for their next sync if they are offline
+        Long receiverId = saved.getReceiver().getUserId();
+        String dest = receiverId.toString();
+        if (!presenceRegistry.isOnline(receiverId)) {
+            offlineSyncQueue.record(receiverId, sender.getUserId(), saved.getMessageId());
+            // A receiver who connected since the check may have drained the queue before
+            // the record landed; they get it live as well (a later sync only repeats it)
+            if (!presenceRegistry.isOnline(receiverId)) {
+                logger.info("Message stored from {} to offline user {}", sender.getUserId(), messageRequest.getReceiverId());
+                return;
+            }
+        }
+        chatRelay.sendToUser(dest, "/queue/messages", resp);
+        chatRelay.sendToUser(
                 dest,
                 "/queue/notification",
                 new ChatNotification(
@@ -98,21 +123,69 @@ public class MessageController {
         }
     }
 
+    @MessageMapping("/message/delivered-up-to")
+    public void markDeliveredUpTo(@Payload ReceiptRequest receipt, Principal principal) {
+        acknowledge(receipt, principal, Message.MessageStatus.DELIVERED);
+    }
+
+    @MessageMapping("/message/read-up-to")
+    public void markReadUpTo(@Payload ReceiptRequest receipt, Principal principal) {
+        acknowledge(receipt, principal, Message.MessageStatus.READ);
+    }
+
+    private void acknowledge(ReceiptRequest receipt, Principal principal, Message.MessageStatus status) {
+        if (principal == null) {
+            return;
+        }
+        ChatPrincipal reader = chatPrincipal(principal);
+        if (reader == null) {
+            logger.error("Unexpected WebSocket principal: {}", principal.getName());
+            return;
+        }
+        try {
+            messageReceiptService.acknowledge(reader.userId(), receipt.getUserId(),
+                    receipt.getUpToMessageId(), status);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Ignoring receipt from {}: {}", principal.getName(), e.getMessage());
+        }
+    }
+
+    private static ChatPrincipal chatPrincipal(Principal principal) {
+        if (principal instanceof Authentication auth && auth.getPrincipal() instanceof ChatPrincipal chatPrincipal) {
+            return chatPrincipal;
+        }
+        return null;
+    }
+
     // REST endpoints for message history
     @GetMapping("/api/messages/{userId}")
     @ResponseBody
-    public List<MessageResponse> getConversation(@PathVariable Long userId) {
+    public ResponseEntity<?> getConversation(@PathVariable Long userId,
+                                             @RequestParam(value = "before", required = false) Long before,
+                                             @RequestParam(value = "after", required = false) Long after,
+                                             @RequestParam(value = "limit", required = false) Integer limit) {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         String email = auth.getName();
 
         Optional<User> currentUserOpt = userRepository.findByEmail(email);
 
-        if (currentUserOpt.isPresent()) {
-            User currentUser = currentUserOpt.get();
-            return messageService.getConversation(currentUser.getUserId(), userId);
+        if (currentUserOpt.isEmpty()) {
+            return ResponseEntity.ok(List.of()); // Empty list if user not found
         }
+        User currentUser = currentUserOpt.get();
 
-        return List.of(); // Empty list if user not found
+        // Without paging parameters keep returning the plain list for existing clients
+        if (before == null && after == null && limit == null) {
+            return ResponseEntity.ok(messageService.getConversation(currentUser.getUserId(), userId));
+        }
+
+        try {
+            MessagePageResponse page = messageService.getConversationPage(
+                    currentUser.getUserId(), userId, before, after, limit);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @GetMapping("/api/messages/users")
@@ -130,4 +203,30 @@ public class MessageController {
 
         return List.of(); // Empty list if user not found
     }
-}
\ No newline at end of file
+
+    @GetMapping("/api/messages/inbox")
+    @ResponseBody
+    public List<ConversationSummary> getInbox() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        String email = auth.getName();
+
+        Optional<User> currentUserOpt = userRepository.findByEmail(email);
+
+        if (currentUserOpt.isPresent()) {
+            List<ConversationSummary> inbox = messageService.getInbox(currentUserOpt.get().getUserId());
+            inbox.forEach(c -> c.setOnline(presenceRegistry.isOnline(c.getOtherUserId())));
+            return inbox;
+        }
+
+        return List.of(); // Empty list if user not found
+    }
+
+    @GetMapping("/api/messages/presence")
+    @ResponseBody
+    public ResponseEntity<?> getPresence(@RequestParam("userIds") List<Long> userIds) {
+        if (userIds.size() > 500) {
+            return ResponseEntity.badRequest().body("At most 500 users per request");
+        }
+        return ResponseEntity.ok(presenceRegistry.getOnlineStatus(userIds));
+    }
+}
@@ -1,11 +1,14 @@
 package com.linkup.app.controller;
 
+import com.linkup.app.dto.FeedPageResponse;
 import com.linkup.app.dto.PostResponse;
 import com.linkup.app.dto.UpdatePostRequest;
 import com.linkup.app.model.Post;
 import com.linkup.app.model.User;
 import com.linkup.app.repository.UserRepository;
+import com.linkup.app.service.FeedService;
 import com.linkup.app.service.PostService;
+import com.linkup.app.service.StorageQuotaService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -27,6 +30,9 @@ public class PostController {
     @Autowired
     private PostService postService;
 
+    @Autowired
+    private FeedService feedService;
+
     @Autowired
     private UserRepository userRepository;
 
@@ -78,11 +84,14 @@ public class PostController {
             logger.info("Media File Size " + mediaFiles.size());
 
             // Create post with better error catching
-            Post post = postService.createPost(user.getUserId(), description, mediaFiles);
+            PostResponse post = postService.createPost(user.getUserId(), description, mediaFiles);
             logger.info("Post created successfully with ID: " + post.getPostId());
 
             return ResponseEntity.status(HttpStatus.CREATED).body(post);
 
+        } catch (StorageQuotaService.QuotaExceededException e) {
+            logger.warning("Post rejected: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
         } catch (IOException e) {
             logger.severe("IOException during post creation: " + e.getMessage());
             e.printStackTrace();
@@ -109,6 +118,24 @@ public class PostController {
         }
     }
 
+    @GetMapping("/feed")
+    public ResponseEntity<?> getFeed(
+            @RequestParam(value = "before", required = false) String before,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        try {
+            FeedPageResponse page = feedService.getFeed(before, limit);
+            logger.info("Retrieved feed page of " + page.getPosts().size() + " posts");
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            logger.severe("Error retrieving feed: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error retrieving feed: " + e.getMessage());
+        }
+    }
+
     @GetMapping("/{postId}")
     public ResponseEntity<?> getPostById(@PathVariable Long postId) {
         try {
@@ -0,0 +1,161 @@
+package com.linkup.app.controller;
+
+import com.linkup.app.dto.UploadSessionRequest;
+import com.linkup.app.dto.UploadSessionResponse;
+import com.linkup.app.model.Content;
+import com.linkup.app.model.UploadSession;
+import com.linkup.app.model.User;
+import com.linkup.app.repository.UserRepository;
+import com.linkup.app.service.ResumableUploadService;
+import com.linkup.app.service.StorageQuotaService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.NoSuchElementException;
+import java.util.logging.Logger;
+
+/**
+ * Resumable upload protocol:
+ * POST /api/uploads creates a session, PATCH /api/uploads/{id} with an Upload-Offset
+ * header appends the request body as a chunk, GET or HEAD /api/uploads/{id} reports
+ * the current offset after a dropped connection, and POST /api/uploads/{id}/complete
+ * attaches the finished file to a post.
+ */
+@RestController
+@RequestMapping("/api/uploads")
+public class UploadController {
+    private static final Logger logger = Logger.getLogger(UploadController.class.getName());
+
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+    private static final String UPLOAD_LENGTH = "Upload-Length";
+
+    @Autowired
+    private ResumableUploadService resumableUploadService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @PostMapping
+    public ResponseEntity<?> createUpload(@AuthenticationPrincipal Object principal,
+                                          @RequestBody UploadSessionRequest request) {
+        try {
+            User user = getUser(principal);
+            UploadSession session = resumableUploadService.createSession(
+                    user.getUserId(), request.getFileName(), request.getContentType(), request.getSize());
+            return ResponseEntity.created(URI.create("/api/uploads/" + session.getId()))
+                    .header(UPLOAD_OFFSET, "0")
+                    .body(toResponse(session));
+        } catch (StorageQuotaService.QuotaExceededException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            logger.severe("Failed to create upload session: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE).body("Failed to create upload: " + e.getMessage());
+        } catch (Exception e) {
+            logger.severe("Error creating upload session: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<?> getUpload(@AuthenticationPrincipal Object principal, @PathVariable String uploadId) {
+        try {
+            UploadSession session = resumableUploadService.getSession(uploadId, getUser(principal).getUserId());
+            return ResponseEntity.ok()
+                    .header(UPLOAD_OFFSET, String.valueOf(session.getReceivedBytes()))
+                    .header(UPLOAD_LENGTH, String.valueOf(session.getTotalSize()))
+                    .header("Cache-Control", "no-store")
+                    .body(toResponse(session));
+        } catch (Exception e) {
+            return errorResponse(e);
+        }
+    }
+
+    @PatchMapping("/{uploadId}")
+    public ResponseEntity<?> appendChunk(@AuthenticationPrincipal Object principal,
+                                         @PathVariable String uploadId,
+                                         @RequestHeader(UPLOAD_OFFSET) long offset,
+                                         HttpServletRequest request) {
+        try {
+            long newOffset = resumableUploadService.appendChunk(
+                    uploadId, getUser(principal).getUserId(), offset, request.getInputStream());
+            return ResponseEntity.noContent().header(UPLOAD_OFFSET, String.valueOf(newOffset)).build();
+        } catch (IOException e) {
+            // Usually the client went away mid-chunk; the offset was not advanced
+            logger.warning("Chunk for upload " + uploadId + " failed: " + e.getMessage());
+            return ResponseEntity.badRequest().body("Failed to write chunk: " + e.getMessage());
+        } catch (Exception e) {
+            return errorResponse(e);
+        }
+    }
+
+    @PostMapping("/{uploadId}/complete")
+    public ResponseEntity<?> completeUpload(@AuthenticationPrincipal Object principal,
+                                            @PathVariable String uploadId,
+                                            @RequestParam Long postId) {
+        try {
+            Content content = resumableUploadService.complete(uploadId, getUser(principal).getUserId(), postId);
+            return ResponseEntity.status(HttpStatus.CREATED).body(content);
+        } catch (IOException e) {
+            logger.severe("Failed to store upload " + uploadId + ": " + e.getMessage());
+            return ResponseEntity.badRequest().body("Failed to store file: " + e.getMessage());
+        } catch (Exception e) {
+            return errorResponse(e);
+        }
+    }
+
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<?> cancelUpload(@AuthenticationPrincipal Object principal, @PathVariable String uploadId) {
+        try {
+            resumableUploadService.cancel(uploadId, getUser(principal).getUserId());
+            return ResponseEntity.noContent().build();
+        } catch (Exception e) {
+            return errorResponse(e);
+        }
+    }
+
+    private ResponseEntity<?> errorResponse(Exception e) {
+        if (e instanceof StorageQuotaService.QuotaExceededException) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
+        } else if (e instanceof NoSuchElementException) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } else if (e instanceof SecurityException) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        } else if (e instanceof IllegalStateException) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } else if (e instanceof IllegalArgumentException) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        logger.severe("Upload request failed: " + e.getMessage());
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred: " + e.getMessage());
+    }
+
+    private UploadSessionResponse toResponse(UploadSession session) {
+        return new UploadSessionResponse(session.getId(), session.getReceivedBytes(),
+                session.getTotalSize(), session.getExpiresAt());
+    }
+
+    private User getUser(Object principal) {
+        String email;
+        if (principal instanceof OAuth2User oauth2User) {
+            email = (String) oauth2User.getAttributes().get("email");
+        } else if (principal instanceof UserDetails userDetails) {
+            email = userDetails.getUsername();
+        } else {
+            throw new SecurityException("Unauthorized: Invalid authentication");
+        }
+        return userRepository.findByEmail(email)
+                .orElseThrow(() -> new RuntimeException("User not found for email: " + email));
+    }
+}
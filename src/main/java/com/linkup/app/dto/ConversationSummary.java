@@ -0,0 +1,33 @@
+package com.linkup.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One inbox row, from the point of view of the user asking
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationSummary {
+    private Long conversationId;
+    private Long otherUserId;
+    private String otherUserName;
+    private Long lastMessageId;
+    private Long lastSenderId;
+    private String lastMessagePreview;
+    private LocalDateTime lastMessageAt;
+    private int unreadCount;
+    private boolean online;
+
+    // Used by the inbox query; online status is filled in afterwards from presence
+    public ConversationSummary(Long conversationId, Long otherUserId, String otherUserName, Long lastMessageId,
+                               Long lastSenderId, String lastMessagePreview, LocalDateTime lastMessageAt,
+                               int unreadCount) {
+        this(conversationId, otherUserId, otherUserName, lastMessageId, lastSenderId, lastMessagePreview,
+                lastMessageAt, unreadCount, false);
+    }
+}
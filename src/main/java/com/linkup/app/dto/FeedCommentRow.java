@@ -0,0 +1,19 @@
+package com.linkup.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FeedCommentRow {
+    private Long commentId;
+    private String content;
+    private LocalDateTime createdAt;
+    private Long userId;
+    private String userName;
+    private Long postId;
+}
@@ -0,0 +1,29 @@
+package com.linkup.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Content projection tagged with its post ID, so a whole feed page of
+ * media can be fetched in one query and grouped in memory.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FeedContentRow {
+    private Long postId;
+    private Long id;
+    private String path;
+    private String contentType;
+    private String tag;
+    private String fileName;
+    private Long fileSize;
+    private String fileType;
+    private Integer duration;
+    private Integer width;
+    private Integer height;
+    private String placeholder;
+    private String thumbnailPath;
+    private String mediumPath;
+}
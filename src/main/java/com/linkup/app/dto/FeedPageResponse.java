@@ -0,0 +1,15 @@
+package com.linkup.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FeedPageResponse {
+    private List<PostResponse> posts;
+    private String nextCursor; // null when there are no older posts
+}
@@ -0,0 +1,25 @@
+package com.linkup.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Flat post + author projection used by the feed read model.
+ * Built directly by a JPQL constructor expression, so no Post entity is loaded.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FeedPostRow {
+    private Long postId;
+    private String postType;
+    private LocalDateTime createdAt;
+    private String description;
+    private Long userId;
+    private String userName;
+    private long likesCount;
+    private long commentsCount;
+}
@@ -0,0 +1,16 @@
+package com.linkup.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessagePageResponse {
+    private List<MessageResponse> messages; // oldest first
+    private Long olderCursor;  // pass as ?before= for older messages; null when there are none
+    private Long newerCursor;  // pass as ?after= for newer messages; null when this page reaches the newest
+}
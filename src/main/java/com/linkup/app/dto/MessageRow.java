@@ -0,0 +1,24 @@
+package com.linkup.app.dto;
+
+import com.linkup.app.model.Message;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Message projection without the user joins; a conversation only involves two
+ * users, whose names are looked up once per page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageRow {
+    private Long messageId;
+    private Long senderId;
+    private Long receiverId;
+    private String content;
+    private LocalDateTime timestamp;
+    private Message.MessageStatus status;
+}
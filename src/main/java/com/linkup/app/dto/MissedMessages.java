@@ -0,0 +1,19 @@
+package com.linkup.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Messages from one user that arrived while the receiver was offline; fetch them
+ * with GET /api/messages/{userId}?after=(firstMessageId - 1)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MissedMessages {
+    private Long userId;
+    private Long firstMessageId;
+    private Long lastMessageId;
+    private int count;
+}
@@ -24,5 +24,5 @@ public class PostResponse {
     private Set<Content> contents;
     private int likesCount;
     private int commentsCount;
-    private List<CommentResponse> comments;
+    private List<CommentResponse> comments; // newest comments only (preview); commentsCount is the total
 }
@@ -0,0 +1,19 @@
+package com.linkup.app.dto;
+
+import com.linkup.app.model.Message;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Pushed to a sender on /queue/receipts: userId has now reached status for every
+ * message the sender sent them up to upToMessageId
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReceiptEvent {
+    private Long userId;
+    private Message.MessageStatus status;
+    private Long upToMessageId;
+}
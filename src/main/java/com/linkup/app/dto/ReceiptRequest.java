@@ -0,0 +1,16 @@
+package com.linkup.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * "Everything userId sent me up to upToMessageId has been delivered / read"
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReceiptRequest {
+    private Long userId;
+    private Long upToMessageId;
+}
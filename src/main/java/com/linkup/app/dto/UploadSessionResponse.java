@@ -0,0 +1,17 @@
+package com.linkup.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionResponse {
+    private String uploadId;
+    private long offset;       // bytes received so far; the next chunk starts here
+    private long size;
+    private LocalDateTime expiresAt;
+}
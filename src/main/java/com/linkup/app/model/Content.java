@@ -1,6 +1,7 @@
 package com.linkup.app.model;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.linkup.app.util.MediaUrls;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -9,7 +10,11 @@ import lombok.NoArgsConstructor;
 import java.util.Objects;
 
 @Entity
-@Table(name = "contents")
+@Table(name = "contents", indexes = {
+        @Index(name = "idx_contents_path", columnList = "path"),
+        @Index(name = "idx_contents_thumbnail_path", columnList = "thumbnail_path"),
+        @Index(name = "idx_contents_medium_path", columnList = "medium_path")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -28,11 +33,35 @@ public class Content {
     private String fileType;       // "image" or "video"
     private Integer duration;      // For videos, duration in seconds (null for images)
 
+    // Read from the file header at upload, so clients can reserve space before loading
+    private Integer width;
+    private Integer height;
+
+    @Column(length = 80)
+    private String placeholder;    // images only: tiny average-color grid, see ImageUtils
+
+    // Resized image variants, filled in asynchronously by ImageDerivativeService
+    private String thumbnailPath;
+    private String mediumPath;
+
     @ManyToOne
     @JoinColumn(name = "post_id")
     @JsonBackReference
     private Post post;
 
+    // URLs for clients; fingerprinted names get long-lived immutable caching
+    public String getUrl() {
+        return MediaUrls.of(path);
+    }
+
+    public String getThumbnailUrl() {
+        return MediaUrls.of(thumbnailPath);
+    }
+
+    public String getMediumUrl() {
+        return MediaUrls.of(mediumPath);
+    }
+
     /*
      * Modified equals and hashCode methods to avoid the issue where
      * new Content objects with null IDs are considered equal
@@ -0,0 +1,55 @@
+package com.linkup.app.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.LocalDateTime;
+
+/**
+ * A one-to-one conversation, keyed by the user pair in canonical order
+ * (userLowId < userHighId), with what the inbox needs denormalized onto the row:
+ * the last message and an unread counter for each participant. Written only by
+ * ConversationService's atomic UPDATEs as messages are saved and read.
+ */
+@Entity
+@Table(name = "conversations",
+        uniqueConstraints = @UniqueConstraint(name = "uk_conversations_pair", columnNames = {"user_low_id", "user_high_id"}),
+        indexes = {
+                @Index(name = "idx_conversations_low_last", columnList = "user_low_id, last_message_at"),
+                @Index(name = "idx_conversations_high_last", columnList = "user_high_id, last_message_at")
+        })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Conversation {
+    public static final int PREVIEW_LENGTH = 140;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long userLowId;
+
+    @Column(nullable = false)
+    private Long userHighId;
+
+    private Long lastMessageId;
+    private Long lastSenderId;
+    private LocalDateTime lastMessageAt;
+
+    @Column(length = PREVIEW_LENGTH)
+    private String lastMessagePreview;
+
+    // Messages not yet read by userLowId / userHighId respectively
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private int unreadLow;
+
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private int unreadHigh;
+}
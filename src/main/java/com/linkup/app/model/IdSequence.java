@@ -0,0 +1,32 @@
+package com.linkup.app.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A named ID counter for rows whose IDs are assigned before they are inserted.
+ * Callers reserve blocks of IDs by advancing nextValue atomically, and only while
+ * they hold the sequence's lease (owner, renewed before ownerExpiresAt).
+ */
+@Entity
+@Table(name = "id_sequences")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdSequence {
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(nullable = false)
+    private long nextValue;        // first ID not yet handed out
+
+    @Column(length = 64)
+    private String owner;          // node allowed to reserve IDs, null when free
+
+    private LocalDateTime ownerExpiresAt;
+}
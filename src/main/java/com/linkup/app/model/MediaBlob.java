@@ -0,0 +1,41 @@
+package com.linkup.app.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A content-addressed file in the uploads store. Content rows reference blobs by
+ * path; refCount tracks how many of them do, so identical uploads share one file
+ * and the file is removed only when the last reference goes away.
+ */
+@Entity
+@Table(name = "media_blobs", indexes = {
+        @Index(name = "idx_media_blobs_path", columnList = "path", unique = true)
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MediaBlob {
+    @Id
+    @Column(length = 64)
+    private String hash;           // hex SHA-256 of the file bytes
+
+    @Column(nullable = false)
+    private String path;           // stored file name, relative to the upload dir
+
+    private Long fileSize;
+
+    @Column(nullable = false)
+    private long refCount;
+
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -7,7 +7,10 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+        // One range scan per direction of a conversation, already in message order
+        @Index(name = "idx_messages_sender_receiver_id", columnList = "sender_id, receiver_id, message_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -6,6 +6,8 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Objects;
@@ -31,6 +33,16 @@ public class Post {
 
     private String images;
 
+    // Denormalized counters, written only by PostCounterService's batched UPDATEs,
+    // so saving a Post entity never clobbers a concurrent flush
+    @Column(nullable = false, updatable = false)
+    @ColumnDefault("0")
+    private long likesCount;
+
+    @Column(nullable = false, updatable = false)
+    @ColumnDefault("0")
+    private long commentsCount;
+
     @OneToMany(mappedBy = "post", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonManagedReference
     private Set<Content> contents = new HashSet<>();
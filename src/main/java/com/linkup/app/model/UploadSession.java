@@ -0,0 +1,48 @@
+package com.linkup.app.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * An in-progress resumable upload. The bytes live in a file in the staging area,
+ * created at the full upload length; receivedBytes is the offset the next chunk
+ * must start at.
+ */
+@Entity
+@Table(name = "upload_sessions", indexes = {
+        @Index(name = "idx_upload_sessions_expires", columnList = "expires_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSession {
+    @Id
+    @Column(length = 36)
+    private String id;             // random UUID, also names the staged file
+
+    @Column(nullable = false)
+    private Long userId;
+
+    private String fileName;       // Original filename
+    private String contentType;    // MIME type declared when the session was created
+
+    @Column(nullable = false)
+    private long totalSize;
+
+    @Column(nullable = false)
+    private long receivedBytes;
+
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at")
+    private LocalDateTime expiresAt; // pushed forward by every chunk
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
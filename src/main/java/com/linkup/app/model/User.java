@@ -4,6 +4,8 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
@@ -32,6 +34,12 @@ public class User {
     private String providerId;
     private boolean enabled = true;
 
+    // Bytes of media on this user's posts, written only by StorageQuotaService's
+    // atomic UPDATEs so saving a User never overwrites a concurrent change
+    @Column(nullable = false, updatable = false)
+    @ColumnDefault("0")
+    private long storageBytesUsed;
+
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL)
     private Set<Post> posts = new HashSet<>();
 
@@ -1,13 +1,47 @@
 package com.linkup.app.repository;
 
+import com.linkup.app.dto.FeedCommentRow;
 import com.linkup.app.model.Comment;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, Long> {
     List<Comment> findByPostPostIdOrderByCreatedAtDesc(Long postId);
     int countByPostPostId(Long postId);
+
+    /**
+     * Latest comments of every post on a feed page in one windowed query
+     * (ROW_NUMBER() partitioned by post), so huge threads never reach the feed payload
+     * @param postIds The post IDs on the page
+     * @param limit Maximum comments per post
+     * @return Up to limit rows per post, newest first within each post
+     */
+    @Query("SELECT new com.linkup.app.dto.FeedCommentRow(r.commentId, r.content, r.createdAt, r.userId, r.userName, r.postId) " +
+            "FROM (SELECT c.commentId AS commentId, c.content AS content, c.createdAt AS createdAt, " +
+            "u.userId AS userId, u.userName AS userName, c.post.postId AS postId, " +
+            "ROW_NUMBER() OVER (PARTITION BY c.post.postId ORDER BY c.createdAt DESC, c.commentId DESC) AS rn " +
+            "FROM Comment c JOIN c.user u WHERE c.post.postId IN :postIds) r " +
+            "WHERE r.rn <= :limit ORDER BY r.postId, r.createdAt DESC, r.commentId DESC")
+    List<FeedCommentRow> findLatestRowsByPostIds(@Param("postIds") Collection<Long> postIds, @Param("limit") int limit);
+
+    @Query("SELECT new com.linkup.app.dto.FeedCommentRow(c.commentId, c.content, c.createdAt, u.userId, u.userName, c.post.postId) " +
+            "FROM Comment c JOIN c.user u WHERE c.post.postId = :postId ORDER BY c.createdAt DESC, c.commentId DESC")
+    List<FeedCommentRow> findRowsByPostId(@Param("postId") Long postId, Pageable pageable);
+
+    @Query("SELECT new com.linkup.app.dto.FeedCommentRow(c.commentId, c.content, c.createdAt, u.userId, u.userName, c.post.postId) " +
+            "FROM Comment c JOIN c.user u WHERE c.post.postId = :postId " +
+            "AND (c.createdAt < :createdAt OR (c.createdAt = :createdAt AND c.commentId < :commentId)) " +
+            "ORDER BY c.createdAt DESC, c.commentId DESC")
+    List<FeedCommentRow> findRowsByPostIdBefore(@Param("postId") Long postId,
+                                                @Param("createdAt") LocalDateTime createdAt,
+                                                @Param("commentId") Long commentId,
+                                                Pageable pageable);
 }
\ No newline at end of file
@@ -0,0 +1,71 @@
+package com.linkup.app.repository;
+
+import com.linkup.app.model.Content;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * JDBC batch insert for Content rows.
+ *
+ * Content uses IDENTITY keys, which stops Hibernate from batching inserts, so a post
+ * with several media files would otherwise pay one round-trip per row. With
+ * rewriteBatchedStatements enabled on the MySQL URL this becomes a single multi-row INSERT.
+ */
+@Repository
+public class ContentBatchRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO contents (path, content_type, tag, file_name, file_size, file_type, duration, " +
+            "width, height, placeholder, post_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Insert all contents in one batch and assign their generated IDs
+     * @param postId The owning post, already inserted in the current transaction
+     * @param contents The content rows to insert
+     */
+    public void insertAll(Long postId, List<Content> contents) {
+        if (contents.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (Content content : contents) {
+                    ps.setString(1, content.getPath());
+                    ps.setString(2, content.getContentType());
+                    ps.setString(3, content.getTag());
+                    ps.setString(4, content.getFileName());
+                    ps.setObject(5, content.getFileSize(), Types.BIGINT);
+                    ps.setString(6, content.getFileType());
+                    ps.setObject(7, content.getDuration(), Types.INTEGER);
+                    ps.setObject(8, content.getWidth(), Types.INTEGER);
+                    ps.setObject(9, content.getHeight(), Types.INTEGER);
+                    ps.setString(10, content.getPlaceholder());
+                    ps.setLong(11, postId);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    int i = 0;
+                    while (keys.next() && i < contents.size()) {
+                        contents.get(i++).setId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+    }
+}
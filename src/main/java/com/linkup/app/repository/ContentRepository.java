@@ -1,9 +1,15 @@
 package com.linkup.app.repository;
 
+import com.linkup.app.dto.FeedContentRow;
 import com.linkup.app.model.Content;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -29,6 +35,36 @@ public interface ContentRepository extends JpaRepository<Content, Long> {
      */
     Content findByPath(String path);
 
+    /**
+     * Stored file names of a post's content, without loading the entities
+     * @param postId The ID of the post
+     * @return The paths
+     */
+    @Query("SELECT c.path FROM Content c WHERE c.post.postId = :postId")
+    List<String> findPathsByPostId(@Param("postId") Long postId);
+
+    /**
+     * Which of the given stored file names are referenced as a content's original
+     * @param names A batch of stored file names
+     * @return The referenced subset
+     */
+    @Query("SELECT DISTINCT c.path FROM Content c WHERE c.path IN :names")
+    List<String> findReferencedPaths(@Param("names") Collection<String> names);
+
+    @Query("SELECT DISTINCT c.thumbnailPath FROM Content c WHERE c.thumbnailPath IN :names")
+    List<String> findReferencedThumbnailPaths(@Param("names") Collection<String> names);
+
+    @Query("SELECT DISTINCT c.mediumPath FROM Content c WHERE c.mediumPath IN :names")
+    List<String> findReferencedMediumPaths(@Param("names") Collection<String> names);
+
+    /**
+     * Total stored size of a post's content
+     * @param postId The ID of the post
+     * @return Bytes, 0 if the post has no content
+     */
+    @Query("SELECT COALESCE(SUM(c.fileSize), 0) FROM Content c WHERE c.post.postId = :postId")
+    long sumFileSizeByPostId(@Param("postId") Long postId);
+
     /**
      * Count the number of content items for a specific post
      * @param postId The ID of the post
@@ -43,4 +79,22 @@ public interface ContentRepository extends JpaRepository<Content, Long> {
      * @return List of matching content
      */
     List<Content> findByPostPostIdAndFileType(Long postId, String fileType);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Content c SET c.thumbnailPath = :thumbnailPath, c.mediumPath = :mediumPath WHERE c.id = :id")
+    int updateVariantPaths(@Param("id") Long id,
+                           @Param("thumbnailPath") String thumbnailPath,
+                           @Param("mediumPath") String mediumPath);
+
+    /**
+     * Fetch the content of a whole feed page in one query, as flat projections
+     * @param postIds The post IDs on the page
+     * @return Content rows tagged with their post ID
+     */
+    @Query("SELECT new com.linkup.app.dto.FeedContentRow(c.post.postId, c.id, c.path, c.contentType, c.tag, " +
+            "c.fileName, c.fileSize, c.fileType, c.duration, c.width, c.height, c.placeholder, " +
+            "c.thumbnailPath, c.mediumPath) " +
+            "FROM Content c WHERE c.post.postId IN :postIds ORDER BY c.id ASC")
+    List<FeedContentRow> findFeedRowsByPostIds(@Param("postIds") Collection<Long> postIds);
 }
\ No newline at end of file
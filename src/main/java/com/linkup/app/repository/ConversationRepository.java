@@ -0,0 +1,96 @@
+package com.linkup.app.repository;
+
+import com.linkup.app.dto.ConversationSummary;
+import com.linkup.app.model.Conversation;
+import com.linkup.app.model.User;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ConversationRepository extends JpaRepository<Conversation, Long> {
+
+    boolean existsByUserLowIdAndUserHighId(Long userLowId, Long userHighId);
+
+    /**
+     * Create the row for a user pair. A plain INSERT so two first messages racing each
+     * other fail on the unique pair key instead of creating two conversations
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO conversations (user_low_id, user_high_id, unread_low, unread_high) " +
+            "VALUES (:lowId, :highId, 0, 0)", nativeQuery = true)
+    void insertPair(@Param("lowId") Long lowId, @Param("highId") Long highId);
+
+    /**
+     * Record new messages: move the last-message fields forward to the newest of them
+     * (never backwards, in case two sends commit out of order) and add to each
+     * participant's unread counter
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Conversation c SET " +
+            "c.lastMessageAt = CASE WHEN c.lastMessageId IS NULL OR c.lastMessageId < :messageId " +
+            "THEN :sentAt ELSE c.lastMessageAt END, " +
+            "c.lastMessagePreview = CASE WHEN c.lastMessageId IS NULL OR c.lastMessageId < :messageId " +
+            "THEN :preview ELSE c.lastMessagePreview END, " +
+            "c.lastSenderId = CASE WHEN c.lastMessageId IS NULL OR c.lastMessageId < :messageId " +
+            "THEN :senderId ELSE c.lastSenderId END, " +
+            "c.lastMessageId = CASE WHEN c.lastMessageId IS NULL OR c.lastMessageId < :messageId " +
+            "THEN :messageId ELSE c.lastMessageId END, " +
+            "c.unreadLow = c.unreadLow + :unreadLow, " +
+            "c.unreadHigh = c.unreadHigh + :unreadHigh " +
+            "WHERE c.userLowId = :lowId AND c.userHighId = :highId")
+    int recordMessage(@Param("lowId") Long lowId,
+                      @Param("highId") Long highId,
+                      @Param("senderId") Long senderId,
+                      @Param("messageId") Long messageId,
+                      @Param("sentAt") LocalDateTime sentAt,
+                      @Param("preview") String preview,
+                      @Param("unreadLow") int unreadLow,
+                      @Param("unreadHigh") int unreadHigh);
+
+    /**
+     * Take read messages off one participant's unread counter, never below zero. A
+     * relative update, so it cannot undo an increment committed in the meantime
+     */
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE Conversation c SET " +
+            "c.unreadLow = CASE WHEN c.userLowId <> :userId THEN c.unreadLow " +
+            "WHEN c.unreadLow > :read THEN c.unreadLow - :read ELSE 0 END, " +
+            "c.unreadHigh = CASE WHEN c.userHighId <> :userId THEN c.unreadHigh " +
+            "WHEN c.unreadHigh > :read THEN c.unreadHigh - :read ELSE 0 END " +
+            "WHERE c.userLowId = :lowId AND c.userHighId = :highId")
+    int decrementUnread(@Param("lowId") Long lowId,
+                        @Param("highId") Long highId,
+                        @Param("userId") Long userId,
+                        @Param("read") int read);
+
+    /**
+     * The user's inbox, most recent conversation first, with the other participant's
+     * name joined in: one query over the two (user, last_message_at) indexes
+     */
+    @Query("SELECT new com.linkup.app.dto.ConversationSummary(c.id, u.userId, u.userName, c.lastMessageId, " +
+            "c.lastSenderId, c.lastMessagePreview, c.lastMessageAt, " +
+            "CASE WHEN c.userLowId = :userId THEN c.unreadLow ELSE c.unreadHigh END) " +
+            "FROM Conversation c JOIN User u " +
+            "ON u.userId = CASE WHEN c.userLowId = :userId THEN c.userHighId ELSE c.userLowId END " +
+            "WHERE (c.userLowId = :userId OR c.userHighId = :userId) AND c.lastMessageId IS NOT NULL " +
+            "ORDER BY c.lastMessageAt DESC, c.id DESC")
+    List<ConversationSummary> findInbox(@Param("userId") Long userId);
+
+    /**
+     * Everyone the user has a conversation with, most recent first
+     */
+    @Query("SELECT u FROM Conversation c JOIN User u " +
+            "ON u.userId = CASE WHEN c.userLowId = :userId THEN c.userHighId ELSE c.userLowId END " +
+            "WHERE (c.userLowId = :userId OR c.userHighId = :userId) AND c.lastMessageId IS NOT NULL " +
+            "ORDER BY c.lastMessageAt DESC, c.id DESC")
+    List<User> findChatPartners(@Param("userId") Long userId);
+}
@@ -0,0 +1,68 @@
+package com.linkup.app.repository;
+
+import com.linkup.app.model.MediaBlob;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface MediaBlobRepository extends JpaRepository<MediaBlob, String> {
+
+    Optional<MediaBlob> findByPath(String path);
+
+    /**
+     * @return The given stored file names whose blob still has references
+     */
+    @Query("SELECT b.path FROM MediaBlob b WHERE b.path IN :paths AND b.refCount > 0")
+    List<String> findReferencedPaths(@Param("paths") Collection<String> paths);
+
+    /**
+     * Add a reference to an existing blob
+     * @param hash The blob hash
+     * @return 1 if the blob existed, 0 otherwise
+     */
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE MediaBlob b SET b.refCount = b.refCount + 1 WHERE b.hash = :hash")
+    int incrementRefCount(@Param("hash") String hash);
+
+    /**
+     * Insert a new blob with one reference. A plain INSERT (rather than save/merge) so a
+     * concurrent insert of the same hash fails with a duplicate key instead of overwriting
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO media_blobs (hash, path, file_size, ref_count, created_at) " +
+            "VALUES (:hash, :path, :fileSize, 1, CURRENT_TIMESTAMP)", nativeQuery = true)
+    void insertWithOneReference(@Param("hash") String hash, @Param("path") String path,
+                                @Param("fileSize") long fileSize);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE MediaBlob b SET b.refCount = b.refCount - 1 WHERE b.path = :path AND b.refCount > 0")
+    int decrementRefCount(@Param("path") String path);
+
+    /**
+     * Delete a blob row only while nothing references it; an upload that took a
+     * reference in the meantime keeps its row
+     */
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("DELETE FROM MediaBlob b WHERE b.path = :path AND b.refCount = 0")
+    int deleteUnreferenced(@Param("path") String path);
+
+    /**
+     * Lock a blob row so no new reference can be added while its file is being deleted
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM MediaBlob b WHERE b.path = :path")
+    Optional<MediaBlob> findByPathForUpdate(@Param("path") String path);
+}
@@ -0,0 +1,61 @@
+package com.linkup.app.repository;
+
+import com.linkup.app.dto.MessageRow;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC batch insert for messages whose IDs were assigned up front, as drained from
+ * the write-behind journal. With rewriteBatchedStatements enabled on the MySQL URL
+ * a batch becomes a single multi-row INSERT.
+ */
+@Repository
+public class MessageBatchRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO messages (message_id, sender_id, receiver_id, content, timestamp, status) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String EXISTING_SQL =
+            "SELECT message_id, sender_id, receiver_id, timestamp FROM messages WHERE message_id BETWEEN ? AND ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public void insertAll(List<MessageRow> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, messages, messages.size(), (ps, message) -> {
+            ps.setLong(1, message.getMessageId());
+            ps.setLong(2, message.getSenderId());
+            ps.setLong(3, message.getReceiverId());
+            ps.setString(4, message.getContent());
+            ps.setTimestamp(5, Timestamp.valueOf(message.getTimestamp()));
+            ps.setString(6, message.getStatus().name());
+        });
+    }
+
+    /**
+     * Messages in the ID range [from, to] already present, by ID, so a replayed batch
+     * can skip them; content and status are not read
+     */
+    public Map<Long, MessageRow> findExisting(long from, long to) {
+        Map<Long, MessageRow> existing = new HashMap<>();
+        jdbcTemplate.query(EXISTING_SQL, rs -> {
+            MessageRow row = new MessageRow();
+            row.setMessageId(rs.getLong("message_id"));
+            row.setSenderId(rs.getLong("sender_id"));
+            row.setReceiverId(rs.getLong("receiver_id"));
+            Timestamp timestamp = rs.getTimestamp("timestamp");
+            row.setTimestamp(timestamp != null ? timestamp.toLocalDateTime() : null);
+            existing.put(row.getMessageId(), row);
+        }, from, to);
+        return existing;
+    }
+}
@@ -1,11 +1,17 @@
 package com.linkup.app.repository;
 
+import com.linkup.app.dto.MessageRow;
 import com.linkup.app.model.Message;
 import com.linkup.app.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -14,13 +20,57 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
     @Query("SELECT m FROM Message m WHERE (m.sender = ?1 AND m.receiver = ?2) OR (m.sender = ?2 AND m.receiver = ?1) ORDER BY m.messageId ASC")
     List<Message> findConversation(User sender, User receiver);
 
+    /**
+     * Messages one user sent to the other, newest first, below a message ID. Each
+     * direction of a conversation is read separately so both are a single range
+     * scan of idx_messages_sender_receiver_id.
+     */
+    @Query("SELECT new com.linkup.app.dto.MessageRow(m.messageId, m.sender.userId, m.receiver.userId, " +
+            "m.content, m.timestamp, m.status) FROM Message m " +
+            "WHERE m.sender.userId = :senderId AND m.receiver.userId = :receiverId AND m.messageId < :before " +
+            "ORDER BY m.messageId DESC")
+    List<MessageRow> findRowsBefore(@Param("senderId") Long senderId,
+                                    @Param("receiverId") Long receiverId,
+                                    @Param("before") Long before,
+                                    Pageable pageable);
+
+    /**
+     * Messages one user sent to the other, oldest first, above a message ID
+     */
+    @Query("SELECT new com.linkup.app.dto.MessageRow(m.messageId, m.sender.userId, m.receiver.userId, " +
+            "m.content, m.timestamp, m.status) FROM Message m " +
+            "WHERE m.sender.userId = :senderId AND m.receiver.userId = :receiverId AND m.messageId > :after " +
+            "ORDER BY m.messageId ASC")
+    List<MessageRow> findRowsAfter(@Param("senderId") Long senderId,
+                                   @Param("receiverId") Long receiverId,
+                                   @Param("after") Long after,
+                                   Pageable pageable);
+
     List<Message> findBySenderOrderByMessageIdDesc(User sender);
 
     List<Message> findByReceiverOrderByMessageIdDesc(User receiver);
 
-    @Query("SELECT DISTINCT m.sender FROM Message m WHERE m.receiver = ?1")
-    List<User> findDistinctSendersByReceiver(User receiver);
+    /**
+     * Move every message from sender to receiver up to and including a message ID
+     * into a new status, in one range UPDATE over the sender/receiver index. Only
+     * messages currently in one of the from statuses change, so a status never goes
+     * backwards.
+     */
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE Message m SET m.status = :status " +
+            "WHERE m.sender.userId = :senderId AND m.receiver.userId = :receiverId " +
+            "AND m.messageId <= :upTo AND m.status IN :from")
+    int advanceStatusUpTo(@Param("senderId") Long senderId,
+                          @Param("receiverId") Long receiverId,
+                          @Param("upTo") Long upTo,
+                          @Param("status") Message.MessageStatus status,
+                          @Param("from") Collection<Message.MessageStatus> from);
 
-    @Query("SELECT DISTINCT m.receiver FROM Message m WHERE m.sender = ?1")
-    List<User> findDistinctReceiversBySender(User sender);
-}
\ No newline at end of file
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE Message m SET m.status = :status WHERE m.messageId = :messageId AND m.status IN :from")
+    int advanceStatus(@Param("messageId") Long messageId,
+                      @Param("status") Message.MessageStatus status,
+                      @Param("from") Collection<Message.MessageStatus> from);
+}
@@ -1,14 +1,44 @@
 package com.linkup.app.repository;
 
+import com.linkup.app.dto.FeedPostRow;
 import com.linkup.app.model.Post;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface PostRepository extends JpaRepository<Post, Long> {
     List<Post> findByUserUserIdOrderByPostIdDesc(Long userId);
     List<Post> findAllByOrderByPostIdDesc();
     void deleteByPostIdAndUserUserId(Long postId, Long userId);
-}
\ No newline at end of file
+
+    @Query("SELECT p.likesCount FROM Post p WHERE p.postId = :postId")
+    Optional<Long> findLikesCountByPostId(@Param("postId") Long postId);
+
+    @Query("SELECT p.commentsCount FROM Post p WHERE p.postId = :postId")
+    Optional<Long> findCommentsCountByPostId(@Param("postId") Long postId);
+
+    /**
+     * First page of the feed read model: post columns plus author, without loading entities
+     * @param pageable Page size only; the offset is always zero
+     * @return Up to pageable.getPageSize() rows, newest first
+     */
+    @Query("SELECT new com.linkup.app.dto.FeedPostRow(p.postId, p.postType, p.createdAt, p.description, u.userId, u.userName, p.likesCount, p.commentsCount) " +
+            "FROM Post p JOIN p.user u ORDER BY p.postId DESC")
+    List<FeedPostRow> findFeedRows(Pageable pageable);
+
+    /**
+     * Keyset page of the feed read model
+     * @param before The last post ID of the previous page
+     * @param pageable Page size only; the offset is always zero
+     * @return Up to pageable.getPageSize() rows older than the cursor, newest first
+     */
+    @Query("SELECT new com.linkup.app.dto.FeedPostRow(p.postId, p.postType, p.createdAt, p.description, u.userId, u.userName, p.likesCount, p.commentsCount) " +
+            "FROM Post p JOIN p.user u WHERE p.postId < :before ORDER BY p.postId DESC")
+    List<FeedPostRow> findFeedRowsBefore(@Param("before") Long before, Pageable pageable);
+}
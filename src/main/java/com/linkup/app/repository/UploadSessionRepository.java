@@ -0,0 +1,42 @@
+package com.linkup.app.repository;
+
+import com.linkup.app.model.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    /**
+     * Move the offset forward only if it is still where the chunk started
+     * @return 1 if advanced, 0 if another chunk got there first
+     */
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE UploadSession s SET s.receivedBytes = :newOffset, s.expiresAt = :expiresAt " +
+            "WHERE s.id = :id AND s.receivedBytes = :expectedOffset")
+    int advanceOffset(@Param("id") String id,
+                      @Param("expectedOffset") long expectedOffset,
+                      @Param("newOffset") long newOffset,
+                      @Param("expiresAt") LocalDateTime expiresAt);
+
+    long countByUserId(Long userId);
+
+    /**
+     * Bytes the user's open sessions will store once completed
+     */
+    @Query("SELECT COALESCE(SUM(s.totalSize), 0) FROM UploadSession s WHERE s.userId = :userId")
+    long sumTotalSizeByUserId(@Param("userId") Long userId);
+
+    /**
+     * Sessions nobody has touched since before the given time
+     */
+    List<UploadSession> findByExpiresAtBefore(LocalDateTime time);
+}
@@ -0,0 +1,30 @@
+package com.linkup.app.security;
+
+import com.linkup.app.model.User;
+
+import java.security.Principal;
+
+/**
+ * The user behind a STOMP session, resolved once on CONNECT.
+ *
+ * The name is the user ID, which is what /user/{name}/queue/... destinations and
+ * presence are keyed by, so frames addressed to a user ID reach their sessions.
+ */
+public record ChatPrincipal(Long userId, String email, String userName) implements Principal {
+
+    @Override
+    public String getName() {
+        return userId.toString();
+    }
+
+    /**
+     * @return A detached User carrying only what chat needs, for use as a message sender
+     */
+    public User toUser() {
+        User user = new User();
+        user.setUserId(userId);
+        user.setEmail(email);
+        user.setUserName(userName);
+        return user;
+    }
+}
@@ -0,0 +1,142 @@
+package com.linkup.app.security;
+
+import com.linkup.app.model.User;
+import com.linkup.app.repository.UserRepository;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resolves a JWT to a {@link ChatPrincipal}, remembering the answer.
+ *
+ * On a miss the token is verified with one parse and the user read once by email.
+ * The result is kept, keyed by the SHA-256 of the token so raw tokens are not held,
+ * until app.chat.principal-cache.ttl-seconds pass or the token expires, whichever is
+ * first. A client reconnecting with the same token, as every client does after a
+ * deploy, then costs a hash and a map lookup. At most max-size principals are held,
+ * least recently used dropped first. Invalid tokens are not cached.
+ */
+@Component
+public class JwtPrincipalCache {
+
+    private record Entry(ChatPrincipal principal, long expiresAt) {
+    }
+
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Value("${app.chat.principal-cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${app.chat.principal-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxSize;
+        }
+    };
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @PostConstruct
+    public void registerMetrics() {
+        meterRegistry.ifAvailable(registry -> {
+            FunctionCounter.builder("chat.principal-cache.requests", hits, LongAdder::sum)
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("chat.principal-cache.requests", misses, LongAdder::sum)
+                    .tag("result", "miss")
+                    .register(registry);
+            Gauge.builder("chat.principal-cache.size", this, JwtPrincipalCache::size)
+                    .register(registry);
+        });
+    }
+
+    /**
+     * @return The token's user, or empty if the token does not verify or its user no longer exists
+     */
+    public Optional<ChatPrincipal> authenticate(String token) {
+        String key = hash(token);
+        long now = System.currentTimeMillis();
+
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt() > now) {
+                    hits.increment();
+                    return Optional.of(entry.principal());
+                }
+                entries.remove(key);
+            }
+        }
+        misses.increment();
+
+        Claims claims = tokenProvider.parseToken(token);
+        if (claims == null) {
+            return Optional.empty();
+        }
+        Optional<User> user = userRepository.findByEmail(claims.getSubject());
+        if (user.isEmpty()) {
+            return Optional.empty();
+        }
+
+        ChatPrincipal principal = new ChatPrincipal(user.get().getUserId(), user.get().getEmail(),
+                user.get().getUserName());
+        long expiresAt = now + ttlSeconds * 1000;
+        if (claims.getExpiration() != null) {
+            expiresAt = Math.min(expiresAt, claims.getExpiration().getTime());
+        }
+        synchronized (entries) {
+            entries.put(key, new Entry(principal, expiresAt));
+        }
+        return Optional.of(principal);
+    }
+
+    /**
+     * Drop every cached principal, e.g. after a user's details change
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
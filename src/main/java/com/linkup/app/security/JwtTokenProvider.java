@@ -2,6 +2,7 @@ package com.linkup.app.security;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -26,6 +27,9 @@ public class JwtTokenProvider {
     @Value("${app.jwt.expiration:86400000}")
     private int jwtExpirationMs;
 
+    // Built on first use; the parser is immutable and thread-safe
+    private volatile JwtParser parser;
+
     public String generateToken(Authentication authentication) {
         String username;
         Map<String, Object> claims = new HashMap<>();
@@ -61,31 +65,41 @@ public class JwtTokenProvider {
     }
 
     public String getUsernameFromJWT(String token) {
-        SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes());
-
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-
-        return claims.getSubject();
+        return parser().parseClaimsJws(token).getBody().getSubject();
     }
 
     public boolean validateToken(String authToken) {
+        return parseToken(authToken) != null;
+    }
+
+    /**
+     * Verify the token and read its claims with a single parse, instead of
+     * {@link #validateToken} followed by {@link #getUsernameFromJWT}
+     * @return The claims, or null if the token is not valid
+     */
+    public Claims parseToken(String authToken) {
         try {
-            SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes());
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(authToken);
-            return true;
+            return parser().parseClaimsJws(authToken).getBody();
         } catch (MalformedJwtException ex) {
             logger.error("Invalid JWT token");
         } catch (ExpiredJwtException ex) {
             logger.error("Expired JWT token");
         } catch (UnsupportedJwtException ex) {
             logger.error("Unsupported JWT token");
+        } catch (SignatureException ex) {
+            logger.error("Invalid JWT signature");
         } catch (IllegalArgumentException ex) {
             logger.error("JWT claims string is empty");
         }
-        return false;
+        return null;
+    }
+
+    private JwtParser parser() {
+        JwtParser cached = parser;
+        if (cached == null) {
+            cached = Jwts.parserBuilder().setSigningKey(Keys.hmacShaKeyFor(jwtSecret.getBytes())).build();
+            parser = cached;
+        }
+        return cached;
     }
 }
\ No newline at end of file
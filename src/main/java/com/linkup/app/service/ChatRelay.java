@@ -0,0 +1,36 @@
+package com.linkup.app.service;
+
+/**
+ * Delivers frames to a user's WebSocket sessions, on whichever node holds them.
+ *
+ * Use this instead of calling SimpMessagingTemplate.convertAndSendToUser directly:
+ * with the simple in-memory broker that only reaches sessions connected to this JVM.
+ */
+public interface ChatRelay {
+
+    /**
+     * Send a payload to every session of a user
+     * @param user The user's principal name
+     * @param destination User destination, e.g. /queue/messages
+     */
+    void sendToUser(String user, String destination, Object payload);
+
+    /**
+     * @return Whether another node reports sessions for the user
+     */
+    default boolean hasRemoteSessions(String user) {
+        return false;
+    }
+
+    /**
+     * A STOMP session was established for the user on this node
+     */
+    default void sessionOpened(String sessionId, String user) {
+    }
+
+    /**
+     * A STOMP session on this node ended. May be called more than once per session.
+     */
+    default void sessionClosed(String sessionId) {
+    }
+}
@@ -0,0 +1,578 @@
+package com.linkup.app.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.util.MimeTypeUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Chat delivery across several application nodes, each running its own simple broker.
+ *
+ * Every node tracks which users have sessions on it and tells the others over UDP:
+ * an announcement when a user's first session opens, a withdrawal when the last
+ * one closes, and a full announcement of all its users every interval. The others
+ * keep a user-to-node directory, and an entry expires after three missed intervals,
+ * so a node that dies drops out on its own. A frame for a user is then sent by
+ * unicast only to the nodes that hold that user's sessions, and delivered there
+ * through the local broker. Announcements go to the configured peers and, if set,
+ * to a multicast group. A node that hears from an unknown node replies with its
+ * full state and the nodes it knows, so a node that joins late, knowing only one
+ * seed peer, reaches the whole cluster at once.
+ *
+ * Every packet carries its send time, a sequence number that increases with each
+ * packet the node seals, and an HMAC-SHA256 over all of it keyed with the cluster's
+ * shared secret. Packets that fail the check or are older than
+ * {@link #MAX_PACKET_AGE_MS} are dropped, and so is any packet whose sequence number
+ * was already seen from its sender or falls behind that sender's replay window, so
+ * a captured frame or withdrawal cannot be delivered or applied twice. Frames and
+ * withdrawals are also dropped unless their sender is a node already known from an
+ * authenticated announcement.
+ *
+ * Frames are best effort and limited to one datagram. Messages are stored before
+ * they are relayed, so a lost frame is recovered by the client's history catch-up.
+ */
+public class ClusterChatRelay implements ChatRelay, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterChatRelay.class);
+
+    private static final byte ANNOUNCE = 1;
+    private static final byte WITHDRAW = 2;
+    private static final byte FRAME = 3;
+    private static final byte NODES = 4;
+
+    private static final int MAX_PACKET_BYTES = 65_000;
+    private static final int TTL_INTERVALS = 3;
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_BYTES = 32;
+    // Send time, sequence number and MAC after the payload
+    private static final int TRAILER_BYTES = 8 + 8 + MAC_BYTES;
+    static final long MAX_PACKET_AGE_MS = 30_000;
+    // Sequence numbers per sender remembered behind the highest seen, for UDP reordering
+    private static final int REPLAY_WINDOW = 1024;
+    private static final int MIN_SECRET_BYTES = 32;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final DatagramChannel channel;
+    private final DatagramChannel multicastChannel;
+    private final InetSocketAddress multicastGroup;
+    private final List<InetSocketAddress> peers;
+    private final String advertisedHost;
+    private final int advertisedPort;
+    private final long announceIntervalMs;
+    private final ThreadLocal<Mac> macs;
+    private final LongAdder rejectedPackets = new LongAdder();
+    private final AtomicLong sequence = new AtomicLong();
+    // Per sender node, kept while its packets could still pass the age check
+    private final ConcurrentHashMap<String, ReplayWindow> replayWindows = new ConcurrentHashMap<>();
+
+    // Local sessions: session ID to user, and live session count per user
+    private final ConcurrentHashMap<String, String> localSessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> localUsers = new ConcurrentHashMap<>();
+
+    // Remote directory: user to owning node to expiry, and where each node listens
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Long>> owners = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, InetSocketAddress> nodes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> nodesSeen = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService announcer;
+    private volatile boolean running = true;
+
+    /**
+     * @param bind Address and port to receive frames on; port 0 picks a free one
+     * @param advertisedHost Host other nodes should send to, or null for the bind address
+     * @param peers Nodes to send announcements to
+     * @param multicastGroup Multicast group for announcements, or null for peers only
+     * @param multicastInterface Interface name to join the group on
+     * @param secret Key shared by every node of the cluster, at least 32 bytes
+     */
+    public ClusterChatRelay(InetSocketAddress bind, String advertisedHost, List<InetSocketAddress> peers,
+                            InetSocketAddress multicastGroup, String multicastInterface, long announceIntervalMs,
+                            byte[] secret, SimpMessagingTemplate messagingTemplate,
+                            ObjectMapper objectMapper) throws IOException {
+        if (secret == null || secret.length < MIN_SECRET_BYTES) {
+            throw new IllegalArgumentException("The chat relay secret must be at least " + MIN_SECRET_BYTES + " bytes");
+        }
+        SecretKeySpec key = new SecretKeySpec(secret.clone(), MAC_ALGORITHM);
+        macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(MAC_ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cannot create " + MAC_ALGORITHM, e);
+            }
+        });
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+        this.peers = List.copyOf(peers);
+        this.announceIntervalMs = announceIntervalMs;
+
+        channel = DatagramChannel.open(StandardProtocolFamily.INET).bind(bind);
+        InetSocketAddress local = (InetSocketAddress) channel.getLocalAddress();
+        advertisedPort = local.getPort();
+        this.advertisedHost = advertisedHost != null && !advertisedHost.isBlank() ? advertisedHost
+                : local.getAddress().isAnyLocalAddress() ? InetAddress.getLocalHost().getHostAddress()
+                : local.getAddress().getHostAddress();
+
+        this.multicastGroup = multicastGroup;
+        if (multicastGroup != null) {
+            NetworkInterface networkInterface = NetworkInterface.getByName(multicastInterface);
+            if (networkInterface == null) {
+                channel.close();
+                throw new IllegalArgumentException("Unknown multicast interface: " + multicastInterface);
+            }
+            multicastChannel = DatagramChannel.open(StandardProtocolFamily.INET)
+                    .setOption(StandardSocketOptions.SO_REUSEADDR, true)
+                    .bind(new InetSocketAddress(multicastGroup.getPort()));
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+            multicastChannel.join(multicastGroup.getAddress(), networkInterface);
+        } else {
+            multicastChannel = null;
+        }
+
+        announcer = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("chat-relay-announcer").daemon(true).factory());
+    }
+
+    /**
+     * Start receiving and announcing
+     */
+    public void start() {
+        Thread.ofPlatform().name("chat-relay-receiver").daemon(true).start(() -> receive(channel));
+        if (multicastChannel != null) {
+            Thread.ofPlatform().name("chat-relay-multicast").daemon(true).start(() -> receive(multicastChannel));
+        }
+        announcer.scheduleWithFixedDelay(this::announceAll, 0, announceIntervalMs, TimeUnit.MILLISECONDS);
+        logger.info("Chat relay node {} listening on {}:{}", nodeId, advertisedHost, advertisedPort);
+    }
+
+    @Override
+    public void sendToUser(String user, String destination, Object payload) {
+        if (localUsers.containsKey(user)) {
+            messagingTemplate.convertAndSendToUser(user, destination, payload);
+        }
+
+        Map<String, Long> userOwners = owners.get(user);
+        if (userOwners == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        ByteBuffer frame = null;
+        for (Map.Entry<String, Long> owner : userOwners.entrySet()) {
+            InetSocketAddress address = nodes.get(owner.getKey());
+            if (owner.getValue() < now || address == null) {
+                continue;
+            }
+            if (frame == null) {
+                frame = encodeFrame(user, destination, payload);
+                if (frame == null) {
+                    return;
+                }
+            }
+            send(frame.duplicate(), address);
+        }
+    }
+
+    @Override
+    public void sessionOpened(String sessionId, String user) {
+        if (localSessions.putIfAbsent(sessionId, user) != null) {
+            return;
+        }
+        if (localUsers.merge(user, 1, Integer::sum) == 1) {
+            broadcast(encodeDirectory(ANNOUNCE, List.of(user)));
+        }
+    }
+
+    @Override
+    public void sessionClosed(String sessionId) {
+        String user = localSessions.remove(sessionId);
+        if (user == null) {
+            return;
+        }
+        if (localUsers.computeIfPresent(user, (k, count) -> count > 1 ? count - 1 : null) == null) {
+            broadcast(encodeDirectory(WITHDRAW, List.of(user)));
+        }
+    }
+
+    /**
+     * @return Other nodes currently holding sessions for the user
+     */
+    public Set<String> remoteNodesFor(String user) {
+        Map<String, Long> userOwners = owners.get(user);
+        long now = System.currentTimeMillis();
+        return userOwners == null ? Set.of() : userOwners.entrySet().stream()
+                .filter(owner -> owner.getValue() >= now)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public boolean hasRemoteSessions(String user) {
+        return !remoteNodesFor(user).isEmpty();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public int getPort() {
+        return advertisedPort;
+    }
+
+    /**
+     * @return Packets dropped for a bad MAC, age, repeated sequence number, or unknown sender
+     */
+    public long getRejectedPackets() {
+        return rejectedPackets.sum();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        announcer.shutdownNow();
+        // Let the others stop routing to this node right away instead of waiting for expiry
+        encodeAll(WITHDRAW).forEach(this::broadcast);
+        try {
+            channel.close();
+            if (multicastChannel != null) {
+                multicastChannel.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Error closing chat relay: {}", e.getMessage());
+        }
+    }
+
+    private void announceAll() {
+        encodeAll(ANNOUNCE).forEach(this::broadcast);
+
+        long now = System.currentTimeMillis();
+        nodesSeen.forEach((node, expiry) -> {
+            if (expiry < now && nodesSeen.remove(node, expiry)) {
+                nodes.remove(node);
+            }
+        });
+        owners.forEach((user, userOwners) -> {
+            userOwners.values().removeIf(expiry -> expiry < now);
+            if (userOwners.isEmpty()) {
+                owners.remove(user, userOwners);
+            }
+        });
+        // A send time up to the maximum age ahead of our clock still passes the check
+        replayWindows.values().removeIf(window -> window.lastAccepted < now - 2 * MAX_PACKET_AGE_MS);
+    }
+
+    private void receive(DatagramChannel source) {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_PACKET_BYTES + 1024);
+        while (running) {
+            try {
+                buffer.clear();
+                source.receive(buffer);
+                buffer.flip();
+                handle(buffer);
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Dropping chat relay packet: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void handle(ByteBuffer received) {
+        ByteBuffer packet = verify(received);
+        if (packet == null) {
+            rejectedPackets.increment();
+            logger.debug("Dropping unauthenticated chat relay packet");
+            return;
+        }
+        byte type = packet.get();
+        String sender = getString(packet);
+        if (nodeId.equals(sender)) {
+            // Our own announcement, looped back by multicast
+            return;
+        }
+        long packetSequence = received.getLong(received.limit() - MAC_BYTES - 8);
+        if (!replayWindows.computeIfAbsent(sender, k -> new ReplayWindow()).accept(packetSequence)) {
+            rejectedPackets.increment();
+            logger.debug("Dropping replayed chat relay packet {} from {}", packetSequence, sender);
+            return;
+        }
+        if ((type == FRAME || type == WITHDRAW) && !nodes.containsKey(sender)) {
+            // Only nodes that have announced themselves may deliver or withdraw
+            rejectedPackets.increment();
+            logger.debug("Dropping chat relay packet from unknown node {}", sender);
+            return;
+        }
+
+        if (type == FRAME) {
+            String user = getString(packet);
+            String destination = getString(packet);
+            byte[] json = new byte[packet.getInt()];
+            packet.get(json);
+            if (localUsers.containsKey(user)) {
+                messagingTemplate.convertAndSendToUser(user, destination, json,
+                        Map.of(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON));
+            }
+            return;
+        }
+
+        InetSocketAddress address = new InetSocketAddress(getString(packet), packet.getInt());
+        long expiry = System.currentTimeMillis() + TTL_INTERVALS * announceIntervalMs;
+        boolean newNode = learnNode(sender, address, expiry);
+        int count = packet.getInt();
+
+        if (type == NODES) {
+            for (int i = 0; i < count; i++) {
+                String node = getString(packet);
+                InetSocketAddress nodeAddress = new InetSocketAddress(getString(packet), packet.getInt());
+                if (!nodeId.equals(node) && learnNode(node, nodeAddress, expiry)) {
+                    // Introduce ourselves; it answers with its own state
+                    encodeAll(ANNOUNCE).forEach(announcement -> send(announcement, nodeAddress));
+                }
+            }
+            return;
+        }
+
+        for (int i = 0; i < count; i++) {
+            String user = getString(packet);
+            if (type == ANNOUNCE) {
+                owners.computeIfAbsent(user, k -> new ConcurrentHashMap<>()).put(sender, expiry);
+            } else {
+                Map<String, Long> userOwners = owners.get(user);
+                if (userOwners != null) {
+                    userOwners.remove(sender);
+                }
+            }
+        }
+
+        if (newNode) {
+            encodeAll(ANNOUNCE).forEach(announcement -> send(announcement, address));
+            send(encodeNodes(), address);
+        }
+    }
+
+    private boolean learnNode(String node, InetSocketAddress address, long expiry) {
+        nodesSeen.put(node, expiry);
+        return nodes.put(node, address) == null;
+    }
+
+    private ByteBuffer encodeFrame(String user, String destination, Object payload) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            logger.error("Cannot serialize frame for {}: {}", destination, e.getMessage());
+            return null;
+        }
+        byte[] sender = nodeId.getBytes(StandardCharsets.UTF_8);
+        byte[] userBytes = user.getBytes(StandardCharsets.UTF_8);
+        byte[] destinationBytes = destination.getBytes(StandardCharsets.UTF_8);
+        int size = 1 + 2 + sender.length + 2 + userBytes.length + 2 + destinationBytes.length + 4 + json.length;
+        if (size > MAX_PACKET_BYTES) {
+            logger.warn("Frame for {} is too large to relay ({} bytes); the client will catch up from history",
+                    destination, size);
+            return null;
+        }
+        ByteBuffer frame = ByteBuffer.allocate(size).put(FRAME);
+        putString(frame, sender);
+        putString(frame, userBytes);
+        putString(frame, destinationBytes);
+        frame.putInt(json.length).put(json);
+        return seal(frame.flip());
+    }
+
+    private List<ByteBuffer> encodeAll(byte type) {
+        List<ByteBuffer> packets = new ArrayList<>();
+        List<String> chunk = new ArrayList<>();
+        int chunkBytes = 0;
+        for (String user : localUsers.keySet()) {
+            int userBytes = 2 + user.getBytes(StandardCharsets.UTF_8).length;
+            if (chunkBytes + userBytes > MAX_PACKET_BYTES - 512) {
+                packets.add(encodeDirectory(type, chunk));
+                chunk = new ArrayList<>();
+                chunkBytes = 0;
+            }
+            chunk.add(user);
+            chunkBytes += userBytes;
+        }
+        if (!chunk.isEmpty() || packets.isEmpty()) {
+            // An empty announcement still tells the others where this node is
+            packets.add(encodeDirectory(type, chunk));
+        }
+        return packets;
+    }
+
+    private ByteBuffer encodeDirectory(byte type, List<String> users) {
+        ByteBuffer packet = encodeHeader(type).putInt(users.size());
+        users.forEach(user -> putString(packet, user.getBytes(StandardCharsets.UTF_8)));
+        return seal(packet.flip());
+    }
+
+    private ByteBuffer encodeNodes() {
+        ByteBuffer packet = encodeHeader(NODES);
+        List<Map.Entry<String, InetSocketAddress>> known = new ArrayList<>(nodes.entrySet());
+        int count = 0;
+        int countPosition = packet.position();
+        packet.putInt(0);
+        for (Map.Entry<String, InetSocketAddress> node : known) {
+            byte[] id = node.getKey().getBytes(StandardCharsets.UTF_8);
+            byte[] host = node.getValue().getHostString().getBytes(StandardCharsets.UTF_8);
+            if (packet.remaining() < 2 + id.length + 2 + host.length + 4) {
+                break;
+            }
+            putString(packet, id);
+            putString(packet, host);
+            packet.putInt(node.getValue().getPort());
+            count++;
+        }
+        packet.putInt(countPosition, count);
+        return seal(packet.flip());
+    }
+
+    /**
+     * @return The payload followed by its send time, sequence number and MAC
+     */
+    private ByteBuffer seal(ByteBuffer payload) {
+        ByteBuffer packet = ByteBuffer.allocate(payload.remaining() + TRAILER_BYTES)
+                .put(payload)
+                .putLong(System.currentTimeMillis())
+                .putLong(sequence.incrementAndGet());
+        Mac mac = macs.get();
+        mac.update(packet.array(), 0, packet.position());
+        packet.put(mac.doFinal());
+        return packet.flip();
+    }
+
+    /**
+     * @return The payload of an authentic, recent packet, or null
+     */
+    private ByteBuffer verify(ByteBuffer packet) {
+        int payloadLength = packet.remaining() - TRAILER_BYTES;
+        if (payloadLength < 1) {
+            return null;
+        }
+        int start = packet.position();
+        Mac mac = macs.get();
+        mac.update(packet.duplicate().limit(start + payloadLength + 16));
+        byte[] actual = new byte[MAC_BYTES];
+        packet.get(start + payloadLength + 16, actual);
+        if (!MessageDigest.isEqual(mac.doFinal(), actual)) {
+            return null;
+        }
+        long sentAt = packet.getLong(start + payloadLength);
+        if (Math.abs(System.currentTimeMillis() - sentAt) > MAX_PACKET_AGE_MS) {
+            return null;
+        }
+        return packet.duplicate().limit(start + payloadLength);
+    }
+
+    private ByteBuffer encodeHeader(byte type) {
+        ByteBuffer packet = ByteBuffer.allocate(MAX_PACKET_BYTES).put(type);
+        putString(packet, nodeId.getBytes(StandardCharsets.UTF_8));
+        putString(packet, advertisedHost.getBytes(StandardCharsets.UTF_8));
+        packet.putInt(advertisedPort);
+        return packet;
+    }
+
+    private void broadcast(ByteBuffer packet) {
+        for (InetSocketAddress peer : peers) {
+            send(packet.duplicate(), peer);
+        }
+        for (InetSocketAddress node : nodes.values()) {
+            if (!peers.contains(node)) {
+                send(packet.duplicate(), node);
+            }
+        }
+        if (multicastGroup != null) {
+            send(packet.duplicate(), multicastGroup);
+        }
+    }
+
+    private void send(ByteBuffer packet, SocketAddress target) {
+        try {
+            channel.send(packet, target);
+        } catch (IOException e) {
+            if (running) {
+                logger.warn("Chat relay send to {} failed: {}", target, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Sequence numbers seen from one sender: the highest, and which of the
+     * {@link #REPLAY_WINDOW} before it have arrived
+     */
+    private static class ReplayWindow {
+        private final BitSet seen = new BitSet(REPLAY_WINDOW);
+        private long highest;
+        private volatile long lastAccepted = System.currentTimeMillis();
+
+        synchronized boolean accept(long sequence) {
+            if (sequence > highest) {
+                if (sequence - highest >= REPLAY_WINDOW) {
+                    seen.clear();
+                } else {
+                    for (long skipped = highest + 1; skipped < sequence; skipped++) {
+                        seen.clear((int) (skipped % REPLAY_WINDOW));
+                    }
+                }
+                highest = sequence;
+            } else if (highest - sequence >= REPLAY_WINDOW || seen.get((int) (sequence % REPLAY_WINDOW))) {
+                return false;
+            }
+            seen.set((int) (sequence % REPLAY_WINDOW));
+            lastAccepted = System.currentTimeMillis();
+            return true;
+        }
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
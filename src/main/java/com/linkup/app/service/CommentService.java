@@ -1,13 +1,18 @@
 package com.linkup.app.service;
 
+import com.linkup.app.dto.CommentPageResponse;
 import com.linkup.app.dto.CommentResponse;
+import com.linkup.app.dto.FeedCommentRow;
 import com.linkup.app.model.Comment;
 import com.linkup.app.model.Post;
 import com.linkup.app.model.User;
 import com.linkup.app.repository.CommentRepository;
 import com.linkup.app.repository.PostRepository;
 import com.linkup.app.repository.UserRepository;
+import com.linkup.app.util.CursorUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -21,6 +26,9 @@ import java.util.stream.Collectors;
 @Service
 public class CommentService {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
     @Autowired
     private CommentRepository commentRepository;
 
@@ -30,6 +38,9 @@ public class CommentService {
     @Autowired
     private PostRepository postRepository;
 
+    @Autowired
+    private PostCounterService postCounterService;
+
     @Transactional
     public Comment addComment(Long userId, Long postId, String content) {
         User user = userRepository.findById(userId)
@@ -44,7 +55,9 @@ public class CommentService {
         comment.setContent(content);
         comment.setCreatedAt(LocalDateTime.now());
 
-        return commentRepository.save(comment);
+        Comment saved = commentRepository.save(comment);
+        postCounterService.incrementComments(postId, 1);
+        return saved;
     }
 
 
@@ -56,6 +69,48 @@ public class CommentService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Keyset page of a post's comments, newest first. The cursor encodes the
+     * (createdAt, commentId) of the last comment returned.
+     */
+    public CommentPageResponse getPostCommentsPage(Long postId, String before, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        Pageable pageable = PageRequest.of(0, pageSize + 1);
+
+        List<FeedCommentRow> rows;
+        if (before == null || before.isBlank()) {
+            rows = commentRepository.findRowsByPostId(postId, pageable);
+        } else {
+            String[] cursor = CursorUtils.decode(before, 2);
+            rows = commentRepository.findRowsByPostIdBefore(
+                    postId, LocalDateTime.parse(cursor[0]), Long.parseLong(cursor[1]), pageable);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
+        }
+
+        List<CommentResponse> comments = rows.stream()
+                .map(row -> new CommentResponse(
+                        row.getCommentId(),
+                        row.getContent(),
+                        row.getCreatedAt(),
+                        row.getUserId(),
+                        row.getUserName(),
+                        row.getPostId(),
+                        List.of()
+                ))
+                .collect(Collectors.toList());
+
+        String nextCursor = null;
+        if (hasMore) {
+            FeedCommentRow last = rows.get(rows.size() - 1);
+            nextCursor = CursorUtils.encode(last.getCreatedAt(), last.getCommentId());
+        }
+        return new CommentPageResponse(comments, nextCursor);
+    }
+
     private CommentResponse convertToCommentResponseWithReplies(Comment comment) {
         CommentResponse response = new CommentResponse(
                 comment.getCommentId(),
@@ -98,10 +153,12 @@ public class CommentService {
         }
 
         commentRepository.delete(comment);
+        postCounterService.incrementComments(comment.getPost().getPostId(), -1);
     }
 
     public int getCommentsCount(Long postId) {
-        return commentRepository.countByPostPostId(postId);
+        long stored = postRepository.findCommentsCountByPostId(postId).orElse(0L);
+        return (int) (stored + postCounterService.pendingComments(postId));
     }
 
     @Transactional
@@ -0,0 +1,250 @@
+package com.linkup.app.service;
+
+import com.linkup.app.dto.ConversationSummary;
+import com.linkup.app.dto.MessageRow;
+import com.linkup.app.model.Conversation;
+import com.linkup.app.model.Message;
+import com.linkup.app.model.User;
+import com.linkup.app.repository.ConversationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-pair conversation rows that back the inbox.
+ *
+ * Each pair of users has one row under a canonical (low id, high id) key holding the
+ * last message and an unread counter for each side. The row is created once, outside
+ * any transaction, and then moved forward by a single atomic UPDATE in the same
+ * transaction as every message insert, so the inbox is one indexed read instead of a
+ * scan over the messages table.
+ *
+ * On startup, every pair that has messages but no row yet gets one built from those
+ * messages; the backfill only inserts missing pairs, so a first message or another
+ * node backfilling at the same time costs a retry rather than failing startup on the
+ * unique pair key. A nightly pass repeats the backfill for pairs that nodes running
+ * older code wrote messages for, then recomputes every row's last message and unread
+ * counts from the messages table to repair drift.
+ */
+@Service
+public class ConversationService implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationService.class);
+
+    private static final int BACKFILL_ATTEMPTS = 3;
+
+    private static final String BACKFILL_PAIRS_SQL =
+            "INSERT INTO conversations (user_low_id, user_high_id, last_message_id, unread_low, unread_high) " +
+            "SELECT LEAST(m.sender_id, m.receiver_id), GREATEST(m.sender_id, m.receiver_id), MAX(m.message_id), " +
+            "SUM(CASE WHEN m.receiver_id < m.sender_id AND m.status <> 'READ' THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN m.receiver_id > m.sender_id AND m.status <> 'READ' THEN 1 ELSE 0 END) " +
+            "FROM messages m " +
+            "WHERE NOT EXISTS (SELECT 1 FROM conversations c " +
+            "WHERE c.user_low_id = LEAST(m.sender_id, m.receiver_id) " +
+            "AND c.user_high_id = GREATEST(m.sender_id, m.receiver_id)) " +
+            "GROUP BY LEAST(m.sender_id, m.receiver_id), GREATEST(m.sender_id, m.receiver_id)";
+    private static final String BACKFILL_LAST_SQL =
+            "UPDATE conversations c SET " +
+            "last_message_at = (SELECT m.timestamp FROM messages m WHERE m.message_id = c.last_message_id), " +
+            "last_sender_id = (SELECT m.sender_id FROM messages m WHERE m.message_id = c.last_message_id), " +
+            "last_message_preview = (SELECT SUBSTRING(m.content, 1, " + Conversation.PREVIEW_LENGTH + ") " +
+            "FROM messages m WHERE m.message_id = c.last_message_id) " +
+            "WHERE c.last_message_at IS NULL AND c.last_message_id IS NOT NULL";
+    private static final String LOCK_RANGE_SQL =
+            "SELECT id FROM conversations WHERE id > ? AND id <= ? FOR UPDATE";
+    private static final String PAIR_LAST_MESSAGE =
+            "(SELECT MAX(m.message_id) FROM messages m " +
+            "WHERE (m.sender_id = c.user_low_id AND m.receiver_id = c.user_high_id) " +
+            "OR (m.sender_id = c.user_high_id AND m.receiver_id = c.user_low_id))";
+    // last_message_at is cleared where the last message changes, before last_message_id
+    // moves, and filled in again by BACKFILL_LAST_SQL
+    private static final String RECONCILE_SQL =
+            "UPDATE conversations c SET " +
+            "last_message_at = CASE WHEN c.last_message_id = " + PAIR_LAST_MESSAGE +
+            " THEN c.last_message_at ELSE NULL END, " +
+            "last_message_id = " + PAIR_LAST_MESSAGE + ", " +
+            "unread_low = (SELECT COUNT(*) FROM messages m WHERE m.sender_id = c.user_high_id " +
+            "AND m.receiver_id = c.user_low_id AND m.status <> 'READ'), " +
+            "unread_high = (SELECT COUNT(*) FROM messages m WHERE m.sender_id = c.user_low_id " +
+            "AND m.receiver_id = c.user_high_id AND m.status <> 'READ') " +
+            "WHERE c.id > ? AND c.id <= ?";
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.conversations.backfill-on-startup:true}")
+    private boolean backfillOnStartup;
+
+    @Value("${app.conversations.reconcile-batch-size:1000}")
+    private int reconcileBatchSize;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (backfillOnStartup) {
+            backfillWithRetries();
+        }
+    }
+
+    private void backfillWithRetries() {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                backfill();
+                return;
+            } catch (DataIntegrityViolationException e) {
+                // A pair got its row between the NOT EXISTS check and the insert
+                if (attempt == BACKFILL_ATTEMPTS) {
+                    logger.warn("Conversation backfill gave up after {} attempts: {}", attempt, e.getMessage());
+                    return;
+                }
+                logger.info("Conversation backfill raced with another insert, retrying");
+            }
+        }
+    }
+
+    /**
+     * Make sure the pair has a conversation row. Call outside a transaction: a
+     * concurrent first message may win the insert, which is fine.
+     */
+    public void ensureConversation(Long userId, Long otherUserId) {
+        Long lowId = Math.min(userId, otherUserId);
+        Long highId = Math.max(userId, otherUserId);
+        if (conversationRepository.existsByUserLowIdAndUserHighId(lowId, highId)) {
+            return;
+        }
+        try {
+            conversationRepository.insertPair(lowId, highId);
+        } catch (DataIntegrityViolationException e) {
+            // Another message between the same two users created it first
+        }
+    }
+
+    /**
+     * Move the conversation forward to this message and count it as unread for the
+     * receiver. Call in the transaction that inserts the message, after
+     * {@link #ensureConversation}.
+     */
+    public void recordMessage(Message message) {
+        recordMessages(List.of(new MessageRow(message.getMessageId(), message.getSender().getUserId(),
+                message.getReceiver().getUserId(), message.getContent(), message.getTimestamp(),
+                message.getStatus())));
+    }
+
+    /**
+     * {@link #recordMessage} for a batch: one UPDATE per conversation, however many
+     * of its messages are in the batch
+     */
+    public void recordMessages(List<MessageRow> messages) {
+        Map<List<Long>, MessageRow> latest = new HashMap<>();
+        Map<List<Long>, int[]> unread = new HashMap<>();
+        for (MessageRow message : messages) {
+            Long lowId = Math.min(message.getSenderId(), message.getReceiverId());
+            Long highId = Math.max(message.getSenderId(), message.getReceiverId());
+            List<Long> pair = List.of(lowId, highId);
+            latest.merge(pair, message, (a, b) -> a.getMessageId() > b.getMessageId() ? a : b);
+            int[] counts = unread.computeIfAbsent(pair, k -> new int[2]);
+            if (message.getReceiverId().equals(lowId)) {
+                counts[0]++;
+            }
+            if (message.getReceiverId().equals(highId)) {
+                counts[1]++;
+            }
+        }
+
+        latest.forEach((pair, message) -> {
+            int[] counts = unread.get(pair);
+            int updated = conversationRepository.recordMessage(pair.get(0), pair.get(1), message.getSenderId(),
+                    message.getMessageId(), message.getTimestamp(), preview(message.getContent()),
+                    counts[0], counts[1]);
+            if (updated == 0) {
+                throw new IllegalStateException("No conversation between users " + pair.get(0) + " and " + pair.get(1));
+            }
+        });
+    }
+
+    public List<ConversationSummary> getInbox(Long userId) {
+        return conversationRepository.findInbox(userId);
+    }
+
+    public List<User> getChatPartners(Long userId) {
+        return conversationRepository.findChatPartners(userId);
+    }
+
+    /**
+     * Take messages the reader has just read off their unread counter. Call in the
+     * transaction whose status UPDATE moved them to READ, with its row count.
+     */
+    public void markRead(Long readerId, Long otherUserId, int read) {
+        if (read > 0) {
+            conversationRepository.decrementUnread(Math.min(readerId, otherUserId),
+                    Math.max(readerId, otherUserId), readerId, read);
+        }
+    }
+
+    /**
+     * Build conversation rows for every pair that has messages but no row yet.
+     * @return Number of conversations created
+     */
+    public int backfill() {
+        int created = jdbcTemplate.update(BACKFILL_PAIRS_SQL);
+        if (created > 0) {
+            jdbcTemplate.update(BACKFILL_LAST_SQL);
+        }
+        logger.info("Conversation backfill created {} conversations", created);
+        return created;
+    }
+
+    /**
+     * Backfill missing pairs, then recompute every conversation's last message and
+     * unread counts from the messages table, in id ranges. Each range's rows are
+     * locked first, so a message saved meanwhile either committed before the recount
+     * saw it or waits for the range to finish; its own relative UPDATE then applies
+     * on top of the fresh counts.
+     */
+    @Scheduled(cron = "${app.conversations.reconcile-cron:0 15 3 * * *}")
+    public void reconcile() {
+        backfillWithRetries();
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM conversations", Long.class);
+        if (maxId == null) {
+            return;
+        }
+
+        int updated = 0;
+        for (long from = 0; from < maxId; from += reconcileBatchSize) {
+            long low = from;
+            long high = from + reconcileBatchSize;
+            Integer rows = transactionTemplate.execute(status -> {
+                jdbcTemplate.queryForList(LOCK_RANGE_SQL, Long.class, low, high);
+                int changed = jdbcTemplate.update(RECONCILE_SQL, low, high);
+                jdbcTemplate.update(BACKFILL_LAST_SQL + " AND c.id > ? AND c.id <= ?", low, high);
+                return changed;
+            });
+            updated += rows == null ? 0 : rows;
+        }
+        logger.info("Reconciled {} conversations with the messages table", updated);
+    }
+
+    static String preview(String content) {
+        if (content == null || content.length() <= Conversation.PREVIEW_LENGTH) {
+            return content;
+        }
+        return content.substring(0, Conversation.PREVIEW_LENGTH - 1) + "…";
+    }
+}
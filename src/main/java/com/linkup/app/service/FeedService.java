@@ -0,0 +1,140 @@
+package com.linkup.app.service;
+
+import com.linkup.app.dto.CommentResponse;
+import com.linkup.app.dto.FeedCommentRow;
+import com.linkup.app.dto.FeedContentRow;
+import com.linkup.app.dto.FeedPageResponse;
+import com.linkup.app.dto.FeedPostRow;
+import com.linkup.app.dto.PostResponse;
+import com.linkup.app.model.Content;
+import com.linkup.app.repository.CommentRepository;
+import com.linkup.app.repository.ContentRepository;
+import com.linkup.app.repository.PostRepository;
+import com.linkup.app.util.CursorUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read model for the home feed.
+ *
+ * A page is assembled from a fixed number of projection queries (posts + authors
+ * with their denormalized counters, contents, latest comments) regardless of page size,
+ * instead of walking lazy associations on every Post entity. Each post carries only a
+ * preview of its newest comments; the full thread is paged via CommentController.
+ */
+@Service
+public class FeedService {
+
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 50;
+
+    @Value("${app.feed.comment-preview-size:3}")
+    private int commentPreviewSize;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private ContentRepository contentRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private PostCounterService postCounterService;
+
+    /**
+     * Returns one page of the home feed using keyset pagination on postId,
+     * so the cost of a page does not depend on how deep into the feed it is.
+     *
+     * @param before Opaque cursor from a previous page, or null for the newest posts
+     * @param limit Requested page size, clamped to [1, MAX_PAGE_SIZE]
+     * @return The page plus the cursor for the next (older) page
+     */
+    @Transactional(readOnly = true)
+    public FeedPageResponse getFeed(String before, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        // Fetch one extra row to know whether an older page exists
+        Pageable pageable = PageRequest.of(0, pageSize + 1);
+        List<FeedPostRow> rows = before == null || before.isBlank()
+                ? postRepository.findFeedRows(pageable)
+                : postRepository.findFeedRowsBefore(Long.parseLong(CursorUtils.decode(before, 1)[0]), pageable);
+
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
+        }
+        if (rows.isEmpty()) {
+            return new FeedPageResponse(List.of(), null);
+        }
+
+        List<Long> postIds = rows.stream().map(FeedPostRow::getPostId).toList();
+
+        Map<Long, PostResponse> responses = new HashMap<>();
+        List<PostResponse> page = new ArrayList<>();
+        for (FeedPostRow row : rows) {
+            PostResponse response = new PostResponse();
+            response.setPostId(row.getPostId());
+            response.setPostType(row.getPostType());
+            response.setCreatedAt(row.getCreatedAt());
+            response.setDescription(row.getDescription());
+            response.setUserId(row.getUserId());
+            response.setUserName(row.getUserName());
+            response.setLikesCount((int) (row.getLikesCount() + postCounterService.pendingLikes(row.getPostId())));
+            response.setCommentsCount((int) (row.getCommentsCount() + postCounterService.pendingComments(row.getPostId())));
+            response.setContents(new LinkedHashSet<>());
+            response.setComments(new ArrayList<>());
+            responses.put(row.getPostId(), response);
+            page.add(response);
+        }
+
+        for (FeedContentRow row : contentRepository.findFeedRowsByPostIds(postIds)) {
+            responses.get(row.getPostId()).getContents().add(toContent(row));
+        }
+
+        for (FeedCommentRow row : commentRepository.findLatestRowsByPostIds(postIds, commentPreviewSize)) {
+            responses.get(row.getPostId()).getComments().add(new CommentResponse(
+                    row.getCommentId(),
+                    row.getContent(),
+                    row.getCreatedAt(),
+                    row.getUserId(),
+                    row.getUserName(),
+                    row.getPostId(),
+                    List.of()
+            ));
+        }
+
+        String nextCursor = hasMore ? CursorUtils.encode(rows.get(rows.size() - 1).getPostId()) : null;
+        return new FeedPageResponse(page, nextCursor);
+    }
+
+    private Content toContent(FeedContentRow row) {
+        // Detached value object for serialization only; the post back-reference is never rendered
+        Content content = new Content();
+        content.setId(row.getId());
+        content.setPath(row.getPath());
+        content.setContentType(row.getContentType());
+        content.setTag(row.getTag());
+        content.setFileName(row.getFileName());
+        content.setFileSize(row.getFileSize());
+        content.setFileType(row.getFileType());
+        content.setDuration(row.getDuration());
+        content.setWidth(row.getWidth());
+        content.setHeight(row.getHeight());
+        content.setPlaceholder(row.getPlaceholder());
+        content.setThumbnailPath(row.getThumbnailPath());
+        content.setMediumPath(row.getMediumPath());
+        return content;
+    }
+}
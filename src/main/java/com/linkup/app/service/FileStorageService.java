@@ -1,16 +1,36 @@
 package com.linkup.app.service;
 
+import com.linkup.app.model.Content;
+import com.linkup.app.util.ImageMetadata;
+import com.linkup.app.util.ImageUtils;
+import com.linkup.app.util.MediaStorageLayout;
+import com.linkup.app.util.VideoMetadata;
+import com.linkup.app.util.VideoUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -19,6 +39,26 @@ import java.util.stream.Stream;
 @Service
 public class FileStorageService {
 
+    private static final Logger logger = LoggerFactory.getLogger(FileStorageService.class);
+
+    private static final long STREAM_CHUNK_BYTES = 1024 * 1024;
+    private static final int STAGING_READ_BYTES = 64 * 1024;
+
+    @Autowired
+    private MediaBlobService mediaBlobService;
+
+    @Autowired
+    private MediaStorageLayout storageLayout;
+
+    @Autowired
+    private VideoUtils videoUtils;
+
+    @Autowired
+    private ImageUtils imageUtils;
+
+    @Autowired
+    private HotMediaCache hotMediaCache;
+
     @Value("${file.upload-dir}")
     private String uploadDir;
 
@@ -43,9 +83,8 @@ public class FileStorageService {
             }
 
             // Log file details
-            System.out.println("Processing file: " + file.getOriginalFilename() +
-                    ", size: " + file.getSize() +
-                    ", content type: " + file.getContentType());
+            logger.debug("Processing file: {}, size: {}, content type: {}",
+                    file.getOriginalFilename(), file.getSize(), file.getContentType());
 
             // Check file type
             String fileType = file.getContentType();
@@ -53,29 +92,241 @@ public class FileStorageService {
                 throw new IOException("File type not allowed: " + fileType);
             }
 
-            // Generate unique filename
             String originalFilename = StringUtils.cleanPath(file.getOriginalFilename());
             String extension = getFileExtension(originalFilename);
-            String newFilename = UUID.randomUUID().toString() +
-                    (extension.isEmpty() ? "" : "." + extension);
-
-            // Create upload directory if it doesn't exist
-            Path uploadPath = Paths.get(uploadDir).toAbsolutePath().normalize();
-            System.out.println("Upload path: " + uploadPath);
-            Files.createDirectories(uploadPath);
-
-            // Save the file
-            Path targetLocation = uploadPath.resolve(newFilename);
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
-            System.out.println("File saved successfully to: " + targetLocation);
 
-            return newFilename;
+            // Move the multipart part into the staging area. The container has already
+            // spooled it to disk there (see UploadConfig), so this is a rename on the same
+            // filesystem rather than a second copy of every byte.
+            Path stagedFile = newStagingFile();
+            try {
+                file.transferTo(stagedFile.toFile());
+                // Reading the spooled bytes back to hash them costs a read, not a write
+                String hash = sha256(stagedFile);
+                validateVideo(stagedFile, fileType);
+                String blobName = mediaBlobService.acquire(stagedFile, hash, extension, file.getSize());
+                logger.info("File stored as blob: {}", blobName);
+                return blobName;
+            } finally {
+                Files.deleteIfExists(stagedFile);
+            }
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.warn("Failed to store file", e);
             throw new IOException("Failed to store file: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Streams a raw request body into storage with no multipart spooling in between,
+     * hashing it on the way so it can be deduplicated like any other upload.
+     *
+     * @param in The request body
+     * @param contentType MIME type declared by the client
+     * @param originalFilename Client-side file name, used only for the extension
+     * @param maxBytes Upload is aborted once the body exceeds this size
+     * @return The stored file name
+     */
+    public String storeStream(InputStream in, String contentType, String originalFilename, long maxBytes)
+            throws IOException {
+        if (!isAllowedFileType(contentType)) {
+            throw new IOException("File type not allowed: " + contentType);
+        }
+
+        String extension = originalFilename == null ? "" : getFileExtension(StringUtils.cleanPath(originalFilename));
+        MessageDigest digest = newSha256();
+        Path stagedFile = newStagingFile();
+
+        try {
+            long written = 0;
+            try (ReadableByteChannel source = Channels.newChannel(new DigestInputStream(in, digest));
+                 FileChannel target = FileChannel.open(stagedFile,
+                         StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long transferred;
+                // Single pass: each chunk is digested and written to the staged file once.
+                // The channel adapter over an InputStream still copies through a heap
+                // buffer; transferFrom only saves writing the read loop by hand here.
+                while ((transferred = target.transferFrom(source, written, STREAM_CHUNK_BYTES)) > 0) {
+                    written += transferred;
+                    if (written > maxBytes) {
+                        throw new IOException("Upload exceeds maximum size of " + maxBytes + " bytes");
+                    }
+                }
+            }
+            if (written == 0) {
+                throw new IOException("Failed to store empty file");
+            }
+
+            validateVideo(stagedFile, contentType);
+            String blobName = mediaBlobService.acquire(
+                    stagedFile, HexFormat.of().formatHex(digest.digest()), extension, written);
+            logger.info("Streamed file stored as blob: {}", blobName);
+            return blobName;
+        } finally {
+            Files.deleteIfExists(stagedFile);
+        }
+    }
+
+    /**
+     * Create the staging file of a resumable upload at its full length, so chunks are
+     * written into place positionally. The file is sparse and no disk space is
+     * reserved: a disk that fills up later still fails a chunk write. Only a staging
+     * filesystem that is already too small for the upload is refused here.
+     *
+     * @param uploadId Upload session ID
+     * @param size Total size in bytes
+     * @throws IOException if there is not enough usable space for the upload
+     */
+    public void preallocateUpload(String uploadId, long size) throws IOException {
+        Path staged = uploadFile(uploadId);
+        long usable = Files.getFileStore(staged.getParent()).getUsableSpace();
+        if (usable < size) {
+            throw new IOException("Not enough disk space for " + size + " bytes (" + usable + " usable)");
+        }
+        try (RandomAccessFile file = new RandomAccessFile(staged.toFile(), "rw")) {
+            file.setLength(size);
+        }
+    }
+
+    /**
+     * Write one chunk of a resumable upload at its offset in the staging file.
+     *
+     * @param uploadId Upload session ID
+     * @param offset Position of the first byte of the chunk
+     * @param in The chunk bytes
+     * @param maxBytes The chunk is rejected once it exceeds this size
+     * @return Number of bytes written
+     */
+    public long writeUploadChunk(String uploadId, long offset, InputStream in, long maxBytes) throws IOException {
+        long written = 0;
+        try (ReadableByteChannel source = Channels.newChannel(in);
+             FileChannel target = FileChannel.open(uploadFile(uploadId), StandardOpenOption.WRITE)) {
+            long transferred;
+            // Ask for one byte more than allowed so an oversized chunk is detected
+            while ((transferred = target.transferFrom(source, offset + written,
+                    Math.min(STREAM_CHUNK_BYTES, maxBytes - written + 1))) > 0) {
+                written += transferred;
+                if (written > maxBytes) {
+                    throw new IOException("Chunk exceeds maximum size of " + maxBytes + " bytes");
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Store a completed resumable upload like any other upload: hash, validate and
+     * move it into the blob store. The staged file is consumed.
+     *
+     * @param uploadId Upload session ID
+     * @param contentType MIME type declared by the client
+     * @param originalFilename Client-side file name, used only for the extension
+     * @param size Total size in bytes
+     * @return The stored file name
+     */
+    public String storeUpload(String uploadId, String contentType, String originalFilename, long size)
+            throws IOException {
+        Path stagedFile = uploadFile(uploadId);
+        try {
+            // Drop any stray byte an oversized last chunk may have left past the end
+            try (FileChannel channel = FileChannel.open(stagedFile, StandardOpenOption.WRITE)) {
+                channel.truncate(size);
+            }
+            String extension = originalFilename == null ? "" : getFileExtension(StringUtils.cleanPath(originalFilename));
+            String hash = sha256(stagedFile);
+            validateVideo(stagedFile, contentType);
+            String blobName = mediaBlobService.acquire(stagedFile, hash, extension, size);
+            logger.info("Resumable upload {} stored as blob: {}", uploadId, blobName);
+            return blobName;
+        } finally {
+            Files.deleteIfExists(stagedFile);
+        }
+    }
+
+    /**
+     * Discard the staged bytes of a cancelled or abandoned resumable upload
+     * @param uploadId Upload session ID
+     */
+    public void deleteUpload(String uploadId) {
+        try {
+            Files.deleteIfExists(uploadFile(uploadId));
+        } catch (IOException e) {
+            logger.warn("Failed to delete upload {}: {}", uploadId, e.getMessage());
+        }
+    }
+
+    /**
+     * Release a stored file: drops one blob reference and deletes the file once nothing
+     * references it. Used when a post is deleted or its creation is rolled back.
+     * @param fileName The name returned by storeFile
+     */
+    public void deleteFile(String fileName) {
+        try {
+            mediaBlobService.release(fileName);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to release file {}: {}", fileName, e.getMessage());
+        }
+        // Deleted media must stop being served from memory, variants included
+        hotMediaCache.invalidate(fileName);
+        hotMediaCache.invalidate(storageLayout.variantName(fileName, ImageDerivativeService.THUMBNAIL));
+        hotMediaCache.invalidate(storageLayout.variantName(fileName, ImageDerivativeService.MEDIUM));
+    }
+
+    /**
+     * Fill in fileType and the header-derived metadata of a Content whose path and
+     * contentType are set: dimensions and placeholder for images, duration and
+     * dimensions for videos. Only headers are read, plus a heavily subsampled decode
+     * for the image placeholder.
+     *
+     * @param content Content referencing a stored file
+     * @throws IOException if a stored video cannot be parsed
+     */
+    public void populateMediaMetadata(Content content) throws IOException {
+        String contentType = content.getContentType();
+        Path file = storageLayout.resolve(content.getPath());
+
+        if (isImageFile(contentType)) {
+            content.setFileType("image");
+            try {
+                ImageMetadata metadata = imageUtils.readMetadata(file);
+                content.setWidth(metadata.getWidth());
+                content.setHeight(metadata.getHeight());
+                content.setPlaceholder(metadata.getPlaceholder());
+            } catch (IOException | RuntimeException e) {
+                // The image is still served; clients just cannot reserve its box up front
+                logger.warn("Could not read image metadata for {}: {}", content.getPath(), e.getMessage());
+            }
+        } else if (isVideoFile(contentType)) {
+            content.setFileType("video");
+            // The length limit was already enforced at upload
+            VideoMetadata metadata = videoUtils.readMetadata(file);
+            content.setDuration((int) Math.ceil(metadata.getDurationSeconds()));
+            content.setWidth(metadata.getWidth());
+            content.setHeight(metadata.getHeight());
+        } else {
+            content.setFileType("unknown");
+        }
+    }
+
+    /**
+     * Rejects videos that cannot be parsed or exceed file.max-video-duration-seconds,
+     * before their bytes are committed to the store
+     */
+    private void validateVideo(Path stagedFile, String contentType) throws IOException {
+        if (isVideoFile(contentType) && !videoUtils.isVideoDurationValid(stagedFile)) {
+            throw new IOException("Video exceeds maximum duration of " + maxVideoDurationSeconds + " seconds");
+        }
+    }
+
+    /**
+     * The type/subtype of a Content-Type header without its parameters, so
+     * "image/png; name=a.png" is checked and stored as "image/png"
+     * @throws IllegalArgumentException if the header is missing or malformed
+     */
+    public String mimeType(String contentType) {
+        MediaType mediaType = MediaType.parseMediaType(contentType);
+        return mediaType.getType() + "/" + mediaType.getSubtype();
+    }
+
     public boolean isAllowedFileType(String contentType) {
         List<String> allowedTypes = getAllowedFileTypes();
         return allowedTypes.contains(contentType);
@@ -96,6 +347,42 @@ public class FileStorageService {
                 .collect(Collectors.toList());
     }
 
+    private Path newStagingFile() throws IOException {
+        return stagingDir().resolve("staged-" + UUID.randomUUID());
+    }
+
+    private Path stagingDir() throws IOException {
+        Path stagingPath = Paths.get(uploadDir).toAbsolutePath().normalize().resolve(".multipart");
+        Files.createDirectories(stagingPath);
+        return stagingPath;
+    }
+
+    private Path uploadFile(String uploadId) throws IOException {
+        // Session IDs are UUIDs; parsing also keeps anything else out of the path
+        return stagingDir().resolve("upload-" + UUID.fromString(uploadId));
+    }
+
+    private String sha256(Path file) throws IOException {
+        MessageDigest digest = newSha256();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(STAGING_READ_BYTES);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
     private String getFileExtension(String filename) {
         int dotIndex = filename.lastIndexOf(".");
         return (dotIndex > 0) ? filename.substring(dotIndex + 1) : "";
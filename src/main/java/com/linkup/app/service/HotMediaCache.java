@@ -0,0 +1,414 @@
+package com.linkup.app.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Size-bounded, off-heap cache of small media files in front of the uploads directory.
+ *
+ * File bytes are held in direct ByteBuffers, so a few hundred MB of hot images do not
+ * add to heap pressure or GC pauses. Eviction follows W-TinyLFU: new entries land in
+ * a small LRU window; entries leaving the window only enter the main area (an SLRU
+ * split into probation and protected) if a frequency sketch says they are used more
+ * often than the entry they would push out. A burst of one-off requests therefore
+ * cannot flush avatars and trending images that are requested all day.
+ *
+ * A miss only allocates a buffer when the file would be kept: while the cache has
+ * room, or once the sketch has seen the file before. One-off requests are served
+ * from disk without touching off-heap memory.
+ *
+ * Hits take no lock: entries are looked up in a concurrent map and the access is
+ * queued for the policy, which is updated in batches by whichever thread gets the
+ * lock. Misses read from disk anyway and update the policy under the lock.
+ *
+ * Entries are keyed by stored file name and checked against the file's size and
+ * modification time on every hit. Deleted media is dropped with {@link #invalidate}.
+ */
+@Service
+public class HotMediaCache {
+
+    private static final double WINDOW_SHARE = 0.01;
+    private static final double PROTECTED_SHARE = 0.8;
+    private static final int ACCESS_BUFFER_SIZE = 1024;
+    private static final int DRAIN_THRESHOLD = 64;
+
+    private final boolean enabled;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final long windowMaxBytes;
+    private final long mainMaxBytes;
+    private final long protectedMaxBytes;
+
+    // Read without the lock; changed only together with the policy below, under it
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // Eviction policy, guarded by policyLock
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Entry> protectedArea = new LinkedHashMap<>(16, 0.75f, true);
+    private long windowBytes;
+    private long probationBytes;
+    private long protectedBytes;
+    private long generation;
+
+    private final FrequencySketch sketch;
+
+    // Hits not yet applied to the policy. Lossy once full, like the sketch itself
+    private final ConcurrentLinkedQueue<String> accesses = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingAccesses = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public HotMediaCache(@Value("${file.hot-cache.enabled:true}") boolean enabled,
+                         @Value("${file.hot-cache.max-size:64MB}") DataSize maxSize,
+                         @Value("${file.hot-cache.max-entry-size:512KB}") DataSize maxEntrySize,
+                         ObjectProvider<MeterRegistry> meterRegistry) {
+        this.enabled = enabled;
+        this.maxBytes = maxSize.toBytes();
+        this.maxEntryBytes = Math.min(maxEntrySize.toBytes(), maxBytes);
+        this.windowMaxBytes = Math.max((long) (maxBytes * WINDOW_SHARE), maxEntryBytes);
+        this.mainMaxBytes = Math.max(maxBytes - windowMaxBytes, 0);
+        this.protectedMaxBytes = (long) (mainMaxBytes * PROTECTED_SHARE);
+        // Sized for the number of entries the cache can hold at a typical 16 KB per file
+        this.sketch = new FrequencySketch((int) Math.min(Math.max(maxBytes / (16 * 1024), 64), 1 << 24));
+
+        meterRegistry.ifAvailable(this::registerMetrics);
+    }
+
+    /**
+     * The file's bytes, from memory when cached, otherwise read from disk and offered
+     * to the cache.
+     *
+     * @param key Stored file name
+     * @param file Its location on disk
+     * @param size Current size, from the file's attributes
+     * @param lastModified Current modification time in millis, from the file's attributes
+     * @return A read-only buffer positioned at 0 with the whole file, or null if the
+     *         file is too large or not worth caching (callers then serve it from disk)
+     */
+    public ByteBuffer get(String key, Path file, long size, long lastModified) throws IOException {
+        if (!enabled || size > maxEntryBytes) {
+            return null;
+        }
+
+        Entry cached = entries.get(key);
+        if (cached != null && cached.lastModified == lastModified && cached.size() == size) {
+            hits.increment();
+            recordHit(key);
+            return cached.data.asReadOnlyBuffer();
+        }
+
+        misses.increment();
+        long loadGeneration;
+        policyLock.lock();
+        try {
+            drainAccesses();
+            sketch.increment(key);
+            if (!worthLoading(key, size)) {
+                return null;
+            }
+            loadGeneration = generation;
+        } finally {
+            policyLock.unlock();
+        }
+
+        ByteBuffer data = read(file, size);
+        if (data == null) {
+            return null;
+        }
+
+        policyLock.lock();
+        try {
+            // Skip the insert if an invalidation ran while we were reading the file
+            if (generation == loadGeneration) {
+                remove(key);
+                insert(new Entry(key, data, lastModified));
+            }
+        } finally {
+            policyLock.unlock();
+        }
+        return data.asReadOnlyBuffer();
+    }
+
+    /**
+     * Drop a file from the cache, e.g. because its post was deleted
+     * @param key Stored file name
+     */
+    public void invalidate(String key) {
+        policyLock.lock();
+        try {
+            generation++;
+            remove(key);
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    public long getBytesHeld() {
+        policyLock.lock();
+        try {
+            return windowBytes + probationBytes + protectedBytes;
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private void recordHit(String key) {
+        if (pendingAccesses.incrementAndGet() <= ACCESS_BUFFER_SIZE) {
+            accesses.offer(key);
+        } else {
+            pendingAccesses.decrementAndGet();
+        }
+        if (pendingAccesses.get() >= DRAIN_THRESHOLD && policyLock.tryLock()) {
+            try {
+                drainAccesses();
+            } finally {
+                policyLock.unlock();
+            }
+        }
+    }
+
+    private void drainAccesses() {
+        String key;
+        while ((key = accesses.poll()) != null) {
+            pendingAccesses.decrementAndGet();
+            sketch.increment(key);
+            // Moves the entry up its segment; nothing if it was evicted meanwhile
+            lookup(key);
+        }
+    }
+
+    /**
+     * Decided before the buffer is allocated: load while there is room, otherwise only
+     * files seen before. A first sighting would most likely be refused when it leaves
+     * the window.
+     */
+    private boolean worthLoading(String key, long size) {
+        return windowBytes + probationBytes + protectedBytes + size <= maxBytes
+                || sketch.frequency(key) > 1;
+    }
+
+    private Entry lookup(String key) {
+        Entry entry = window.get(key);
+        if (entry != null) {
+            return entry;
+        }
+        entry = protectedArea.get(key);
+        if (entry != null) {
+            return entry;
+        }
+
+        // A second hit while on probation earns a place in the protected segment
+        entry = probation.remove(key);
+        if (entry != null) {
+            probationBytes -= entry.size();
+            protectedArea.put(key, entry);
+            protectedBytes += entry.size();
+            while (protectedBytes > protectedMaxBytes) {
+                Entry demoted = protectedArea.pollFirstEntry().getValue();
+                protectedBytes -= demoted.size();
+                probation.put(demoted.key, demoted);
+                probationBytes += demoted.size();
+            }
+        }
+        return entry;
+    }
+
+    private void insert(Entry entry) {
+        window.put(entry.key, entry);
+        windowBytes += entry.size();
+        entries.put(entry.key, entry);
+        while (windowBytes > windowMaxBytes) {
+            Entry candidate = window.pollFirstEntry().getValue();
+            windowBytes -= candidate.size();
+            admit(candidate);
+        }
+    }
+
+    /**
+     * TinyLFU admission: the window's eldest entry replaces main-area victims only if
+     * it is more frequently used than every one of them. The victims are picked first
+     * (probation before protected, eldest first) and only evicted once the candidate
+     * has won, so a refused candidate costs the main area nothing.
+     */
+    private void admit(Entry candidate) {
+        int candidateFrequency = sketch.frequency(candidate.key);
+        long needed = probationBytes + protectedBytes + candidate.size() - mainMaxBytes;
+        List<Entry> victims = new ArrayList<>();
+        for (LinkedHashMap<String, Entry> segment : List.of(probation, protectedArea)) {
+            for (Entry victim : segment.values()) {
+                if (needed <= 0) {
+                    break;
+                }
+                if (sketch.frequency(victim.key) >= candidateFrequency) {
+                    entries.remove(candidate.key, candidate);
+                    evictions.increment();
+                    return;
+                }
+                victims.add(victim);
+                needed -= victim.size();
+            }
+        }
+        if (needed > 0) {
+            // Larger than the whole main area
+            entries.remove(candidate.key, candidate);
+            evictions.increment();
+            return;
+        }
+
+        for (Entry victim : victims) {
+            remove(victim.key);
+            evictions.increment();
+        }
+        probation.put(candidate.key, candidate);
+        probationBytes += candidate.size();
+    }
+
+    private void remove(String key) {
+        entries.remove(key);
+        Entry entry;
+        if ((entry = window.remove(key)) != null) {
+            windowBytes -= entry.size();
+        } else if ((entry = probation.remove(key)) != null) {
+            probationBytes -= entry.size();
+        } else if ((entry = protectedArea.remove(key)) != null) {
+            protectedBytes -= entry.size();
+        }
+    }
+
+    private ByteBuffer read(Path file, long size) throws IOException {
+        ByteBuffer data = ByteBuffer.allocateDirect((int) size);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (data.hasRemaining()) {
+                if (channel.read(data) < 0) {
+                    // Changed under us since its attributes were read; serve it from disk
+                    return null;
+                }
+            }
+        }
+        return data.flip();
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        Gauge.builder("media.cache.size", this, HotMediaCache::getBytesHeld)
+                .baseUnit("bytes")
+                .description("Bytes of media held off-heap")
+                .register(registry);
+        Gauge.builder("media.cache.entries", this, HotMediaCache::getEntryCount)
+                .register(registry);
+        Gauge.builder("media.cache.hit.ratio", this, HotMediaCache::getHitRatio)
+                .register(registry);
+        FunctionCounter.builder("media.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("media.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("media.cache.evictions", evictions, LongAdder::sum)
+                .description("Entries evicted or refused admission")
+                .register(registry);
+    }
+
+    private record Entry(String key, ByteBuffer data, long lastModified) {
+        long size() {
+            return data.capacity();
+        }
+    }
+
+    /**
+     * Count-min sketch of recent access frequency with 4-bit-style saturating
+     * counters. All counters are halved once enough increments have been recorded,
+     * so popularity ages out instead of accumulating forever.
+     */
+    static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = {0x97cb3127, 0xb2d6f1c5, 0x2c1b3c6d, 0x7a9e8f01};
+
+        private final int[][] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int expectedEntries) {
+            int width = Integer.highestOneBit(Math.max(expectedEntries, 16) - 1) << 1;
+            table = new int[DEPTH][width];
+            mask = width - 1;
+            sampleSize = 10 * width;
+        }
+
+        void increment(String key) {
+            int hash = key.hashCode();
+            boolean added = false;
+            for (int row = 0; row < DEPTH; row++) {
+                int index = index(hash, row);
+                if (table[row][index] < MAX_COUNT) {
+                    table[row][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(String key) {
+            int hash = key.hashCode();
+            int min = MAX_COUNT;
+            for (int row = 0; row < DEPTH; row++) {
+                min = Math.min(min, table[row][index(hash, row)]);
+            }
+            return min;
+        }
+
+        private int index(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        private void reset() {
+            for (int[] row : table) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>>= 1;
+                }
+            }
+            additions /= 2;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.linkup.app.service;
+
+import com.linkup.app.model.Content;
+import com.linkup.app.model.MediaBlob;
+import com.linkup.app.repository.ContentRepository;
+import com.linkup.app.repository.MediaBlobRepository;
+import com.linkup.app.util.ImageUtils;
+import com.linkup.app.util.MediaStorageLayout;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background generation of resized image variants (thumbnail and medium) so feed
+ * clients do not download full-resolution originals for small cards.
+ *
+ * Work runs on a fixed pool with a bounded queue. When the queue is full the
+ * submitting thread runs the job itself, which slows an upload burst down instead
+ * of letting pending jobs pile up in memory. Decoding uses ImageIO source
+ * subsampling, so a large original is never fully materialized at full size.
+ *
+ * A variant is only moved into place while holding the lock on its original's blob
+ * row, and only if the blob still has references. A job that finishes after the
+ * post was deleted discards its output, instead of leaving variant files that
+ * {@link MediaBlobService#release} has already cleaned up for.
+ */
+@Service
+public class ImageDerivativeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDerivativeService.class);
+
+    public static final String THUMBNAIL = "thumb";
+    public static final String MEDIUM = "medium";
+
+    @Autowired
+    private MediaStorageLayout storageLayout;
+
+    @Autowired
+    private ContentRepository contentRepository;
+
+    @Autowired
+    private ImageUtils imageUtils;
+
+    @Autowired
+    private MediaBlobRepository mediaBlobRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${file.derivatives.workers:2}")
+    private int workers;
+
+    @Value("${file.derivatives.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${file.derivatives.thumbnail-width:200}")
+    private int thumbnailWidth;
+
+    @Value("${file.derivatives.medium-width:640}")
+    private int mediumWidth;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void start() {
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("image-derivatives-", 0).daemon(true).factory(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+    }
+
+    /**
+     * Queue variant generation for the image contents of a freshly created post.
+     * @param contents Saved contents (IDs assigned); non-images are ignored
+     */
+    public void enqueue(List<Content> contents) {
+        for (Content content : contents) {
+            if ("image".equals(content.getFileType()) && content.getId() != null) {
+                Long contentId = content.getId();
+                String path = content.getPath();
+                executor.execute(() -> generateVariants(contentId, path));
+            }
+        }
+    }
+
+    /**
+     * @return Jobs waiting for a worker, for monitoring
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    void generateVariants(Long contentId, String path) {
+        try {
+            String thumbnail = generate(path, THUMBNAIL, thumbnailWidth);
+            String medium = generate(path, MEDIUM, mediumWidth);
+            contentRepository.updateVariantPaths(contentId, thumbnail, medium);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Image variants failed for content {} ({}): {}", contentId, path, e.getMessage());
+        }
+    }
+
+    /**
+     * Write one variant of a stored image, reusing it if an identical blob already has it.
+     * @return The variant's stored file name
+     */
+    public String generate(String path, String variant, int targetWidth) throws IOException {
+        String variantName = storageLayout.variantName(path, variant);
+        Path target = storageLayout.resolve(variantName);
+        if (Files.exists(target)) {
+            return variantName;
+        }
+
+        BufferedImage source = imageUtils.readSubsampled(storageLayout.resolve(path), targetWidth);
+        BufferedImage resized = resize(source, targetWidth);
+
+        String format = variantName.endsWith(".jpg") ? "jpg" : "png";
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), "variant-", ".tmp");
+        try {
+            if (!ImageIO.write(resized, format, temp.toFile())) {
+                throw new IOException("No ImageIO writer for " + format);
+            }
+            if (!moveIntoPlace(path, temp, target)) {
+                throw new IOException("Original " + path + " was released while its variants were generated");
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return variantName;
+    }
+
+    /**
+     * Rename the variant into place unless the original has been released. The blob
+     * row stays locked across the rename, so a concurrent release either runs first
+     * (and the variant is discarded) or waits and deletes the variant with the blob.
+     * Files stored before deduplication have no row; their original must still exist.
+     *
+     * @return false if the original is gone
+     */
+    private boolean moveIntoPlace(String path, Path temp, Path target) throws IOException {
+        try {
+            return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                Optional<MediaBlob> blob = mediaBlobRepository.findByPathForUpdate(path);
+                boolean stored = blob.isPresent()
+                        ? blob.get().getRefCount() > 0
+                        : Files.exists(storageLayout.resolve(path));
+                if (!stored) {
+                    return false;
+                }
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return true;
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private BufferedImage resize(BufferedImage source, int targetWidth) {
+        if (source.getWidth() <= targetWidth) {
+            return toRgb(source, source.getWidth(), source.getHeight());
+        }
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+        return toRgb(source, targetWidth, targetHeight);
+    }
+
+    private BufferedImage toRgb(BufferedImage source, int width, int height) {
+        int type = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage output = new BufferedImage(width, height, type);
+        Graphics2D g = output.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return output;
+    }
+}
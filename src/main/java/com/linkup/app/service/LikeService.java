@@ -26,6 +26,9 @@ public class LikeService {
     @Autowired
     private PostRepository postRepository;
 
+    @Autowired
+    private PostCounterService postCounterService;
+
     @Transactional
     public Like toggleLike(Long userId, Long postId) {
         User user = userRepository.findById(userId)
@@ -39,6 +42,7 @@ public class LikeService {
         if (existingLike.isPresent()) {
             // Unlike - remove the like
             likeRepository.delete(existingLike.get());
+            postCounterService.incrementLikes(postId, -1);
             return null;
         } else {
             // Like - create new like
@@ -46,7 +50,9 @@ public class LikeService {
             like.setUser(user);
             like.setPost(post);
             like.setCreatedAt(LocalDateTime.now());
-            return likeRepository.save(like);
+            Like saved = likeRepository.save(like);
+            postCounterService.incrementLikes(postId, 1);
+            return saved;
         }
     }
 
@@ -55,7 +61,8 @@ public class LikeService {
     }
 
     public int getLikesCount(Long postId) {
-        return likeRepository.countByPostPostId(postId);
+        long stored = postRepository.findLikesCountByPostId(postId).orElse(0L);
+        return (int) (stored + postCounterService.pendingLikes(postId));
     }
 
     public List<Like> getPostLikes(Long postId) {
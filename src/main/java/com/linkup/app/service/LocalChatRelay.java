@@ -0,0 +1,22 @@
+package com.linkup.app.service;
+
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+/**
+ * Delivery through the configured broker only: enough for a single node, or for a
+ * cluster sharing an external STOMP broker, where Spring broadcasts user
+ * destinations that cannot be resolved locally to the other nodes.
+ */
+public class LocalChatRelay implements ChatRelay {
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    public LocalChatRelay(SimpMessagingTemplate messagingTemplate) {
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    @Override
+    public void sendToUser(String user, String destination, Object payload) {
+        messagingTemplate.convertAndSendToUser(user, destination, payload);
+    }
+}
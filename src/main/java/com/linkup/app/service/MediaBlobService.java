@@ -0,0 +1,107 @@
+package com.linkup.app.service;
+
+import com.linkup.app.model.MediaBlob;
+import com.linkup.app.repository.MediaBlobRepository;
+import com.linkup.app.util.MediaStorageLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+/**
+ * Reference-counted, content-addressed placement of uploaded files.
+ *
+ * Ordering is what keeps this safe without a global lock: an upload takes its
+ * reference (row insert or refCount + 1) before moving its bytes into place, and a
+ * release deletes the file only while holding the row lock with refCount at zero.
+ * A new reference for the same hash therefore waits for the delete to commit and
+ * then puts a fresh copy in place.
+ */
+@Service
+public class MediaBlobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MediaBlobService.class);
+
+    @Autowired
+    private MediaStorageLayout storageLayout;
+
+    @Autowired
+    private MediaBlobRepository mediaBlobRepository;
+
+    /**
+     * Take a reference to the blob with the given hash, placing the staged file as
+     * its bytes if the blob is not on disk yet. The staged file is always consumed.
+     *
+     * @param stagedFile Fully written file in the staging area (same filesystem)
+     * @param hash Hex SHA-256 of the staged file
+     * @param extension File extension without the dot, may be empty
+     * @param size Size in bytes
+     * @return The stored file name that Content.path should reference
+     */
+    public String acquire(Path stagedFile, String hash, String extension, long size) throws IOException {
+        String blobName = acquireReference(hash, extension, size);
+
+        Path target = storageLayout.resolve(blobName);
+        if (Files.exists(target)) {
+            // Dedup hit: the bytes are already stored
+            Files.deleteIfExists(stagedFile);
+        } else {
+            Files.createDirectories(target.getParent());
+            Files.move(stagedFile, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return blobName;
+    }
+
+    /**
+     * Drop one reference; the file and its row are deleted when none remain.
+     * Files with no blob row (stored before deduplication) are left alone.
+     *
+     * @param blobName The stored file name
+     */
+    @Transactional
+    public void release(String blobName) {
+        if (mediaBlobRepository.decrementRefCount(blobName) == 0) {
+            return;
+        }
+
+        Optional<MediaBlob> blob = mediaBlobRepository.findByPathForUpdate(blobName);
+        if (blob.isPresent() && blob.get().getRefCount() <= 0) {
+            try {
+                Files.deleteIfExists(storageLayout.resolve(blobName));
+                Files.deleteIfExists(storageLayout.resolve(
+                        storageLayout.variantName(blobName, ImageDerivativeService.THUMBNAIL)));
+                Files.deleteIfExists(storageLayout.resolve(
+                        storageLayout.variantName(blobName, ImageDerivativeService.MEDIUM)));
+            } catch (IOException e) {
+                logger.warn("Failed to delete unreferenced blob {}: {}", blobName, e.getMessage());
+            }
+            mediaBlobRepository.delete(blob.get());
+        }
+    }
+
+    private String acquireReference(String hash, String extension, long size) {
+        while (true) {
+            if (mediaBlobRepository.incrementRefCount(hash) > 0) {
+                return mediaBlobRepository.findById(hash)
+                        .map(MediaBlob::getPath)
+                        .orElseThrow(() -> new IllegalStateException("Blob vanished after increment: " + hash));
+            }
+
+            String blobName = hash + (extension.isEmpty() ? "" : "." + extension);
+            try {
+                mediaBlobRepository.insertWithOneReference(hash, blobName, size);
+                return blobName;
+            } catch (DataIntegrityViolationException e) {
+                // Another upload of the same bytes inserted the row first; take a reference to it
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.linkup.app.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Hands out message IDs before the messages are inserted, for write-behind
+ * delivery where clients need the ID (for receipts) straight away.
+ *
+ * IDs are reserved from the id_sequences table in blocks, so one row update covers
+ * many messages. A reservation never starts below the highest ID already in the
+ * messages table, so IDs stay unique when switching from auto-increment inserts.
+ *
+ * History paging, receipt watermarks and the inbox's last message all assume IDs
+ * follow send order, which blocks reserved by two nodes at once would break. Only
+ * the node holding the sequence's lease may reserve IDs: it is claimed when
+ * write-behind starts (which fails if another node holds it), renewed on a
+ * schedule, and released on shutdown. A node that crashed keeps it until it expires
+ * or the same node starts again.
+ */
+@Service
+public class MessageIdAllocator {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageIdAllocator.class);
+
+    static final String SEQUENCE = "messages";
+
+    private static final String SEED_SQL =
+            "INSERT INTO id_sequences (name, next_value) VALUES (?, 1)";
+    private static final String CLAIM_SQL =
+            "UPDATE id_sequences SET owner = ?, owner_expires_at = TIMESTAMPADD(SECOND, ?, CURRENT_TIMESTAMP) " +
+            "WHERE name = ? AND (owner IS NULL OR owner = ? OR owner_expires_at < CURRENT_TIMESTAMP)";
+    private static final String RENEW_SQL =
+            "UPDATE id_sequences SET owner_expires_at = TIMESTAMPADD(SECOND, ?, CURRENT_TIMESTAMP) " +
+            "WHERE name = ? AND owner = ?";
+    private static final String RELEASE_SQL =
+            "UPDATE id_sequences SET owner = NULL, owner_expires_at = NULL WHERE name = ? AND owner = ?";
+    private static final String OWNER_SQL =
+            "SELECT owner FROM id_sequences WHERE name = ? AND owner IS NOT NULL " +
+            "AND owner_expires_at >= CURRENT_TIMESTAMP";
+    private static final String RESERVE_SQL =
+            "UPDATE id_sequences SET next_value = GREATEST(next_value, " +
+            "(SELECT COALESCE(MAX(m.message_id), 0) + 1 FROM messages m)) + ? WHERE name = ? AND owner = ?";
+    private static final String NEXT_VALUE_SQL =
+            "SELECT next_value FROM id_sequences WHERE name = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.messages.write-behind.id-block-size:1000}")
+    private int blockSize;
+
+    @Value("${app.messages.write-behind.lease-seconds:30}")
+    private int leaseSeconds;
+
+    private volatile String owner;
+    private long next;
+    private long limit;
+
+    /**
+     * Take the sequence's lease for this node.
+     *
+     * @throws IllegalStateException if another node holds it
+     */
+    public synchronized void claim(String node) {
+        while (jdbcTemplate.update(CLAIM_SQL, node, leaseSeconds, SEQUENCE, node) == 0) {
+            String holder = currentOwner();
+            if (holder != null) {
+                throw new IllegalStateException("Message write-behind is already running on node " + holder
+                        + "; it must run on one node only");
+            }
+            try {
+                jdbcTemplate.update(SEED_SQL, SEQUENCE);
+            } catch (DataIntegrityViolationException e) {
+                // Another instance created the sequence first
+            }
+        }
+        owner = node;
+        next = 0;
+        limit = 0;
+    }
+
+    @Scheduled(fixedDelayString = "${app.messages.write-behind.lease-renew-ms:10000}")
+    public void renew() {
+        String node = owner;
+        if (node == null) {
+            return;
+        }
+        if (jdbcTemplate.update(RENEW_SQL, leaseSeconds, SEQUENCE, node) == 0) {
+            logger.error("Message ID lease was taken over by node {}; no more IDs are handed out here",
+                    currentOwner());
+            release();
+        }
+    }
+
+    public synchronized void release() {
+        String node = owner;
+        owner = null;
+        limit = next;
+        if (node != null) {
+            jdbcTemplate.update(RELEASE_SQL, SEQUENCE, node);
+        }
+    }
+
+    /**
+     * @return The node holding an unexpired lease, or null
+     */
+    public String currentOwner() {
+        List<String> owners = jdbcTemplate.queryForList(OWNER_SQL, String.class, SEQUENCE);
+        return owners.isEmpty() ? null : owners.get(0);
+    }
+
+    public synchronized long nextId() {
+        if (next >= limit) {
+            reserveBlock();
+        }
+        return next++;
+    }
+
+    private void reserveBlock() {
+        String node = owner;
+        if (node == null) {
+            throw new IllegalStateException("This node does not hold the message ID lease");
+        }
+        Long end = transactionTemplate.execute(status -> {
+            if (jdbcTemplate.update(RESERVE_SQL, blockSize, SEQUENCE, node) == 0) {
+                return null;
+            }
+            return jdbcTemplate.queryForObject(NEXT_VALUE_SQL, Long.class, SEQUENCE);
+        });
+        if (end == null) {
+            owner = null;
+            throw new IllegalStateException("Message ID lease was taken over by node " + currentOwner());
+        }
+        next = end - blockSize;
+        limit = end;
+    }
+}
@@ -0,0 +1,430 @@
+package com.linkup.app.service;
+
+import com.linkup.app.dto.MessageRow;
+import com.linkup.app.model.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Local, append-only journal of chat messages that are not in the database yet.
+ *
+ * Messages are appended to preallocated, memory-mapped segment files. A single
+ * flusher thread forces the mapped pages to disk and every appender waits for the
+ * force that covers its record, so concurrent senders share one fsync (group
+ * commit) instead of paying one each. Each record carries a CRC, so a record torn by
+ * a crash reads as the end of its segment.
+ *
+ * A single drainer reads durable records in order and reports how far it got with
+ * {@link #markDrained}; that position is kept in a checkpoint file and fully drained
+ * segments are deleted. On open, everything after the checkpoint is read again, and
+ * new appends go to a fresh segment.
+ */
+public class MessageJournal implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageJournal.class);
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    // Payload length, CRC of the payload
+    private static final int HEADER_BYTES = 8;
+    // Message, sender and receiver IDs, epoch second, nanos
+    private static final int FIXED_PAYLOAD_BYTES = 8 * 4 + 4;
+
+    /**
+     * A place in the journal: segment number and byte offset within it
+     */
+    public record Position(long segment, int offset) implements Comparable<Position> {
+        @Override
+        public int compareTo(Position other) {
+            int bySegment = Long.compare(segment, other.segment);
+            return bySegment != 0 ? bySegment : Integer.compare(offset, other.offset);
+        }
+    }
+
+    /**
+     * Records read by the drainer, and the position just after the last of them
+     */
+    public record Batch(List<MessageRow> messages, Position end) {
+    }
+
+    private final Path dir;
+    private final int segmentSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Condition forced = lock.newCondition();
+
+    // Guarded by lock
+    private long activeSegment;
+    private MappedByteBuffer activeBuffer;
+    private int writeOffset;
+    private long appendedBytes;
+    private long forcedBytes;
+    private IOException failure;
+    private boolean closed;
+
+    // End of the last forced record; everything before it may be drained
+    private volatile Position durable;
+
+    // Drainer state, only touched by the draining thread
+    private Position drainedPosition;
+    private long readerSegment = -1;
+    private ByteBuffer readerBuffer;
+
+    private final Thread flusher;
+
+    public MessageJournal(Path dir, int segmentSize) throws IOException {
+        if (segmentSize < 64 * 1024) {
+            throw new IllegalArgumentException("Journal segments must be at least 64KB");
+        }
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(dir);
+
+        drainedPosition = readCheckpoint();
+        TreeSet<Long> segments = listSegments();
+        for (Long segment : segments.headSet(drainedPosition.segment())) {
+            Files.deleteIfExists(segmentPath(segment));
+        }
+
+        long last = segments.isEmpty() ? 0 : segments.last();
+        openSegment(Math.max(last, drainedPosition.segment()) + 1);
+        durable = new Position(activeSegment, 0);
+
+        flusher = Thread.ofPlatform().name("message-journal-flusher").daemon(true).start(this::flushLoop);
+    }
+
+    /**
+     * @return Whether the directory holds journal segments, drained or not
+     */
+    public static boolean exists(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return false;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            return files.iterator().hasNext();
+        }
+    }
+
+    /**
+     * Append a message and return once it is on disk.
+     *
+     * @throws IllegalArgumentException if the message cannot fit in a segment
+     * @throws IOException if the journal is closed or cannot be written
+     */
+    public void append(MessageRow message) throws IOException {
+        append(message, message::getMessageId);
+    }
+
+    /**
+     * Append a message whose ID is taken from ids while the append lock is held, so
+     * IDs follow journal order and a drain never stores an ID before a lower one.
+     * The ID is set on the message.
+     */
+    public void append(MessageRow message, LongSupplier ids) throws IOException {
+        byte[] content = message.getContent().getBytes(StandardCharsets.UTF_8);
+        int length = FIXED_PAYLOAD_BYTES + content.length;
+        int recordSize = HEADER_BYTES + length;
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("Message is too large for the journal");
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        LocalDateTime timestamp = message.getTimestamp();
+        // The message ID is filled in under the lock
+        payload.putLong(0L)
+                .putLong(message.getSenderId())
+                .putLong(message.getReceiverId())
+                .putLong(timestamp.toEpochSecond(ZoneOffset.UTC))
+                .putInt(timestamp.getNano())
+                .put(content)
+                .flip();
+
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IOException("Message journal is closed");
+            }
+            long messageId = ids.getAsLong();
+            payload.putLong(0, messageId);
+            CRC32C crc = new CRC32C();
+            crc.update(payload.duplicate());
+            message.setMessageId(messageId);
+            if (writeOffset + recordSize > segmentSize) {
+                roll();
+            }
+            activeBuffer.putInt(writeOffset + 4, (int) crc.getValue());
+            activeBuffer.put(writeOffset + HEADER_BYTES, payload, 0, length);
+            // Length last, so a reader never sees a length before its payload
+            activeBuffer.putInt(writeOffset, length);
+            writeOffset += recordSize;
+            appendedBytes += recordSize;
+            long ticket = appendedBytes;
+            appended.signal();
+
+            while (forcedBytes < ticket) {
+                if (failure != null) {
+                    throw new IOException("Message journal could not be synced", failure);
+                }
+                forced.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the journal to sync", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Read up to max durable records after the drained position, without consuming
+     * them; call {@link #markDrained} once they are safely stored elsewhere.
+     */
+    public Batch read(int max) throws IOException {
+        List<MessageRow> messages = new ArrayList<>();
+        Position position = drainedPosition;
+
+        while (messages.size() < max) {
+            Position limit = durable;
+            boolean sealed = position.segment() < limit.segment();
+            int end = sealed ? segmentSize : limit.offset();
+
+            ByteBuffer buffer = readerView(position.segment());
+            MessageRow message = buffer != null && position.offset() < end
+                    ? readRecord(buffer, position.offset(), end) : null;
+            if (message == null) {
+                if (!sealed) {
+                    break;
+                }
+                // End of a finished segment, or a record torn by a crash: move on
+                position = new Position(position.segment() + 1, 0);
+                continue;
+            }
+
+            messages.add(message);
+            position = new Position(position.segment(),
+                    position.offset() + HEADER_BYTES + buffer.getInt(position.offset()));
+        }
+        return new Batch(messages, position);
+    }
+
+    /**
+     * Record that everything before the position has been stored, and drop the
+     * segments that are no longer needed.
+     */
+    public void markDrained(Position position) throws IOException {
+        if (position.compareTo(drainedPosition) <= 0) {
+            return;
+        }
+        Path temp = dir.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.allocate(12).putLong(position.segment()).putInt(position.offset()).flip());
+            channel.force(true);
+        }
+        Files.move(temp, dir.resolve(CHECKPOINT_FILE), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+
+        for (long segment = drainedPosition.segment(); segment < position.segment(); segment++) {
+            Files.deleteIfExists(segmentPath(segment));
+        }
+        drainedPosition = position;
+    }
+
+    /**
+     * @return Whether every durable record has been drained
+     */
+    public boolean isDrained() {
+        return drainedPosition.compareTo(durable) >= 0;
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            long target;
+            MappedByteBuffer buffer;
+            Position position;
+            lock.lock();
+            try {
+                while (forcedBytes == appendedBytes && !closed) {
+                    appended.awaitUninterruptibly();
+                }
+                if (forcedBytes == appendedBytes) {
+                    return;
+                }
+                target = appendedBytes;
+                buffer = activeBuffer;
+                position = new Position(activeSegment, writeOffset);
+            } finally {
+                lock.unlock();
+            }
+
+            // Outside the lock, so appends keep landing while the pages are written
+            RuntimeException error = null;
+            try {
+                buffer.force();
+            } catch (RuntimeException e) {
+                error = e;
+            }
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    logger.error("Message journal sync failed: {}", error.getMessage());
+                    failure = new IOException(error.getMessage(), error);
+                    closed = true;
+                } else {
+                    forcedBytes = Math.max(forcedBytes, target);
+                    if (position.compareTo(durable) > 0) {
+                        durable = position;
+                    }
+                }
+                forced.signalAll();
+                if (error != null) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void roll() throws IOException {
+        // Called with the lock held; the old segment must be durable before readers treat it as sealed
+        activeBuffer.force();
+        forcedBytes = appendedBytes;
+        openSegment(activeSegment + 1);
+        durable = new Position(activeSegment, 0);
+        forced.signalAll();
+    }
+
+    private void openSegment(long segment) throws IOException {
+        Path path = segmentPath(segment);
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(segmentSize);
+            activeBuffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        syncDirectory();
+        activeSegment = segment;
+        writeOffset = 0;
+    }
+
+    private ByteBuffer readerView(long segment) throws IOException {
+        if (segment != readerSegment) {
+            Path path = segmentPath(segment);
+            if (!Files.exists(path)) {
+                return null;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                readerBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            readerSegment = segment;
+        }
+        return readerBuffer;
+    }
+
+    private MessageRow readRecord(ByteBuffer buffer, int offset, int end) {
+        if (offset + HEADER_BYTES > end) {
+            return null;
+        }
+        int length = buffer.getInt(offset);
+        if (length < FIXED_PAYLOAD_BYTES || offset + HEADER_BYTES + length > end) {
+            return null;
+        }
+        ByteBuffer payload = buffer.slice(offset + HEADER_BYTES, length);
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+            return null;
+        }
+
+        long messageId = payload.getLong();
+        long senderId = payload.getLong();
+        long receiverId = payload.getLong();
+        LocalDateTime timestamp = LocalDateTime.ofEpochSecond(payload.getLong(), payload.getInt(), ZoneOffset.UTC);
+        byte[] content = new byte[payload.remaining()];
+        payload.get(content);
+        return new MessageRow(messageId, senderId, receiverId, new String(content, StandardCharsets.UTF_8),
+                timestamp, Message.MessageStatus.SENT);
+    }
+
+    private Position readCheckpoint() throws IOException {
+        Path checkpoint = dir.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(checkpoint)) {
+            return new Position(0, 0);
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(checkpoint));
+        if (bytes.remaining() != 12) {
+            throw new IOException("Corrupt message journal checkpoint: " + checkpoint);
+        }
+        return new Position(bytes.getLong(), bytes.getInt());
+    }
+
+    private TreeSet<Long> listSegments() throws IOException {
+        TreeSet<Long> segments = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring unexpected file in message journal: {}", name);
+                }
+            }
+        }
+        return segments;
+    }
+
+    private Path segmentPath(long segment) {
+        return dir.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private void syncDirectory() {
+        // Make the new segment's directory entry durable along with its contents
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported on every platform
+        }
+    }
+}
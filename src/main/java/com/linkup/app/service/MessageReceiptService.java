@@ -0,0 +1,124 @@
+package com.linkup.app.service;
+
+import com.linkup.app.dto.ReceiptEvent;
+import com.linkup.app.model.Message;
+import com.linkup.app.repository.MessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Delivered / read receipts as watermarks: "everything this user sent me up to
+ * message X has been delivered (or read)".
+ *
+ * Receipts only raise a per-conversation watermark in memory, so a client acking a
+ * burst of messages, or acking the same conversation repeatedly, costs one map
+ * update each. A short scheduled flush applies each raised watermark with one range
+ * UPDATE over the sender/receiver index, recounts the reader's unread messages, and
+ * pushes a single {@link ReceiptEvent} to the sender if they are online.
+ *
+ * With write-behind on, a watermark above the last message drained from the journal
+ * is left pending until the drain catches up, since its update would not find the
+ * messages yet and the receipt would be lost.
+ */
+@Service
+public class MessageReceiptService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageReceiptService.class);
+
+    private static final Set<Message.MessageStatus> DELIVERABLE = EnumSet.of(Message.MessageStatus.SENT);
+    private static final Set<Message.MessageStatus> READABLE =
+            EnumSet.of(Message.MessageStatus.SENT, Message.MessageStatus.DELIVERED);
+
+    private record Watermark(Long readerId, Long senderId, Message.MessageStatus status) {
+    }
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @Autowired
+    private ChatRelay chatRelay;
+
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MessageWriteBehindService writeBehindService;
+
+    private final ConcurrentHashMap<Watermark, Long> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Record that the reader has received or read everything the sender sent them up
+     * to a message ID. Applied by the next flush.
+     *
+     * @param status DELIVERED or READ
+     */
+    public void acknowledge(Long readerId, Long senderId, Long upToMessageId, Message.MessageStatus status) {
+        if (status == Message.MessageStatus.SENT) {
+            throw new IllegalArgumentException("Receipts are for DELIVERED or READ");
+        }
+        if (senderId == null || upToMessageId == null) {
+            throw new IllegalArgumentException("userId and upToMessageId are required");
+        }
+        pending.merge(new Watermark(readerId, senderId, status), upToMessageId, Math::max);
+    }
+
+    @Scheduled(fixedDelayString = "${app.messages.receipts.flush-interval-ms:100}")
+    public synchronized void flush() {
+        List<Watermark> watermarks = new ArrayList<>(pending.keySet());
+        // Delivered before read, so a read in the same window is never overtaken
+        watermarks.sort(Comparator.comparing(Watermark::status));
+
+        for (Watermark watermark : watermarks) {
+            Long upTo = pending.remove(watermark);
+            if (upTo == null) {
+                continue;
+            }
+            if (!writeBehindService.isStored(upTo)) {
+                // Still in the journal; a newer receipt may have been merged in meanwhile
+                pending.merge(watermark, upTo, Math::max);
+                continue;
+            }
+            try {
+                apply(watermark, upTo);
+            } catch (RuntimeException e) {
+                logger.warn("Failed to apply {} receipt from {} up to {}: {}", watermark.status(),
+                        watermark.readerId(), upTo, e.getMessage());
+            }
+        }
+    }
+
+    private void apply(Watermark watermark, Long upTo) {
+        boolean read = watermark.status() == Message.MessageStatus.READ;
+        Integer updated = transactionTemplate.execute(status -> {
+            int changed = messageRepository.advanceStatusUpTo(watermark.senderId(), watermark.readerId(), upTo,
+                    watermark.status(), read ? READABLE : DELIVERABLE);
+            if (read) {
+                conversationService.markRead(watermark.readerId(), watermark.senderId(), changed);
+            }
+            return changed;
+        });
+
+        // An offline sender sees the new statuses when they next load the conversation
+        if (updated != null && updated > 0 && presenceRegistry.isOnline(watermark.senderId())) {
+            chatRelay.sendToUser(watermark.senderId().toString(), "/queue/receipts",
+                    new ReceiptEvent(watermark.readerId(), watermark.status(), upTo));
+        }
+    }
+}
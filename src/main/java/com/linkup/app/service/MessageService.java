@@ -1,16 +1,25 @@
 package com.linkup.app.service;
 
+import com.linkup.app.dto.ConversationSummary;
+import com.linkup.app.dto.MessagePageResponse;
 import com.linkup.app.dto.MessageResponse;
+import com.linkup.app.dto.MessageRow;
 import com.linkup.app.model.Message;
 import com.linkup.app.model.User;
 import com.linkup.app.repository.MessageRepository;
 import com.linkup.app.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -18,6 +27,9 @@ import java.util.stream.Collectors;
 @Service
 public class MessageService {
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+
     @Autowired
     private MessageRepository messageRepository;
 
@@ -27,13 +39,36 @@ public class MessageService {
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
+    @Autowired
+    private ConversationService conversationService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MessageWriteBehindService writeBehindService;
+
     public Message saveMessage(Long senderId, Long receiverId, String content) {
         User sender = userRepository.findById(senderId)
                 .orElseThrow(() -> new RuntimeException("Sender not found"));
 
+        return saveMessage(sender, receiverId, content);
+    }
+
+    /**
+     * Saves a message and moves its conversation forward in the same transaction, so
+     * the inbox never shows a last message or unread count the messages table lacks.
+     * In write-behind mode the message is journaled instead and returned straight
+     * away; the insert happens in the background.
+     */
+    public Message saveMessage(User sender, Long receiverId, String content) {
         User receiver = userRepository.findById(receiverId)
                 .orElseThrow(() -> new RuntimeException("Receiver not found"));
 
+        if (writeBehindService.isEnabled()) {
+            return writeBehindService.append(sender, receiver, content);
+        }
+
         Message message = new Message();
         message.setSender(sender);
         message.setReceiver(receiver);
@@ -41,7 +76,12 @@ public class MessageService {
         message.setTimestamp(LocalDateTime.now());
         message.setStatus(Message.MessageStatus.SENT);
 
-        return messageRepository.save(message);
+        conversationService.ensureConversation(sender.getUserId(), receiverId);
+        return transactionTemplate.execute(status -> {
+            Message saved = messageRepository.save(message);
+            conversationService.recordMessage(saved);
+            return saved;
+        });
     }
 
     public List<MessageResponse> getConversation(Long user1Id, Long user2Id) {
@@ -58,38 +98,101 @@ public class MessageService {
                 .collect(Collectors.toList());
     }
 
-    public List<User> getChatUsers(Long userId) {
+    /**
+     * One page of a conversation by message ID, instead of the whole history.
+     *
+     * Each direction (A to B, B to A) is read with its own index range scan of at most
+     * limit + 1 rows, and the two are merged here; an OR across both directions would
+     * not use the index order. Without a cursor the newest page is returned.
+     *
+     * @param before Return messages older than this ID
+     * @param after Return messages newer than this ID (ignored when before is set)
+     * @param limit Page size, defaults to 50, capped at 200
+     */
+    public MessagePageResponse getConversationPage(Long userId, Long otherUserId, Long before, Long after, Integer limit) {
+        if (before != null && after != null) {
+            throw new IllegalArgumentException("Use either before or after, not both");
+        }
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
+        User otherUser = userRepository.findById(otherUserId)
+                .orElseThrow(() -> new RuntimeException("User not found"));
 
-        List<User> senders = messageRepository.findDistinctSendersByReceiver(user);
-        List<User> receivers = messageRepository.findDistinctReceiversBySender(user);
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        Pageable pageable = PageRequest.of(0, pageSize + 1);
+        boolean newer = after != null;
+
+        List<MessageRow> rows = new ArrayList<>();
+        if (newer) {
+            rows.addAll(messageRepository.findRowsAfter(userId, otherUserId, after, pageable));
+            rows.addAll(messageRepository.findRowsAfter(otherUserId, userId, after, pageable));
+            rows.sort(Comparator.comparing(MessageRow::getMessageId));
+        } else {
+            long upper = before != null ? before : Long.MAX_VALUE;
+            rows.addAll(messageRepository.findRowsBefore(userId, otherUserId, upper, pageable));
+            rows.addAll(messageRepository.findRowsBefore(otherUserId, userId, upper, pageable));
+            rows.sort(Comparator.comparing(MessageRow::getMessageId).reversed());
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<MessageRow> page = new ArrayList<>(rows.subList(0, Math.min(pageSize, rows.size())));
+        if (!newer) {
+            page.sort(Comparator.comparing(MessageRow::getMessageId));
+        }
+
+        List<MessageResponse> messages = page.stream()
+                .map(row -> {
+                    User sender = row.getSenderId().equals(userId) ? user : otherUser;
+                    User receiver = sender == user ? otherUser : user;
+                    return new MessageResponse(row.getMessageId(), sender.getUserId(), sender.getUserName(),
+                            receiver.getUserId(), receiver.getUserName(), row.getContent(), row.getTimestamp());
+                })
+                .collect(Collectors.toList());
 
-        List<User> allChatUsers = new ArrayList<>(senders);
-        receivers.forEach(r -> {
-            if (!allChatUsers.contains(r)) {
-                allChatUsers.add(r);
-            }
-        });
+        Long oldestId = page.isEmpty() ? null : page.get(0).getMessageId();
+        Long newestId = page.isEmpty() ? null : page.get(page.size() - 1).getMessageId();
+        Long olderCursor = newer ? oldestId : (hasMore ? oldestId : null);
+        Long newerCursor = newer ? (hasMore ? newestId : null) : (before != null ? newestId : null);
+        return new MessagePageResponse(messages, olderCursor, newerCursor);
+    }
 
-        return allChatUsers;
+    /**
+     * Everyone the user has talked to, most recent conversation first
+     */
+    public List<User> getChatUsers(Long userId) {
+        userRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
+        return conversationService.getChatPartners(userId);
     }
 
-    public void markAsDelivered(Long messageId) {
-        Optional<Message> messageOpt = messageRepository.findById(messageId);
+    /**
+     * The user's conversations, most recent first, with the last message and how many
+     * messages the user has not read yet
+     */
+    public List<ConversationSummary> getInbox(Long userId) {
+        return conversationService.getInbox(userId);
+    }
 
-        messageOpt.ifPresent(message -> {
-            message.setStatus(Message.MessageStatus.DELIVERED);
-            messageRepository.save(message);
-        });
+    public void markAsDelivered(Long messageId) {
+        // A single conditional UPDATE; a message that is already READ stays READ
+        messageRepository.advanceStatus(messageId, Message.MessageStatus.DELIVERED,
+                EnumSet.of(Message.MessageStatus.SENT));
     }
 
+    /**
+     * Move the message to READ and take it off the reader's unread count, in one
+     * transaction so the count never misses or repeats a read
+     */
+    @Transactional
     public void markAsRead(Long messageId) {
         Optional<Message> messageOpt = messageRepository.findById(messageId);
 
         messageOpt.ifPresent(message -> {
-            message.setStatus(Message.MessageStatus.READ);
-            messageRepository.save(message);
+            if (messageRepository.advanceStatus(messageId, Message.MessageStatus.READ,
+                    EnumSet.of(Message.MessageStatus.SENT, Message.MessageStatus.DELIVERED)) > 0) {
+                conversationService.markRead(message.getReceiver().getUserId(), message.getSender().getUserId(), 1);
+            }
         });
     }
 
@@ -0,0 +1,278 @@
+package com.linkup.app.service;
+
+import com.linkup.app.dto.MessageRow;
+import com.linkup.app.model.Message;
+import com.linkup.app.model.User;
+import com.linkup.app.repository.MessageBatchRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Write-behind persistence for chat messages.
+ *
+ * When app.messages.write-behind.enabled is true, a message is given a
+ * preallocated ID, appended to the local {@link MessageJournal} and returned for
+ * delivery as soon as the journal has synced it, without waiting for the database.
+ * A scheduled drain copies journaled messages to the messages table in batched
+ * inserts, moving their conversations forward in the same transaction. If the
+ * database is unavailable the messages wait in the journal and the drain retries;
+ * after a restart, whatever was not drained is replayed, even if write-behind has
+ * since been turned off. Replays are idempotent because messages that made it into
+ * the table are skipped by ID; an ID held by a different message stops the drain.
+ *
+ * Messages reach the table one drain interval after delivery, so history and
+ * receipt requests for a message in that window do not see it yet.
+ *
+ * Write-behind supports a single application node. Message IDs must follow send
+ * order, and they only do when one node both assigns them and stores them: the
+ * node claims the {@link MessageIdAllocator} lease on startup under the ID kept in
+ * its journal directory, and a second node with write-behind enabled fails to
+ * start. A node with it disabled also refuses to start while another node holds
+ * the lease, since its auto-increment inserts would interleave with the journaled
+ * IDs. Scale out by turning write-behind off on every node first.
+ */
+@Service
+public class MessageWriteBehindService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageWriteBehindService.class);
+
+    private static final String NODE_ID_FILE = "node-id";
+
+    @Autowired
+    private MessageIdAllocator idAllocator;
+
+    @Autowired
+    private MessageBatchRepository messageBatchRepository;
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.messages.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.messages.write-behind.journal-dir:./message-journal}")
+    private String journalDir;
+
+    @Value("${app.messages.write-behind.segment-size:64MB}")
+    private DataSize segmentSize;
+
+    @Value("${app.messages.write-behind.drain-batch-size:500}")
+    private int drainBatchSize;
+
+    private MessageJournal journal;
+
+    // Highest message ID drained so far; journal order is ID order
+    private volatile long drainedThrough;
+
+    @PostConstruct
+    public void open() throws IOException {
+        Path dir = Paths.get(journalDir).toAbsolutePath().normalize();
+        if (enabled) {
+            idAllocator.claim(nodeId(dir));
+            journal = new MessageJournal(dir, (int) segmentSize.toBytes());
+            return;
+        }
+        String writer = idAllocator.currentOwner();
+        if (writer != null && !writer.equals(readNodeId(dir))) {
+            throw new IllegalStateException("Message write-behind is running on node " + writer
+                    + "; chat messages must all be written by that node while it is enabled");
+        }
+        if (!MessageJournal.exists(dir)) {
+            return;
+        }
+
+        // Left over from when write-behind was on. Its messages hold preallocated IDs
+        // that plain inserts could otherwise be given, so they are stored first.
+        journal = new MessageJournal(dir, (int) segmentSize.toBytes());
+        boolean drained;
+        try {
+            drain();
+            drained = journal.isDrained();
+        } finally {
+            journal.close();
+            journal = null;
+        }
+        if (!drained) {
+            throw new IllegalStateException("Message journal in " + dir + " still holds messages that could "
+                    + "not be stored; fix the database or enable write-behind to keep retrying");
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (journal != null) {
+            journal.close();
+            drain();
+            idAllocator.release();
+        }
+    }
+
+    /**
+     * The ID this node's journal directory was created with, so a restarted node
+     * takes its own lease back straight away
+     */
+    private static String nodeId(Path dir) throws IOException {
+        String id = readNodeId(dir);
+        if (id == null) {
+            id = UUID.randomUUID().toString();
+            Files.createDirectories(dir);
+            Files.writeString(dir.resolve(NODE_ID_FILE), id);
+        }
+        return id;
+    }
+
+    private static String readNodeId(Path dir) throws IOException {
+        Path file = dir.resolve(NODE_ID_FILE);
+        return Files.exists(file) ? Files.readString(file).trim() : null;
+    }
+
+    public boolean isEnabled() {
+        return journal != null;
+    }
+
+    /**
+     * @return Whether a message ID, and every ID below it, is past the journal, so
+     *         updates to those rows find them
+     */
+    public boolean isStored(long messageId) {
+        MessageJournal current = journal;
+        return current == null || messageId <= drainedThrough || current.isDrained();
+    }
+
+    /**
+     * Journal a message and return it, with its ID, ready to deliver. The returned
+     * entity is not managed; the row is inserted by a later drain.
+     */
+    public Message append(User sender, User receiver, String content) {
+        Message message = new Message();
+        message.setSender(sender);
+        message.setReceiver(receiver);
+        message.setContent(content);
+        message.setTimestamp(LocalDateTime.now());
+        message.setStatus(Message.MessageStatus.SENT);
+
+        MessageRow row = new MessageRow(null, sender.getUserId(), receiver.getUserId(),
+                content, message.getTimestamp(), message.getStatus());
+        try {
+            journal.append(row, idAllocator::nextId);
+            message.setMessageId(row.getMessageId());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not journal message: " + e.getMessage(), e);
+        }
+        return message;
+    }
+
+    /**
+     * Copy journaled messages to the database until the journal is caught up.
+     * @return Number of messages drained
+     */
+    @Scheduled(fixedDelayString = "${app.messages.write-behind.drain-interval-ms:50}")
+    public synchronized int drain() {
+        if (journal == null) {
+            return 0;
+        }
+
+        int drained = 0;
+        try {
+            while (true) {
+                MessageJournal.Batch batch = journal.read(drainBatchSize);
+                if (!batch.messages().isEmpty()) {
+                    store(batch.messages());
+                    drained += batch.messages().size();
+                    drainedThrough = Math.max(drainedThrough,
+                            batch.messages().get(batch.messages().size() - 1).getMessageId());
+                }
+                journal.markDrained(batch.end());
+                if (batch.messages().size() < drainBatchSize) {
+                    break;
+                }
+            }
+        } catch (IllegalStateException e) {
+            logger.error("Message journal drain stopped after {} messages: {}", drained, e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            // Left in the journal; the next drain retries from the same place
+            logger.warn("Message journal drain stopped after {} messages: {}", drained, e.getMessage());
+        }
+        return drained;
+    }
+
+    private void store(List<MessageRow> messages) {
+        Set<List<Long>> pairs = new LinkedHashSet<>();
+        messages.forEach(m -> pairs.add(List.of(m.getSenderId(), m.getReceiverId())));
+        pairs.forEach(pair -> conversationService.ensureConversation(pair.get(0), pair.get(1)));
+
+        try {
+            insertMissing(messages);
+        } catch (DataIntegrityViolationException e) {
+            // Usually a user deleted since the message was sent; keep the rest of the batch
+            for (MessageRow message : messages) {
+                try {
+                    insertMissing(List.of(message));
+                } catch (DataIntegrityViolationException rejected) {
+                    logger.error("Dropping journaled message {} from {} to {}: {}", message.getMessageId(),
+                            message.getSenderId(), message.getReceiverId(), rejected.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * A replayed message matches its stored row on sender, receiver and time; the
+     * database may keep the timestamp at lower precision than the journal.
+     */
+    private static boolean isSameMessage(MessageRow stored, MessageRow journaled) {
+        return stored.getSenderId().equals(journaled.getSenderId())
+                && stored.getReceiverId().equals(journaled.getReceiverId())
+                && stored.getTimestamp() != null
+                && Duration.between(stored.getTimestamp(), journaled.getTimestamp()).abs()
+                        .compareTo(Duration.ofSeconds(1)) < 0;
+    }
+
+    private void insertMissing(List<MessageRow> messages) {
+        long from = messages.stream().mapToLong(MessageRow::getMessageId).min().orElseThrow();
+        long to = messages.stream().mapToLong(MessageRow::getMessageId).max().orElseThrow();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<Long, MessageRow> existing = messageBatchRepository.findExisting(from, to);
+            List<MessageRow> missing = new ArrayList<>();
+            for (MessageRow message : messages) {
+                MessageRow stored = existing.get(message.getMessageId());
+                if (stored == null) {
+                    missing.add(message);
+                } else if (!isSameMessage(stored, message)) {
+                    // Skipping it would silently lose the journaled message
+                    throw new IllegalStateException("Message ID " + message.getMessageId()
+                            + " is already taken by a different message (from " + stored.getSenderId() + " to "
+                            + stored.getReceiverId() + " at " + stored.getTimestamp() + ")");
+                }
+            }
+            messageBatchRepository.insertAll(missing);
+            conversationService.recordMessages(missing);
+        });
+    }
+}
@@ -0,0 +1,166 @@
+package com.linkup.app.service;
+
+import com.linkup.app.dto.MissedMessages;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What users missed while they had no live session.
+ *
+ * Messages are already stored, so instead of buffering frames for offline users this
+ * keeps one small {@link MissedMessages} range per sender. When the user comes back
+ * and subscribes to /user/queue/sync, the ranges are sent in one frame and the client
+ * fetches exactly those messages.
+ *
+ * The ranges are a hint, not the record of what is unread: they are held in memory
+ * on the node that saw the message only, so a user who reconnects to another node
+ * (or after a restart) gets no sync frame and finds the messages through the inbox
+ * unread counts instead. The same goes for users past max-offline-users and for
+ * ranges not collected within offline-ttl-hours; both are counted in
+ * chat.offline.discarded.
+ */
+@Service
+public class OfflineSyncQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(OfflineSyncQueue.class);
+
+    static final String SYNC_DESTINATION = "/queue/sync";
+
+    @Autowired
+    private ChatRelay chatRelay;
+
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Value("${app.chat.presence.max-offline-users:100000}")
+    private int maxOfflineUsers;
+
+    @Value("${app.chat.presence.offline-ttl-hours:168}")
+    private long offlineTtlHours;
+
+    private final ConcurrentHashMap<Long, UserMissed> missed = new ConcurrentHashMap<>();
+
+    private final LongAdder droppedUsers = new LongAdder();
+    private final LongAdder expiredUsers = new LongAdder();
+    // Set when the cap is warned about, cleared by the sweep once there is room again
+    private final AtomicBoolean full = new AtomicBoolean(false);
+
+    private static class UserMissed {
+        final Map<Long, MissedMessages> bySender = new ConcurrentHashMap<>();
+        volatile long updatedAt;
+    }
+
+    @PostConstruct
+    public void registerMetrics() {
+        meterRegistry.ifAvailable(registry -> {
+            Gauge.builder("chat.offline.users", missed, Map::size)
+                    .description("Users with missed-message ranges held on this node")
+                    .register(registry);
+            FunctionCounter.builder("chat.offline.discarded", droppedUsers, LongAdder::sum)
+                    .tag("reason", "full")
+                    .description("Users whose missed-message ranges were not kept")
+                    .register(registry);
+            FunctionCounter.builder("chat.offline.discarded", expiredUsers, LongAdder::sum)
+                    .tag("reason", "expired")
+                    .register(registry);
+        });
+    }
+
+    /**
+     * Note a message the user was not online to receive
+     */
+    public void record(Long userId, Long senderId, Long messageId) {
+        // Inside compute so a concurrent onSubscribe cannot take the entry mid-update
+        UserMissed userMissed = missed.compute(userId, (id, current) -> {
+            if (current == null) {
+                if (missed.size() >= maxOfflineUsers) {
+                    return null;
+                }
+                current = new UserMissed();
+            }
+            current.bySender.merge(senderId, new MissedMessages(senderId, messageId, messageId, 1),
+                    (a, b) -> new MissedMessages(senderId,
+                            Math.min(a.getFirstMessageId(), b.getFirstMessageId()),
+                            Math.max(a.getLastMessageId(), b.getLastMessageId()), a.getCount() + b.getCount()));
+            current.updatedAt = System.currentTimeMillis();
+            return current;
+        });
+        if (userMissed == null) {
+            droppedUsers.increment();
+            if (full.compareAndSet(false, true)) {
+                logger.warn("Offline sync queue holds {} users; missed messages for more are not tracked",
+                        maxOfflineUsers);
+            }
+        }
+    }
+
+    /**
+     * @return What the user has missed so far, without clearing it
+     */
+    public List<MissedMessages> peek(Long userId) {
+        UserMissed userMissed = missed.get(userId);
+        return userMissed == null ? List.of() : new ArrayList<>(userMissed.bySender.values());
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        String destination = SimpMessageHeaderAccessor.getDestination(event.getMessage().getHeaders());
+        if (destination == null || !destination.endsWith(SYNC_DESTINATION)) {
+            return;
+        }
+        Long userId = presenceRegistry.resolveUserId(event.getUser());
+        UserMissed userMissed = userId == null ? null : missed.remove(userId);
+        if (userMissed != null) {
+            chatRelay.sendToUser(userId.toString(), SYNC_DESTINATION, new ArrayList<>(userMissed.bySender.values()));
+        }
+    }
+
+    /**
+     * Forget ranges nobody collected within the TTL
+     */
+    @Scheduled(fixedDelayString = "${app.chat.presence.offline-sweep-ms:600000}")
+    public void expire() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(offlineTtlHours);
+        long expiredBefore = expiredUsers.sum();
+        for (Long userId : missed.keySet()) {
+            // Atomic with record, so a range updated since the check is kept
+            missed.computeIfPresent(userId, (id, userMissed) -> {
+                if (userMissed.updatedAt >= cutoff) {
+                    return userMissed;
+                }
+                expiredUsers.increment();
+                return null;
+            });
+        }
+        long removed = expiredUsers.sum() - expiredBefore;
+        if (removed > 0) {
+            logger.info("Expired missed-message ranges of {} offline users", removed);
+        }
+        if (missed.size() < maxOfflineUsers) {
+            full.set(false);
+        }
+    }
+}
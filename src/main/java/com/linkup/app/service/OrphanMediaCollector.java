@@ -0,0 +1,408 @@
+package com.linkup.app.service;
+
+import com.linkup.app.model.MediaBlob;
+import com.linkup.app.repository.ContentRepository;
+import com.linkup.app.repository.MediaBlobRepository;
+import com.linkup.app.util.MediaStorageLayout;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Background garbage collection of media files that no Content row or media blob
+ * references.
+ *
+ * Files get here when a process dies between storing an upload and inserting its
+ * row, when a reference count drifts, or when a post with pre-deduplication files
+ * is deleted (those files have no blob row to release). Each run:
+ * <ol>
+ *   <li>puts back every quarantined file that is referenced again, and deletes
+ *       the rest once their quarantine period has passed;</li>
+ *   <li>streams the uploads directory (legacy top level and the shard tree),
+ *       checks names against the contents and media_blobs tables one batch at a
+ *       time, and moves unreferenced files older than the grace period into
+ *       quarantine;</li>
+ *   <li>deletes variant temp files and staging files left behind by interrupted
+ *       jobs and uploads.</li>
+ * </ol>
+ * Each move to quarantine and each final delete happens while holding the lock on
+ * the file's blob row, after checking again that nothing references it: an upload
+ * may have taken a reference since the batch was checked, and its increment waits
+ * for the lock instead of landing on a row that is being removed. A row left at zero
+ * references goes with its file, so a later upload of the same bytes stores a fresh
+ * copy. Quarantine keeps a wrong decision recoverable: a file that is still needed
+ * is restored instead of lost. File operations are throttled like the shard migration
+ * so the sweep does not compete with serving I/O.
+ */
+@Service
+public class OrphanMediaCollector {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrphanMediaCollector.class);
+
+    private static final String QUARANTINE_DIR = ".quarantine";
+    private static final String STAGING_DIR = ".multipart";
+    private static final String STAGED_PREFIX = "staged-";
+    private static final String VARIANT_TEMP_PREFIX = "variant-";
+    private static final String VARIANT_TEMP_SUFFIX = ".tmp";
+
+    @Autowired
+    private MediaStorageLayout storageLayout;
+
+    @Autowired
+    private ContentRepository contentRepository;
+
+    @Autowired
+    private MediaBlobRepository mediaBlobRepository;
+
+    @Autowired
+    private HotMediaCache hotMediaCache;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Value("${file.orphan-gc.enabled:true}")
+    private boolean enabled;
+
+    @Value("${file.orphan-gc.grace-hours:24}")
+    private long graceHours;
+
+    @Value("${file.orphan-gc.quarantine-hours:72}")
+    private long quarantineHours;
+
+    @Value("${file.orphan-gc.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${file.orphan-gc.files-per-second:200}")
+    private int filesPerSecond;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private final LongAdder reclaimedBytes = new LongAdder();
+    private final LongAdder quarantinedFiles = new LongAdder();
+    private final LongAdder deletedFiles = new LongAdder();
+    private final LongAdder restoredFiles = new LongAdder();
+
+    @PostConstruct
+    public void registerMetrics() {
+        meterRegistry.ifAvailable(registry -> {
+            FunctionCounter.builder("media.gc.reclaimed", reclaimedBytes, LongAdder::sum)
+                    .baseUnit("bytes")
+                    .description("Bytes freed by deleting orphaned media")
+                    .register(registry);
+            FunctionCounter.builder("media.gc.files", quarantinedFiles, LongAdder::sum)
+                    .tag("action", "quarantined")
+                    .register(registry);
+            FunctionCounter.builder("media.gc.files", deletedFiles, LongAdder::sum)
+                    .tag("action", "deleted")
+                    .register(registry);
+            FunctionCounter.builder("media.gc.files", restoredFiles, LongAdder::sum)
+                    .tag("action", "restored")
+                    .register(registry);
+        });
+    }
+
+    @Scheduled(cron = "${file.orphan-gc.cron:0 0 4 * * *}")
+    public void scheduledRun() {
+        if (enabled) {
+            collect();
+        }
+    }
+
+    /**
+     * Run one full pass
+     * @return Bytes reclaimed by this pass
+     */
+    public long collect() {
+        if (!running.compareAndSet(false, true)) {
+            logger.info("Orphan media collection already running");
+            return 0;
+        }
+
+        long before = reclaimedBytes.sum();
+        try {
+            purgeQuarantine();
+            sweepStore();
+            sweepStaging();
+        } catch (IOException e) {
+            logger.error("Orphan media collection aborted: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running.set(false);
+        }
+
+        long reclaimed = reclaimedBytes.sum() - before;
+        logger.info("Orphan media collection finished: {} bytes reclaimed", reclaimed);
+        return reclaimed;
+    }
+
+    private void purgeQuarantine() throws IOException, InterruptedException {
+        Path quarantine = storageLayout.getRoot().resolve(QUARANTINE_DIR);
+        if (!Files.isDirectory(quarantine)) {
+            return;
+        }
+
+        // Every quarantined file is checked, so one that is referenced again comes back
+        // on the next pass rather than after its quarantine period
+        Instant cutoff = Instant.now().minus(Duration.ofHours(quarantineHours));
+        Map<String, Path> batch = new LinkedHashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(quarantine, Files::isRegularFile)) {
+            for (Path file : files) {
+                batch.put(file.getFileName().toString(), file);
+                if (batch.size() >= batchSize) {
+                    purgeBatch(batch, cutoff);
+                }
+            }
+        }
+        purgeBatch(batch, cutoff);
+    }
+
+    private void purgeBatch(Map<String, Path> batch, Instant cutoff) throws InterruptedException {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Set<String> referenced = findReferenced(batch.keySet());
+        for (Map.Entry<String, Path> entry : batch.entrySet()) {
+            String name = entry.getKey();
+            Path file = entry.getValue();
+            try {
+                if (referenced.contains(name)) {
+                    Path target = storageLayout.resolve(name);
+                    if (Files.exists(target)) {
+                        Files.delete(file);
+                    } else {
+                        Files.createDirectories(target.getParent());
+                        Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                    restoredFiles.increment();
+                    logger.warn("Restored quarantined media {}: it is referenced again", name);
+                } else if (isOlderThan(file, cutoff)) {
+                    long size = Files.size(file);
+                    // Referenced since the batch was checked: restored by the next pass
+                    if (ifUnreferenced(name, () -> Files.delete(file))) {
+                        reclaimedBytes.add(size);
+                        deletedFiles.increment();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Could not purge quarantined media {}: {}", name, e.getMessage());
+            }
+            throttle();
+        }
+        batch.clear();
+    }
+
+    private void sweepStore() throws IOException, InterruptedException {
+        Path root = storageLayout.getRoot();
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+
+        Instant cutoff = Instant.now().minus(Duration.ofHours(graceHours));
+        Map<String, Path> batch = new LinkedHashMap<>();
+        sweepDirectory(root, 0, cutoff, batch);
+        quarantineBatch(batch);
+    }
+
+    /**
+     * Depth-first over the legacy top level and the two shard levels, streaming each
+     * directory instead of listing the whole tree into memory
+     */
+    private void sweepDirectory(Path dir, int depth, Instant cutoff, Map<String, Path> batch)
+            throws IOException, InterruptedException {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                if (name.startsWith(".")) {
+                    continue; // staging, quarantine, and temp files
+                }
+                if (Files.isDirectory(entry)) {
+                    if (depth < 2) {
+                        sweepDirectory(entry, depth + 1, cutoff, batch);
+                    }
+                } else if (!isOlderThan(entry, cutoff)) {
+                    continue;
+                } else if (name.startsWith(VARIANT_TEMP_PREFIX) && name.endsWith(VARIANT_TEMP_SUFFIX)) {
+                    // Left behind by a variant job that died before its rename
+                    deleteFile(entry);
+                } else {
+                    batch.put(name, entry);
+                    if (batch.size() >= batchSize) {
+                        quarantineBatch(batch);
+                    }
+                }
+            }
+        }
+    }
+
+    private void quarantineBatch(Map<String, Path> batch) throws IOException, InterruptedException {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Set<String> referenced = findReferenced(batch.keySet());
+        Path quarantine = storageLayout.getRoot().resolve(QUARANTINE_DIR);
+        Files.createDirectories(quarantine);
+
+        for (Map.Entry<String, Path> entry : batch.entrySet()) {
+            String name = entry.getKey();
+            if (referenced.contains(name)) {
+                continue;
+            }
+            try {
+                Path target = quarantine.resolve(name);
+                boolean moved = ifUnreferenced(name, () -> {
+                    Files.move(entry.getValue(), target, StandardCopyOption.ATOMIC_MOVE);
+                    // The quarantine period runs from now, not from the upload time
+                    Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+                });
+                if (moved) {
+                    hotMediaCache.invalidate(name);
+                    quarantinedFiles.increment();
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Could not quarantine orphaned media {}: {}", name, e.getMessage());
+            }
+            throttle();
+        }
+        batch.clear();
+    }
+
+    private interface FileOperation {
+        void run() throws IOException;
+    }
+
+    /**
+     * Run a file operation under the blob row lock if the name is still unreferenced,
+     * deleting a row left at zero references in the same transaction
+     * @return false if it is referenced again and nothing was done
+     */
+    private boolean ifUnreferenced(String name, FileOperation operation) throws IOException {
+        try {
+            return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                Optional<MediaBlob> blob = mediaBlobRepository.findByPathForUpdate(name);
+                if (!findReferenced(Set.of(name)).isEmpty()) {
+                    return false;
+                }
+                if (blob.isPresent() && mediaBlobRepository.deleteUnreferenced(name) != 1) {
+                    return false;
+                }
+                try {
+                    operation.run();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return true;
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void sweepStaging() throws IOException, InterruptedException {
+        Path staging = storageLayout.getRoot().resolve(STAGING_DIR);
+        if (!Files.isDirectory(staging)) {
+            return;
+        }
+
+        // Resumable upload files (upload-*) expire with their sessions
+        Instant cutoff = Instant.now().minus(Duration.ofHours(graceHours));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(staging, STAGED_PREFIX + "*")) {
+            for (Path file : files) {
+                if (Files.isRegularFile(file) && isOlderThan(file, cutoff)) {
+                    deleteFile(file);
+                }
+            }
+        }
+    }
+
+    private void deleteFile(Path file) throws IOException, InterruptedException {
+        long size = Files.size(file);
+        if (Files.deleteIfExists(file)) {
+            reclaimedBytes.add(size);
+            deletedFiles.increment();
+        }
+        throttle();
+    }
+
+    /**
+     * One query per column for the whole batch rather than one lookup per file
+     */
+    private Set<String> findReferenced(Set<String> names) {
+        List<String> originals = new ArrayList<>();
+        List<String> thumbnails = new ArrayList<>();
+        List<String> mediums = new ArrayList<>();
+        for (String name : names) {
+            if (name.contains("_" + ImageDerivativeService.THUMBNAIL + ".")) {
+                thumbnails.add(name);
+            } else if (name.contains("_" + ImageDerivativeService.MEDIUM + ".")) {
+                mediums.add(name);
+            } else {
+                originals.add(name);
+            }
+        }
+
+        Set<String> referenced = new HashSet<>();
+        if (!originals.isEmpty()) {
+            referenced.addAll(contentRepository.findReferencedPaths(originals));
+            // A blob with references but no Content row yet: an upload in progress
+            referenced.addAll(mediaBlobRepository.findReferencedPaths(originals));
+        }
+        if (!thumbnails.isEmpty()) {
+            referenced.addAll(contentRepository.findReferencedThumbnailPaths(thumbnails));
+        }
+        if (!mediums.isEmpty()) {
+            referenced.addAll(contentRepository.findReferencedMediumPaths(mediums));
+        }
+        return referenced;
+    }
+
+    private boolean isOlderThan(Path file, Instant cutoff) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return attributes.lastModifiedTime().toInstant().isBefore(cutoff);
+        } catch (IOException e) {
+            // Moved or deleted since the directory was listed
+            return false;
+        }
+    }
+
+    private void throttle() throws InterruptedException {
+        if (filesPerSecond > 0) {
+            long pauseNanos = 1_000_000_000L / filesPerSecond;
+            Thread.sleep(pauseNanos / 1_000_000, (int) (pauseNanos % 1_000_000));
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.linkup.app.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Maintains the denormalized likes_count / comments_count columns on posts.
+ *
+ * Like and comment writes only bump a per-post LongAdder in memory; a scheduled
+ * flush turns the accumulated deltas into one batched
+ * {@code UPDATE posts SET x = x + ?} per dirty post. A viral post taking thousands
+ * of likes a minute therefore costs one row update per flush interval instead of
+ * a row lock per like. A nightly reconciliation recounts from the likes and
+ * comments tables to repair any drift (e.g. deltas lost in a crash).
+ *
+ * A delta only reaches memory after its transaction commits, so a recount could
+ * see a like whose delta is still on its way and count it twice. Transactions
+ * therefore hold a shared commit lock from just before they commit until their
+ * delta is added, and the reconciliation recounts each range under the exclusive
+ * lock, replacing the range's pending deltas (all of them already in the count)
+ * with the fresh totals. Increments made outside a transaction are not covered.
+ */
+@Service
+public class PostCounterService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostCounterService.class);
+
+    private static final String FLUSH_LIKES_SQL =
+            "UPDATE posts SET likes_count = likes_count + ? WHERE post_id = ?";
+    private static final String FLUSH_COMMENTS_SQL =
+            "UPDATE posts SET comments_count = comments_count + ? WHERE post_id = ?";
+    // A plain read, so it never waits on the row locks of a transaction that is itself
+    // waiting for the commit lock
+    private static final String RECOUNT_SQL =
+            "SELECT p.post_id, " +
+            "(SELECT COUNT(*) FROM likes l WHERE l.post_id = p.post_id), " +
+            "(SELECT COUNT(*) FROM comments c WHERE c.post_id = p.post_id) " +
+            "FROM posts p WHERE p.post_id > ? AND p.post_id <= ?";
+    private static final String RECONCILE_SQL =
+            "UPDATE posts SET likes_count = ?, comments_count = ? WHERE post_id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.counters.reconcile-batch-size:1000}")
+    private int reconcileBatchSize;
+
+    private final ConcurrentHashMap<Long, LongAdder> pendingLikes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, LongAdder> pendingComments = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock commitLock = new ReentrantReadWriteLock();
+
+    public void incrementLikes(Long postId, long delta) {
+        record(pendingLikes, postId, delta);
+    }
+
+    public void incrementComments(Long postId, long delta) {
+        record(pendingComments, postId, delta);
+    }
+
+    /**
+     * @return Likes recorded in memory for the post but not yet flushed to the database
+     */
+    public long pendingLikes(Long postId) {
+        LongAdder adder = pendingLikes.get(postId);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /**
+     * @return Comments recorded in memory for the post but not yet flushed to the database
+     */
+    public long pendingComments(Long postId) {
+        LongAdder adder = pendingComments.get(postId);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    @Scheduled(fixedDelayString = "${app.counters.flush-interval-ms:2000}")
+    public synchronized void flush() {
+        flush(pendingLikes, FLUSH_LIKES_SQL);
+        flush(pendingComments, FLUSH_COMMENTS_SQL);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * Recomputes both counters from the source tables in post_id ranges, so no single
+     * statement locks the whole posts table.
+     */
+    @Scheduled(cron = "${app.counters.reconcile-cron:0 30 3 * * *}")
+    public void reconcile() {
+        Long maxPostId = jdbcTemplate.queryForObject("SELECT MAX(post_id) FROM posts", Long.class);
+        if (maxPostId == null) {
+            return;
+        }
+
+        int updated = 0;
+        for (long low = 0; low < maxPostId; low += reconcileBatchSize) {
+            updated += reconcile(low, low + reconcileBatchSize);
+        }
+        logger.info("Reconciled like/comment counters for {} posts", updated);
+    }
+
+    /**
+     * Recount posts in (low, high] and drop their pending deltas, with no commit in
+     * flight and no flush halfway through applying a delta
+     */
+    private synchronized int reconcile(long low, long high) {
+        commitLock.writeLock().lock();
+        try {
+            List<Object[]> counts = jdbcTemplate.query(RECOUNT_SQL,
+                    (rs, i) -> new Object[]{rs.getLong(2), rs.getLong(3), rs.getLong(1)}, low, high);
+            jdbcTemplate.batchUpdate(RECONCILE_SQL, counts);
+            for (Object[] row : counts) {
+                pendingLikes.remove((Long) row[2]);
+                pendingComments.remove((Long) row[2]);
+            }
+            return counts.size();
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+    }
+
+    private void record(ConcurrentHashMap<Long, LongAdder> pending, Long postId, long delta) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Only count writes that actually commit
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                private boolean locked;
+
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    commitLock.readLock().lock();
+                    locked = true;
+                }
+
+                @Override
+                public void afterCommit() {
+                    add(pending, postId, delta);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (locked) {
+                        locked = false;
+                        commitLock.readLock().unlock();
+                    }
+                }
+            });
+        } else {
+            add(pending, postId, delta);
+        }
+    }
+
+    private void add(ConcurrentHashMap<Long, LongAdder> pending, Long postId, long delta) {
+        while (true) {
+            LongAdder adder = pending.computeIfAbsent(postId, id -> new LongAdder());
+            adder.add(delta);
+            if (pending.get(postId) == adder) {
+                return;
+            }
+            // The flusher evicted this adder as idle before our add landed; move the delta over
+            adder.add(-delta);
+        }
+    }
+
+    private void flush(ConcurrentHashMap<Long, LongAdder> pending, String sql) {
+        List<Object[]> batch = new ArrayList<>();
+        List<LongAdder> drained = new ArrayList<>();
+
+        for (Map.Entry<Long, LongAdder> entry : pending.entrySet()) {
+            LongAdder adder = entry.getValue();
+            long delta = adder.sum();
+            if (delta == 0) {
+                // Idle since the last flush; drop it so the map only holds hot posts
+                pending.remove(entry.getKey(), adder);
+                continue;
+            }
+            // Subtract rather than reset so increments racing with the flush are kept
+            adder.add(-delta);
+            batch.add(new Object[]{delta, entry.getKey()});
+            drained.add(adder);
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(sql, batch);
+        } catch (RuntimeException e) {
+            // Put the deltas back so the next flush retries them
+            for (int i = 0; i < batch.size(); i++) {
+                drained.get(i).add((Long) batch.get(i)[0]);
+            }
+            logger.warn("Counter flush failed, {} posts will be retried: {}", batch.size(), e.getMessage());
+        }
+    }
+}
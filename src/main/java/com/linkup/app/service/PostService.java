@@ -6,18 +6,26 @@ import com.linkup.app.model.Comment;
 import com.linkup.app.model.Content;
 import com.linkup.app.model.Post;
 import com.linkup.app.model.User;
+import com.linkup.app.repository.ContentBatchRepository;
 import com.linkup.app.repository.ContentRepository;
 import com.linkup.app.repository.PostRepository;
 import com.linkup.app.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @Service
 public class PostService {
@@ -34,8 +42,35 @@ public class PostService {
     @Autowired
     private ContentRepository contentRepository; // Add this if you don't have it already
 
+    @Autowired
+    private ContentBatchRepository contentBatchRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
 
-    public Post createPost(Long userId, String description, List<MultipartFile> mediaFiles) throws IOException {
+    @Autowired
+    private PostCounterService postCounterService;
+
+    @Autowired
+    private StorageQuotaService storageQuotaService;
+
+    @Value("${app.feed.comment-preview-size:3}")
+    private int commentPreviewSize;
+
+
+    /**
+     * Creates a post with its media.
+     *
+     * Files are written to storage concurrently on virtual threads before any database
+     * work, then the post and all of its Content rows are inserted in one short
+     * transaction (contents as a single JDBC batch) that also charges the bytes to
+     * the user's storage quota. If any upload or the insert fails, every file already
+     * written is deleted and nothing is committed.
+     */
+    public PostResponse createPost(Long userId, String description, List<MultipartFile> mediaFiles) throws IOException {
         // Validate user existence
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("User not found with ID: " + userId));
@@ -44,51 +79,103 @@ public class PostService {
             throw new IllegalArgumentException("Maximum 3 media files are allowed per post");
         }
 
-        // Create new Post
-        Post post = new Post();
-        post.setUser(user);
-        post.setPostType("skill_sharing");
-        post.setDescription(description);
-        post.setContents(new HashSet<>()); // Initialize empty set
+        List<MultipartFile> files = mediaFiles != null ? mediaFiles : List.of();
+        long totalBytes = files.stream().mapToLong(MultipartFile::getSize).sum();
+        // Refuse before writing anything to storage
+        storageQuotaService.checkQuota(userId, totalBytes);
 
-        // Save Post early to get ID
-        post = postRepository.save(post);
+        List<String> storedFileNames = storeFilesConcurrently(files);
 
-        // Process media files if any
-        if (mediaFiles != null && !mediaFiles.isEmpty()) {
-            for (MultipartFile file : mediaFiles) {
-                String fileName = fileStorageService.storeFile(file);
+        List<Content> contents = new ArrayList<>();
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                MultipartFile file = files.get(i);
 
-                // Create and save each Content separately
                 Content content = new Content();
-                content.setPath(fileName);
+                content.setPath(storedFileNames.get(i));
                 content.setContentType(file.getContentType());
                 content.setFileName(file.getOriginalFilename());
                 content.setFileSize(file.getSize());
-                content.setPost(post);
-
-                // File type handling
-                if (fileStorageService.isImageFile(file.getContentType())) {
-                    content.setFileType("image");
-                } else if (fileStorageService.isVideoFile(file.getContentType())) {
-                    content.setFileType("video");
-                    content.setDuration(0); // Placeholder for video duration
-                } else {
-                    content.setFileType("unknown");
-                }
 
-                // Save each content object individually
-                contentRepository.save(content);
+                // File type, dimensions, placeholder and video duration, from headers
+                fileStorageService.populateMediaMetadata(content);
+                contents.add(content);
             }
+        } catch (IOException e) {
+            storedFileNames.forEach(fileStorageService::deleteFile);
+            throw e;
         }
 
-        // Re-fetch the post to ensure we have all associations loaded
-        return postRepository.findById(post.getPostId())
-                .orElseThrow(() -> new RuntimeException("Failed to retrieve post after saving"));
+        // Create new Post
+        Post newPost = new Post();
+        newPost.setUser(user);
+        newPost.setPostType("skill_sharing");
+        newPost.setDescription(description);
+
+        Post post;
+        try {
+            post = transactionTemplate.execute(status -> {
+                storageQuotaService.reserve(userId, totalBytes);
+                Post saved = postRepository.save(newPost);
+                contentBatchRepository.insertAll(saved.getPostId(), contents);
+                return saved;
+            });
+        } catch (RuntimeException e) {
+            storedFileNames.forEach(fileStorageService::deleteFile);
+            throw e;
+        }
+
+        // Thumbnails and feed-sized variants are produced in the background
+        imageDerivativeService.enqueue(contents);
+
+        // Build the response from what we already have instead of re-reading the post
+        PostResponse response = new PostResponse();
+        response.setPostId(post.getPostId());
+        response.setPostType(post.getPostType());
+        response.setCreatedAt(post.getCreatedAt());
+        response.setDescription(post.getDescription());
+        response.setUserId(user.getUserId());
+        response.setUserName(user.getUserName());
+        response.setContents(new LinkedHashSet<>(contents));
+        response.setComments(List.of());
+        return response;
     }
 
+    private List<String> storeFilesConcurrently(List<MultipartFile> files) throws IOException {
+        if (files.isEmpty()) {
+            return List.of();
+        }
 
+        List<Future<String>> uploads = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (MultipartFile file : files) {
+                uploads.add(executor.submit(() -> fileStorageService.storeFile(file)));
+            }
+        } // close() waits for every upload to finish
+
+        List<String> storedFileNames = new ArrayList<>();
+        IOException failure = null;
+        for (Future<String> upload : uploads) {
+            try {
+                storedFileNames.add(upload.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof IOException io
+                            ? io : new IOException("Failed to store file: " + e.getCause().getMessage(), e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = new IOException("Interrupted while storing files", e);
+            }
+        }
 
+        if (failure != null) {
+            // Roll back the files that did make it to disk
+            storedFileNames.forEach(fileStorageService::deleteFile);
+            throw failure;
+        }
+        return storedFileNames;
+    }
 
     public List<Post> getPostsByUserId(Long userId) {
         return postRepository.findByUserUserIdOrderByPostIdDesc(userId);
@@ -113,9 +200,14 @@ public class PostService {
             // Contents
             postResponse.setContents(post.getContents());
             // Comments & Likes Count
-            postResponse.setCommentsCount(post.getComments().size());
+            postResponse.setCommentsCount((int) (post.getCommentsCount()
+                    + postCounterService.pendingComments(post.getPostId())));
             List<CommentResponse> commentResponses = new ArrayList<>();
-            for (Comment comment : post.getComments()) {
+            List<Comment> latestComments = post.getComments().stream()
+                    .sorted(Comparator.comparing(Comment::getCreatedAt).reversed())
+                    .limit(commentPreviewSize)
+                    .toList();
+            for (Comment comment : latestComments) {
                 CommentResponse commentResponse = new CommentResponse();
                 commentResponse.setCommentId(comment.getCommentId());
                 commentResponse.setCreatedAt(comment.getCreatedAt());
@@ -128,7 +220,8 @@ public class PostService {
                 commentResponses.add(commentResponse);
             }
             postResponse.setComments(commentResponses);
-            postResponse.setLikesCount(post.getLikes().size());
+            postResponse.setLikesCount((int) (post.getLikesCount()
+                    + postCounterService.pendingLikes(post.getPostId())));
             postResponses.add(postResponse);
         }
         return postResponses;
@@ -146,7 +239,15 @@ public class PostService {
             if (!post.getUser().getUserId().equals(userId)) {
                 throw new SecurityException("Unauthorized: You can only delete your own posts");
             }
-            postRepository.delete(post);
+            List<String> mediaPaths = contentRepository.findPathsByPostId(postId);
+            long mediaBytes = contentRepository.sumFileSizeByPostId(postId);
+            transactionTemplate.executeWithoutResult(status -> {
+                postRepository.delete(post);
+                storageQuotaService.release(userId, mediaBytes);
+            });
+
+            // Shared blobs are only removed from disk once no other post references them
+            mediaPaths.forEach(fileStorageService::deleteFile);
             return true;
         } else {
             return false;
@@ -0,0 +1,212 @@
+package com.linkup.app.service;
+
+import com.linkup.app.model.User;
+import com.linkup.app.repository.UserRepository;
+import com.linkup.app.security.ChatPrincipal;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.simp.user.MultiServerUserRegistry;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Who is connected to chat, by user ID, counting every session (device) a user
+ * has open.
+ *
+ * Sessions are added and removed from the STOMP connect / disconnect events and
+ * forwarded to the {@link ChatRelay} so other nodes can route to them. The user ID
+ * comes from the session's {@link ChatPrincipal}, or from the user's email for any
+ * other authenticated principal. As an inbound
+ * channel interceptor it also notes the last frame, heartbeats included, seen on
+ * each session; a session that negotiated heartbeats and has gone quiet for three
+ * intervals is dropped even if its disconnect event never arrived. Lookups are map
+ * reads, so online checks are cheap enough to make before every delivery.
+ */
+@Service
+public class PresenceRegistry implements ChannelInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(PresenceRegistry.class);
+
+    private static final int MISSED_HEARTBEATS = 3;
+
+    private static class Session {
+        final Long userId;
+        final long heartbeatMs;
+        volatile long lastSeen = System.currentTimeMillis();
+
+        Session(Long userId, long heartbeatMs) {
+            this.userId = userId;
+            this.heartbeatMs = heartbeatMs;
+        }
+    }
+
+    @Autowired
+    private ChatRelay chatRelay;
+
+    @Autowired
+    private SimpUserRegistry simpUserRegistry;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    // How often the server asks clients for heartbeats
+    @Value("${app.chat.heartbeat-ms:10000}")
+    private long heartbeatMs;
+
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Integer> sessionsPerUser = new ConcurrentHashMap<>();
+    // Heartbeat interval promised in CONNECT, until the session is established
+    private final ConcurrentHashMap<String, Long> connectingHeartbeats = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void registerMetrics() {
+        meterRegistry.ifAvailable(registry -> {
+            Gauge.builder("chat.presence.sessions", sessions, Map::size)
+                    .description("Open STOMP sessions on this node")
+                    .register(registry);
+            Gauge.builder("chat.presence.users", sessionsPerUser, Map::size)
+                    .description("Users with at least one open STOMP session on this node")
+                    .register(registry);
+        });
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null) {
+            return message;
+        }
+
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.CONNECT) {
+            StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+            long clientSends = accessor.getHeartbeat()[0];
+            connectingHeartbeats.put(sessionId, clientSends == 0 ? 0 : Math.max(clientSends, heartbeatMs));
+        } else {
+            Session session = sessions.get(sessionId);
+            if (session != null) {
+                session.lastSeen = System.currentTimeMillis();
+            }
+        }
+        return message;
+    }
+
+    @EventListener
+    public void onSessionConnected(SessionConnectedEvent event) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (sessionId == null) {
+            return;
+        }
+        Long heartbeat = connectingHeartbeats.remove(sessionId);
+        Long userId = resolveUserId(event.getUser());
+        if (userId != null) {
+            sessionOpened(sessionId, userId, heartbeat == null ? 0 : heartbeat);
+        }
+    }
+
+    /**
+     * @return The user ID behind a session principal, or null if it is anonymous or unknown
+     */
+    public Long resolveUserId(Principal principal) {
+        if (!(principal instanceof Authentication auth)) {
+            return null;
+        }
+        if (auth.getPrincipal() instanceof ChatPrincipal chatPrincipal) {
+            return chatPrincipal.userId();
+        }
+        // UserDetails and OAuth2 principals are named by email
+        return userRepository.findByEmail(auth.getName()).map(User::getUserId).orElse(null);
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        connectingHeartbeats.remove(event.getSessionId());
+        sessionClosed(event.getSessionId());
+    }
+
+    public void sessionOpened(String sessionId, Long userId, long heartbeatMs) {
+        if (sessions.putIfAbsent(sessionId, new Session(userId, heartbeatMs)) != null) {
+            return;
+        }
+        sessionsPerUser.merge(userId, 1, Integer::sum);
+        chatRelay.sessionOpened(sessionId, userId.toString());
+    }
+
+    public void sessionClosed(String sessionId) {
+        Session session = sessions.remove(sessionId);
+        if (session == null) {
+            // Disconnect events can repeat
+            return;
+        }
+        sessionsPerUser.computeIfPresent(session.userId, (user, count) -> count > 1 ? count - 1 : null);
+        chatRelay.sessionClosed(sessionId);
+    }
+
+    /**
+     * @return Whether the user has a live session on this node or, as far as the
+     * relay or broker knows, on another one
+     */
+    public boolean isOnline(Long userId) {
+        // Other nodes and the broker know users by the name deliveries are addressed to
+        String user = userId.toString();
+        return sessionsPerUser.containsKey(userId)
+                || chatRelay.hasRemoteSessions(user)
+                // With an external broker, the registry also knows the other nodes' users
+                || (simpUserRegistry instanceof MultiServerUserRegistry && simpUserRegistry.getUser(user) != null);
+    }
+
+    /**
+     * @return Online status for each user, in the order given
+     */
+    public Map<Long, Boolean> getOnlineStatus(Collection<Long> userIds) {
+        Map<Long, Boolean> status = new LinkedHashMap<>();
+        userIds.forEach(userId -> status.put(userId, isOnline(userId)));
+        return status;
+    }
+
+    /**
+     * @return Sessions the user has open on this node
+     */
+    public int getSessionCount(Long userId) {
+        return sessionsPerUser.getOrDefault(userId, 0);
+    }
+
+    /**
+     * Drop sessions that promised heartbeats and stopped sending them
+     */
+    @Scheduled(fixedDelayString = "${app.chat.heartbeat-ms:10000}")
+    public void evictSilentSessions() {
+        long now = System.currentTimeMillis();
+        sessions.forEach((sessionId, session) -> {
+            if (session.heartbeatMs > 0 && now - session.lastSeen > MISSED_HEARTBEATS * session.heartbeatMs) {
+                logger.info("Dropping silent chat session {} of {}", sessionId, session.userId);
+                sessionClosed(sessionId);
+            }
+        });
+    }
+}
@@ -0,0 +1,306 @@
+package com.linkup.app.service;
+
+import com.linkup.app.model.Content;
+import com.linkup.app.model.Post;
+import com.linkup.app.model.UploadSession;
+import com.linkup.app.repository.ContentRepository;
+import com.linkup.app.repository.PostRepository;
+import com.linkup.app.repository.UploadSessionRepository;
+import com.linkup.app.util.MediaStorageLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resumable uploads for large media.
+ *
+ * A client creates a session with the total size, then sends chunks at increasing
+ * offsets. Each chunk is written positionally into a full-length staging file and
+ * the stored offset only advances once its bytes are on disk, so after a dropped
+ * connection the client asks for the offset and continues from there instead of
+ * starting over. Completing the session stores the file like a normal upload and
+ * attaches it to a post as a Content row. Storing uses up the staged bytes, so a
+ * completion that fails (validation, quota) ends the session as well, and the client
+ * starts a new one. Sessions not touched within the TTL are removed together with
+ * their staged bytes. A user has a limited number of open sessions, and their
+ * declared sizes count against the quota, so staging space stays bounded per user. Single-request raw uploads end the same
+ * way, so their bytes are owned by a post and charged to the quota like any other.
+ */
+@Service
+public class ResumableUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResumableUploadService.class);
+
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private ContentRepository contentRepository;
+
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+
+    @Autowired
+    private StorageQuotaService storageQuotaService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MediaStorageLayout storageLayout;
+
+    @Value("${file.resumable.max-size:500MB}")
+    private DataSize maxSize;
+
+    @Value("${file.resumable.max-chunk-size:16MB}")
+    private DataSize maxChunkSize;
+
+    @Value("${file.resumable.session-ttl-minutes:1440}")
+    private long sessionTtlMinutes;
+
+    @Value("${file.resumable.max-sessions-per-user:5}")
+    private int maxSessionsPerUser;
+
+    // Sessions with a chunk or completion in flight on this node; a second request
+    // for the same session is refused rather than writing over the same bytes
+    private final Set<String> busySessions = ConcurrentHashMap.newKeySet();
+
+    public UploadSession createSession(Long userId, String fileName, String contentType, Long size) throws IOException {
+        if (size == null || size <= 0) {
+            throw new IllegalArgumentException("Upload size must be positive");
+        }
+        if (size > maxSize.toBytes()) {
+            throw new IllegalArgumentException("Upload exceeds maximum size of " + maxSize.toBytes() + " bytes");
+        }
+        if (!fileStorageService.isAllowedFileType(contentType)) {
+            throw new IllegalArgumentException("File type not allowed: " + contentType);
+        }
+        if (uploadSessionRepository.countByUserId(userId) >= maxSessionsPerUser) {
+            throw new IllegalStateException("At most " + maxSessionsPerUser + " uploads can be in progress at once");
+        }
+        // Refuse before any chunk is sent; bytes of the user's other open sessions count too
+        storageQuotaService.checkQuota(userId, uploadSessionRepository.sumTotalSizeByUserId(userId) + size);
+
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString());
+        session.setUserId(userId);
+        session.setFileName(fileName);
+        session.setContentType(contentType);
+        session.setTotalSize(size);
+        session.setReceivedBytes(0);
+        session.setExpiresAt(nextExpiry());
+
+        fileStorageService.preallocateUpload(session.getId(), size);
+        try {
+            return uploadSessionRepository.save(session);
+        } catch (RuntimeException e) {
+            fileStorageService.deleteUpload(session.getId());
+            throw e;
+        }
+    }
+
+    public UploadSession getSession(String uploadId, Long userId) {
+        UploadSession session = uploadSessionRepository.findById(uploadId)
+                .orElseThrow(() -> new NoSuchElementException("Upload session not found: " + uploadId));
+        if (!session.getUserId().equals(userId)) {
+            throw new SecurityException("Unauthorized: You can only access your own uploads");
+        }
+        return session;
+    }
+
+    /**
+     * Write the chunk starting at offset and advance the session past it.
+     *
+     * @param offset Must equal the bytes received so far
+     * @return The new offset
+     * @throws IllegalStateException if the offset does not match or the session is busy
+     */
+    public long appendChunk(String uploadId, Long userId, long offset, InputStream in) throws IOException {
+        UploadSession session = getSession(uploadId, userId);
+        if (offset != session.getReceivedBytes()) {
+            throw new IllegalStateException("Offset mismatch: expected " + session.getReceivedBytes());
+        }
+
+        long remaining = session.getTotalSize() - offset;
+        if (remaining == 0) {
+            throw new IllegalStateException("Upload already received in full");
+        }
+
+        claim(uploadId);
+        try {
+            long written = fileStorageService.writeUploadChunk(
+                    uploadId, offset, in, Math.min(remaining, maxChunkSize.toBytes()));
+            if (written == 0) {
+                throw new IllegalArgumentException("Empty chunk");
+            }
+
+            long newOffset = offset + written;
+            if (uploadSessionRepository.advanceOffset(uploadId, offset, newOffset, nextExpiry()) == 0) {
+                throw new IllegalStateException("Upload session changed while the chunk was written");
+            }
+            return newOffset;
+        } finally {
+            busySessions.remove(uploadId);
+        }
+    }
+
+    /**
+     * Store a fully received upload and attach it to one of the user's posts
+     * @return The new Content row
+     */
+    public Content complete(String uploadId, Long userId, Long postId) throws IOException {
+        UploadSession session = getSession(uploadId, userId);
+        if (session.getReceivedBytes() != session.getTotalSize()) {
+            throw new IllegalStateException("Upload incomplete: " + session.getReceivedBytes()
+                    + " of " + session.getTotalSize() + " bytes received");
+        }
+
+        Post post = getOwnPost(postId, userId);
+
+        claim(uploadId);
+        try {
+            String storedName = fileStorageService.storeUpload(
+                    uploadId, session.getContentType(), session.getFileName(), session.getTotalSize());
+            return attach(userId, post, storedName, session.getContentType(),
+                    session.getFileName(), session.getTotalSize());
+        } finally {
+            // The staged bytes are used up even when storing or attaching failed, so the
+            // session could neither complete nor resume; it ends either way
+            uploadSessionRepository.deleteById(uploadId);
+            fileStorageService.deleteUpload(uploadId);
+            busySessions.remove(uploadId);
+        }
+    }
+
+    /**
+     * Store a raw request body and attach it to one of the user's posts, charging its
+     * stored size to the user's quota in the same transaction as the Content row.
+     *
+     * @param in The request body
+     * @param contentType Content-Type header of the body; parameters are ignored
+     * @param fileName Client-side file name, may be null
+     * @param maxBytes The upload is aborted once the body exceeds this size
+     * @return The new Content row
+     */
+    public Content storeRaw(Long userId, Long postId, InputStream in, String contentType, String fileName,
+                            long maxBytes) throws IOException {
+        Post post = getOwnPost(postId, userId);
+        String mimeType = fileStorageService.mimeType(contentType);
+
+        String storedName = fileStorageService.storeStream(in, mimeType, fileName, maxBytes);
+        long size;
+        try {
+            size = Files.size(storageLayout.resolve(storedName));
+        } catch (IOException e) {
+            fileStorageService.deleteFile(storedName);
+            throw e;
+        }
+        return attach(userId, post, storedName, mimeType, fileName, size);
+    }
+
+    public void cancel(String uploadId, Long userId) {
+        getSession(uploadId, userId);
+        claim(uploadId);
+        try {
+            uploadSessionRepository.deleteById(uploadId);
+            fileStorageService.deleteUpload(uploadId);
+        } finally {
+            busySessions.remove(uploadId);
+        }
+    }
+
+    /**
+     * Remove sessions whose TTL ran out, with their staged files
+     */
+    @Scheduled(fixedDelayString = "${file.resumable.cleanup-interval-ms:600000}")
+    public void expireAbandonedSessions() {
+        List<UploadSession> expired = uploadSessionRepository.findByExpiresAtBefore(LocalDateTime.now());
+        int removed = 0;
+        for (UploadSession session : expired) {
+            if (!busySessions.add(session.getId())) {
+                continue;
+            }
+            try {
+                uploadSessionRepository.deleteById(session.getId());
+                fileStorageService.deleteUpload(session.getId());
+                removed++;
+            } finally {
+                busySessions.remove(session.getId());
+            }
+        }
+        if (removed > 0) {
+            logger.info("Expired {} abandoned upload sessions", removed);
+        }
+    }
+
+    private Post getOwnPost(Long postId, Long userId) {
+        Post post = postRepository.findById(postId)
+                .orElseThrow(() -> new NoSuchElementException("Post not found with ID: " + postId));
+        if (!post.getUser().getUserId().equals(userId)) {
+            throw new SecurityException("Unauthorized: You can only add media to your own posts");
+        }
+        if (contentRepository.countByPostPostId(postId) >= 3) {
+            throw new IllegalArgumentException("Maximum 3 media files are allowed per post");
+        }
+        return post;
+    }
+
+    /**
+     * Record a stored file as a Content row of the post and reserve its bytes; the
+     * file is released again if either fails
+     */
+    private Content attach(Long userId, Post post, String storedName, String contentType, String fileName,
+                           long size) throws IOException {
+        Content content = new Content();
+        content.setPath(storedName);
+        content.setContentType(contentType);
+        content.setFileName(fileName);
+        content.setFileSize(size);
+        content.setPost(post);
+        try {
+            fileStorageService.populateMediaMetadata(content);
+            Content toSave = content;
+            content = transactionTemplate.execute(status -> {
+                storageQuotaService.reserve(userId, toSave.getFileSize());
+                return contentRepository.save(toSave);
+            });
+        } catch (IOException | RuntimeException e) {
+            fileStorageService.deleteFile(storedName);
+            throw e;
+        }
+
+        imageDerivativeService.enqueue(List.of(content));
+        return content;
+    }
+
+    private void claim(String uploadId) {
+        if (!busySessions.add(uploadId)) {
+            throw new IllegalStateException("Another request is in progress for this upload");
+        }
+    }
+
+    private LocalDateTime nextExpiry() {
+        return LocalDateTime.now().plusMinutes(sessionTtlMinutes);
+    }
+}
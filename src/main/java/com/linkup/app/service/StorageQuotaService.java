@@ -0,0 +1,118 @@
+package com.linkup.app.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Per-user media storage quota.
+ *
+ * Usage is kept as a running total in users.storage_bytes_used instead of being
+ * summed over contents on demand. Adding media reserves its bytes with a single
+ * conditional {@code UPDATE ... WHERE used + ? <= limit} in the same transaction as
+ * the content insert, so concurrent uploads cannot overshoot the limit together;
+ * deleting a post gives its bytes back in the delete's transaction. Cheap reads of
+ * the counter let uploads be refused before any bytes are transferred. A nightly
+ * pass recomputes every counter from the contents table to repair drift.
+ */
+@Service
+public class StorageQuotaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageQuotaService.class);
+
+    private static final String USAGE_SQL =
+            "SELECT storage_bytes_used FROM users WHERE user_id = ?";
+    private static final String RESERVE_SQL =
+            "UPDATE users SET storage_bytes_used = storage_bytes_used + ? " +
+            "WHERE user_id = ? AND storage_bytes_used + ? <= ?";
+    private static final String RELEASE_SQL =
+            "UPDATE users SET storage_bytes_used = GREATEST(storage_bytes_used - ?, 0) WHERE user_id = ?";
+    private static final String RECONCILE_SQL =
+            "UPDATE users u SET storage_bytes_used = (" +
+            "SELECT COALESCE(SUM(c.file_size), 0) FROM contents c JOIN posts p ON p.post_id = c.post_id " +
+            "WHERE p.user_id = u.user_id) " +
+            "WHERE u.user_id > ? AND u.user_id <= ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.quota.max-bytes-per-user:1GB}")
+    private DataSize maxBytesPerUser;
+
+    @Value("${app.quota.reconcile-batch-size:1000}")
+    private int reconcileBatchSize;
+
+    public long getUsage(Long userId) {
+        Long used = jdbcTemplate.queryForObject(USAGE_SQL, Long.class, userId);
+        return used == null ? 0 : used;
+    }
+
+    public long getLimit() {
+        return maxBytesPerUser.toBytes();
+    }
+
+    /**
+     * Refuse an upload that cannot fit, before its bytes are accepted. Advisory only:
+     * the authoritative check is {@link #reserve} when the content is recorded.
+     *
+     * @throws QuotaExceededException if the incoming bytes would exceed the quota
+     */
+    public void checkQuota(Long userId, long incomingBytes) {
+        long used = getUsage(userId);
+        if (used + incomingBytes > getLimit()) {
+            throw new QuotaExceededException(used, incomingBytes, getLimit());
+        }
+    }
+
+    /**
+     * Add bytes to the user's usage if they fit. Call inside the transaction that
+     * inserts the content, so the reservation commits or rolls back with it.
+     *
+     * @throws QuotaExceededException if the bytes do not fit
+     */
+    public void reserve(Long userId, long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        if (jdbcTemplate.update(RESERVE_SQL, bytes, userId, bytes, getLimit()) == 0) {
+            throw new QuotaExceededException(getUsage(userId), bytes, getLimit());
+        }
+    }
+
+    /**
+     * Give bytes back, e.g. in the transaction that deletes a post
+     */
+    public void release(Long userId, long bytes) {
+        if (bytes > 0) {
+            jdbcTemplate.update(RELEASE_SQL, bytes, userId);
+        }
+    }
+
+    /**
+     * Recomputes every user's usage from the contents table in user_id ranges
+     */
+    @Scheduled(cron = "${app.quota.reconcile-cron:0 45 3 * * *}")
+    public void reconcile() {
+        Long maxUserId = jdbcTemplate.queryForObject("SELECT MAX(user_id) FROM users", Long.class);
+        if (maxUserId == null) {
+            return;
+        }
+
+        int updated = 0;
+        for (long low = 0; low < maxUserId; low += reconcileBatchSize) {
+            updated += jdbcTemplate.update(RECONCILE_SQL, low, low + reconcileBatchSize);
+        }
+        logger.info("Reconciled storage usage for {} users", updated);
+    }
+
+    public static class QuotaExceededException extends RuntimeException {
+        public QuotaExceededException(long used, long incoming, long limit) {
+            super("Storage quota exceeded: " + used + " of " + limit + " bytes used, upload needs " + incoming);
+        }
+    }
+}
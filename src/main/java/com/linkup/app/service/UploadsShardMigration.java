@@ -0,0 +1,96 @@
+package com.linkup.app.service;
+
+import com.linkup.app.util.MediaStorageLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Online migration of the flat uploads directory into the sharded layout.
+ *
+ * Runs in the background after startup when file.shard-migration.enabled is true.
+ * Each file is moved with an atomic rename, and /uploads/** resolves both
+ * locations, so media keeps serving throughout. Moves are throttled so the
+ * migration does not compete with serving I/O. Safe to re-run; already sharded
+ * files are skipped.
+ */
+@Component
+public class UploadsShardMigration implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadsShardMigration.class);
+
+    @Autowired
+    private MediaStorageLayout storageLayout;
+
+    @Value("${file.shard-migration.enabled:false}")
+    private boolean enabled;
+
+    @Value("${file.shard-migration.files-per-second:500}")
+    private int filesPerSecond;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (enabled) {
+            Thread.ofVirtual().name("uploads-shard-migration").start(this::migrate);
+        }
+    }
+
+    /**
+     * Move every shardable file at the top level of the upload dir into its shard.
+     * @return Number of files moved
+     */
+    public int migrate() {
+        if (!running.compareAndSet(false, true)) {
+            logger.info("Uploads shard migration already running");
+            return 0;
+        }
+
+        Path root = storageLayout.getRoot();
+        long pauseNanos = filesPerSecond > 0 ? 1_000_000_000L / filesPerSecond : 0;
+        int moved = 0;
+        int failed = 0;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(root, Files::isRegularFile)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!storageLayout.isShardable(name)) {
+                    continue;
+                }
+                try {
+                    Path target = storageLayout.resolve(name);
+                    Files.createDirectories(target.getParent());
+                    Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+                    moved++;
+                } catch (IOException e) {
+                    failed++;
+                    logger.warn("Could not migrate {}: {}", name, e.getMessage());
+                }
+                if (pauseNanos > 0) {
+                    Thread.sleep(pauseNanos / 1_000_000, (int) (pauseNanos % 1_000_000));
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Uploads shard migration aborted: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running.set(false);
+        }
+
+        logger.info("Uploads shard migration finished: {} moved, {} failed", moved, failed);
+        return moved;
+    }
+}
@@ -0,0 +1,14 @@
+package com.linkup.app.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageMetadata {
+    private int width;
+    private int height;
+    private String placeholder;    // average-color grid, see ImageUtils.PLACEHOLDER_FORMAT
+}
@@ -0,0 +1,128 @@
+package com.linkup.app.util;
+
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Iterator;
+
+/**
+ * Reads image dimensions and a tiny placeholder without a full-size decode.
+ *
+ * Width and height come from the format header via ImageReader, before any pixel
+ * data is touched. The placeholder is an average-color grid of at most 4x4 cells,
+ * computed from a decode subsampled to about 32 pixels on the long side, so its
+ * cost does not grow with the image's resolution.
+ */
+@Component
+public class ImageUtils {
+
+    /**
+     * Placeholder format: {@code <cols>x<rows>:<base64url RGB bytes, row-major>},
+     * e.g. "4x3:" followed by 36 bytes. Clients stretch the grid to the image's
+     * aspect ratio and blur it while the real image loads.
+     */
+    public static final String PLACEHOLDER_FORMAT = "%dx%d:%s";
+
+    private static final int PLACEHOLDER_CELLS = 4;
+    private static final int PLACEHOLDER_DECODE_SIZE = 32;
+
+    /**
+     * @param file The image file
+     * @return Dimensions and placeholder
+     * @throws IOException if the file is not a readable image
+     */
+    public ImageMetadata readMetadata(Path file) throws IOException {
+        return withReader(file, reader -> {
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+
+            int step = Math.max(1, Math.max(width, height) / PLACEHOLDER_DECODE_SIZE);
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(step, step, 0, 0);
+            return new ImageMetadata(width, height, placeholder(reader.read(0, param)));
+        });
+    }
+
+    /**
+     * Decode an image subsampled to roughly twice the target width; callers finish
+     * with a smooth scale
+     */
+    public BufferedImage readSubsampled(Path file, int targetWidth) throws IOException {
+        return withReader(file, reader -> {
+            int width = reader.getWidth(0);
+            ImageReadParam param = reader.getDefaultReadParam();
+            int step = Math.max(1, width / (targetWidth * 2));
+            param.setSourceSubsampling(step, step, 0, 0);
+            return reader.read(0, param);
+        });
+    }
+
+    private String placeholder(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int cols = width >= height ? PLACEHOLDER_CELLS
+                : Math.max(1, Math.round((float) PLACEHOLDER_CELLS * width / height));
+        int rows = height >= width ? PLACEHOLDER_CELLS
+                : Math.max(1, Math.round((float) PLACEHOLDER_CELLS * height / width));
+
+        byte[] rgb = new byte[cols * rows * 3];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                int x0 = col * width / cols;
+                int x1 = Math.max(x0 + 1, (col + 1) * width / cols);
+                int y0 = row * height / rows;
+                int y1 = Math.max(y0 + 1, (row + 1) * height / rows);
+
+                long r = 0, g = 0, b = 0;
+                int count = 0;
+                for (int y = y0; y < y1 && y < height; y++) {
+                    for (int x = x0; x < x1 && x < width; x++) {
+                        int pixel = image.getRGB(x, y);
+                        r += (pixel >> 16) & 0xff;
+                        g += (pixel >> 8) & 0xff;
+                        b += pixel & 0xff;
+                        count++;
+                    }
+                }
+                int offset = (row * cols + col) * 3;
+                if (count > 0) {
+                    rgb[offset] = (byte) (r / count);
+                    rgb[offset + 1] = (byte) (g / count);
+                    rgb[offset + 2] = (byte) (b / count);
+                }
+            }
+        }
+        return String.format(PLACEHOLDER_FORMAT, cols, rows, Base64.getUrlEncoder().withoutPadding().encodeToString(rgb));
+    }
+
+    private <T> T withReader(Path file, ReaderAction<T> action) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            if (input == null) {
+                throw new IOException("Cannot open image " + file);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format " + file);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return action.apply(reader);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ReaderAction<T> {
+        T apply(ImageReader reader) throws IOException;
+    }
+}
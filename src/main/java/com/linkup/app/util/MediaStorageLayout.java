@@ -0,0 +1,125 @@
+package com.linkup.app.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Maps stored file names to their location on disk.
+ *
+ * Files are sharded two levels deep by the first four characters of the name
+ * ({@code ab/cd/abcd1234....png}), which are hex for both blob hashes and legacy
+ * UUID names. That keeps every directory to a few thousand entries instead of one
+ * flat directory with hundreds of thousands. Names and URLs stay flat; only the
+ * on-disk location changes.
+ */
+@Component
+public class MediaStorageLayout {
+
+    private static final int SHARD_WIDTH = 2;
+    private static final int SHARD_LEVELS = 2;
+
+    private final Path root;
+
+    public MediaStorageLayout(@Value("${file.upload-dir}") String uploadDir) {
+        this.root = Paths.get(uploadDir).toAbsolutePath().normalize();
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * @param fileName A stored file name (no directory part)
+     * @return Its sharded location
+     */
+    public Path resolve(String fileName) {
+        Path dir = root;
+        if (isShardable(fileName)) {
+            for (int level = 0; level < SHARD_LEVELS; level++) {
+                dir = dir.resolve(fileName.substring(level * SHARD_WIDTH, (level + 1) * SHARD_WIDTH));
+            }
+        }
+        return safeResolve(dir, fileName);
+    }
+
+    /**
+     * @param fileName A stored file name (no directory part)
+     * @return Where the file lived before sharding
+     */
+    public Path resolveLegacy(String fileName) {
+        return safeResolve(root, fileName);
+    }
+
+    /**
+     * Finds a file to serve for a flat {@code /uploads/<name>} URL: the requested
+     * variant if it exists, else the sharded original, else the legacy flat location
+     * for files not yet migrated.
+     *
+     * @param fileName The stored file name from the URL
+     * @param variant Optional variant ("thumb" / "medium"), may be null
+     * @return The file, or null if none exists
+     */
+    public Path locate(String fileName, String variant) {
+        if (!isShardable(fileName)) {
+            Path legacy = resolveLegacy(fileName);
+            return Files.isRegularFile(legacy) ? legacy : null;
+        }
+
+        if (variant != null) {
+            Path variantPath = resolve(variantName(fileName, variant));
+            if (Files.isRegularFile(variantPath)) {
+                return variantPath;
+            }
+            // Not generated (yet); fall back to the original
+        }
+
+        Path sharded = resolve(fileName);
+        // Checked again after the legacy path: the shard migration may move the file in between
+        for (Path candidate : List.of(sharded, resolveLegacy(fileName), sharded)) {
+            if (Files.isRegularFile(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Name of a resized variant of a stored image. Derived only from the original name,
+     * so variants shard next to their original and can be found without a lookup.
+     * @param fileName The original stored file name
+     * @param variant Variant name, e.g. "thumb"
+     * @return The variant's stored file name
+     */
+    public String variantName(String fileName, String variant) {
+        int dotIndex = fileName.lastIndexOf('.');
+        String base = dotIndex > 0 ? fileName.substring(0, dotIndex) : fileName;
+        String extension = dotIndex > 0 ? fileName.substring(dotIndex + 1).toLowerCase() : "";
+        String outputExtension = extension.equals("jpg") || extension.equals("jpeg") ? "jpg" : "png";
+        return base + "_" + variant + "." + outputExtension;
+    }
+
+    public boolean isShardable(String fileName) {
+        if (fileName == null || fileName.length() <= SHARD_WIDTH * SHARD_LEVELS || fileName.startsWith(".")) {
+            return false;
+        }
+        for (int i = 0; i < SHARD_WIDTH * SHARD_LEVELS; i++) {
+            if (Character.digit(fileName.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Path safeResolve(Path dir, String fileName) {
+        Path resolved = dir.resolve(fileName).normalize();
+        if (!resolved.startsWith(root) || fileName.contains("/") || fileName.contains("\\")) {
+            throw new IllegalArgumentException("Invalid file name: " + fileName);
+        }
+        return resolved;
+    }
+}
@@ -0,0 +1,51 @@
+package com.linkup.app.util;
+
+/**
+ * Public URLs for stored media.
+ *
+ * Content-addressed blobs (and their variants) carry the SHA-256 of their bytes in
+ * the name, so the bytes behind the name can never change. They are served under
+ * {@code /media/} with a one-year immutable Cache-Control. Files stored before
+ * deduplication have random names and stay on {@code /uploads/} with short caching.
+ */
+public final class MediaUrls {
+
+    public static final String FINGERPRINTED_PREFIX = "/media/";
+    public static final String LEGACY_PREFIX = "/uploads/";
+
+    private static final int HASH_LENGTH = 64;
+
+    private MediaUrls() {
+    }
+
+    /**
+     * @param storedName A stored file name, e.g. Content.path, may be null
+     * @return The URL to reference it by, or null
+     */
+    public static String of(String storedName) {
+        if (storedName == null) {
+            return null;
+        }
+        return (isFingerprinted(storedName) ? FINGERPRINTED_PREFIX : LEGACY_PREFIX) + storedName;
+    }
+
+    /**
+     * True for blob names ({@code <sha256>.<ext>}) and their variants
+     * ({@code <sha256>_thumb.jpg})
+     */
+    public static boolean isFingerprinted(String storedName) {
+        if (storedName == null || storedName.length() < HASH_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < HASH_LENGTH; i++) {
+            if (Character.digit(storedName.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        if (storedName.length() == HASH_LENGTH) {
+            return true;
+        }
+        char next = storedName.charAt(HASH_LENGTH);
+        return next == '.' || next == '_';
+    }
+}
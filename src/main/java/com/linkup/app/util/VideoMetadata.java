@@ -0,0 +1,15 @@
+package com.linkup.app.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VideoMetadata {
+    private double durationSeconds;
+    private Integer width;         // null when the file has no video track
+    private Integer height;
+    private String codec;          // sample entry fourcc, e.g. "avc1", "hvc1"
+}
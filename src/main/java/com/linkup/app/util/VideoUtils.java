@@ -2,55 +2,236 @@ package com.linkup.app.util;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 /**
- * Note: This is a placeholder implementation for video duration checking.
- * For a production system, consider using libraries like Xuggler,
- * FFmpeg (via Process commands), or Apache Tika to accurately get video duration.
+ * Reads video metadata from MP4 / QuickTime (ISO-BMFF) files.
+ *
+ * Only box headers and the few small boxes we need (mvhd, mehd, tkhd, hdlr, stsd) are
+ * read, using positional reads on a FileChannel; media data is skipped by seeking
+ * past it. The cost is proportional to the number of boxes in the header, not to
+ * the file size, even when the moov box sits after mdat at the end of the file.
+ *
+ * Fragmented files often leave the mvhd duration at 0 or all ones; their length is
+ * then taken from the mehd fragment duration. A file whose length is given by
+ * neither is rejected rather than treated as zero seconds long.
  */
 @Component
 public class VideoUtils {
 
+    private static final int MAX_DEPTH = 8;
+    private static final int SMALL_BOX_READ_BYTES = 128;
+
     @Value("${file.max-video-duration-seconds}")
     private int maxVideoDurationSeconds;
 
     /**
      * Checks if the video duration is within the allowed limit
      *
-     * @param file The uploaded video file
+     * @param file The stored or staged video file
      * @return true if video duration is valid, false otherwise
+     * @throws IOException if the file is not a readable MP4/QuickTime file
      */
-    public boolean isVideoDurationValid(MultipartFile file) {
-        if (file == null || file.isEmpty()) {
-            return false;
-        }
+    public boolean isVideoDurationValid(Path file) throws IOException {
+        return readMetadata(file).getDurationSeconds() <= maxVideoDurationSeconds;
+    }
 
-        // In a real implementation, we would use a library to check the actual duration
-        // For this example, we'll assume all videos are valid
-        // TODO: Implement actual video duration checking
+    /**
+     * Gets the duration of a video file in whole seconds, rounded up
+     *
+     * @param file The video file
+     * @return The duration in seconds
+     * @throws IOException if the file is not a readable MP4/QuickTime file
+     */
+    public int getVideoDuration(Path file) throws IOException {
+        return (int) Math.ceil(readMetadata(file).getDurationSeconds());
+    }
 
-        return true;
+    public int getMaxVideoDurationSeconds() {
+        return maxVideoDurationSeconds;
     }
 
     /**
-     * Gets the duration of a video file in seconds
-     * This is a placeholder implementation
+     * Parses duration, dimensions and codec from the moov box of an MP4/QuickTime file
      *
      * @param file The video file
-     * @return The duration in seconds or -1 if unable to determine
+     * @return The metadata
+     * @throws IOException if the file has no parsable moov/mvhd box or no known duration
+     */
+    public VideoMetadata readMetadata(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ParseState state = new ParseState();
+            walk(channel, 0, channel.size(), 0, state);
+            if (state.timescale <= 0) {
+                throw new IOException("Not an MP4/QuickTime file: no movie header found");
+            }
+            long duration = state.duration > 0 ? state.duration : state.fragmentDuration;
+            if (duration <= 0) {
+                throw new IOException("Video duration unknown");
+            }
+            return new VideoMetadata((double) duration / state.timescale,
+                    state.width, state.height, state.codec);
+        }
+    }
+
+    private void walk(FileChannel channel, long start, long end, int depth, ParseState state) throws IOException {
+        if (depth > MAX_DEPTH) {
+            return;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(16);
+        long position = start;
+        while (position + 8 <= end) {
+            header.clear().limit(8);
+            readFully(channel, header, position);
+            long size = Integer.toUnsignedLong(header.getInt(0));
+            String type = fourcc(header, 4);
+            int headerSize = 8;
+
+            if (size == 1) {
+                header.clear().limit(8);
+                readFully(channel, header, position + 8);
+                size = header.getLong(0);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - position;
+            }
+            if (size < headerSize || position + size > end) {
+                break; // truncated or corrupt box; keep what was parsed so far
+            }
+
+            long payload = position + headerSize;
+            long payloadEnd = position + size;
+            switch (type) {
+                case "moov", "mvex", "mdia", "minf", "stbl" -> walk(channel, payload, payloadEnd, depth + 1, state);
+                case "trak" -> {
+                    state.startTrack();
+                    walk(channel, payload, payloadEnd, depth + 1, state);
+                    state.endTrack();
+                }
+                case "mvhd" -> parseMvhd(readSmallBox(channel, payload, payloadEnd), state);
+                case "mehd" -> parseMehd(readSmallBox(channel, payload, payloadEnd), state);
+                case "tkhd" -> parseTkhd(readSmallBox(channel, payload, payloadEnd), state);
+                case "hdlr" -> parseHdlr(readSmallBox(channel, payload, payloadEnd), state);
+                case "stsd" -> parseStsd(readSmallBox(channel, payload, payloadEnd), state);
+                default -> {
+                    // mdat, free, udta, ...: skipped without reading
+                }
+            }
+            position = payloadEnd;
+        }
+    }
+
+    private void parseMvhd(ByteBuffer box, ParseState state) {
+        int version = box.get(0);
+        if (version == 1 && box.limit() >= 32) {
+            state.timescale = Integer.toUnsignedLong(box.getInt(20));
+            state.duration = knownDuration(box.getLong(24));
+        } else if (box.limit() >= 20) {
+            state.timescale = Integer.toUnsignedLong(box.getInt(12));
+            state.duration = knownDuration(box.getInt(16));
+        }
+    }
+
+    private void parseMehd(ByteBuffer box, ParseState state) {
+        int version = box.get(0);
+        if (version == 1 && box.limit() >= 12) {
+            state.fragmentDuration = knownDuration(box.getLong(4));
+        } else if (box.limit() >= 8) {
+            state.fragmentDuration = knownDuration(box.getInt(4));
+        }
+    }
+
+    /**
+     * All ones means unknown; 64-bit values past Long.MAX_VALUE are treated the same
+     * rather than wrapping negative. Both come back as 0.
      */
-    public int getVideoDuration(MultipartFile file) {
-        // In a real implementation, we would extract the actual duration
-        // For this example, we'll return a placeholder value
-        // TODO: Implement actual video duration extraction
+    private long knownDuration(long duration) {
+        return duration < 0 ? 0 : duration;
+    }
+
+    private long knownDuration(int duration) {
+        return duration == -1 ? 0 : Integer.toUnsignedLong(duration);
+    }
+
+    private void parseTkhd(ByteBuffer box, ParseState state) {
+        int version = box.get(0);
+        int widthOffset = version == 1 ? 88 : 76;
+        if (box.limit() >= widthOffset + 8) {
+            // 16.16 fixed point
+            state.trackWidth = box.getInt(widthOffset) >>> 16;
+            state.trackHeight = box.getInt(widthOffset + 4) >>> 16;
+        }
+    }
+
+    private void parseHdlr(ByteBuffer box, ParseState state) {
+        if (box.limit() >= 12) {
+            state.trackHandler = fourcc(box, 8);
+        }
+    }
+
+    private void parseStsd(ByteBuffer box, ParseState state) {
+        // version/flags, entry_count, then the first sample entry's size and format
+        if (box.limit() >= 16) {
+            state.trackCodec = fourcc(box, 12);
+        }
+    }
 
-        return 0;
+    private ByteBuffer readSmallBox(FileChannel channel, long payload, long payloadEnd) throws IOException {
+        ByteBuffer box = ByteBuffer.allocate((int) Math.min(SMALL_BOX_READ_BYTES, payloadEnd - payload));
+        readFully(channel, box, payload);
+        return box;
+    }
+
+    private void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+    }
+
+    private String fourcc(ByteBuffer buffer, int offset) {
+        byte[] bytes = new byte[4];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private static class ParseState {
+        long timescale;
+        long duration;
+        long fragmentDuration;
+        Integer width;
+        Integer height;
+        String codec;
+
+        Integer trackWidth;
+        Integer trackHeight;
+        String trackHandler;
+        String trackCodec;
+
+        void startTrack() {
+            trackWidth = null;
+            trackHeight = null;
+            trackHandler = null;
+            trackCodec = null;
+        }
+
+        void endTrack() {
+            // The first video track describes the file
+            if ("vide".equals(trackHandler) && codec == null) {
+                width = trackWidth;
+                height = trackHeight;
+                codec = trackCodec;
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,130 @@
+package com.linkup.app.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringJUnitConfig(ChatChannelExecutorsTests.Config.class)
+class ChatChannelExecutorsTests {
+
+    @Configuration
+    @Import(ChatChannelExecutors.class)
+    static class Config {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private ChatChannelExecutors channelExecutors;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void fullPoolRunsTaskOnSubmitterAndReportsBacklog() throws Exception {
+        ThreadPoolTaskExecutor executor = (ThreadPoolTaskExecutor) channelExecutors.create("pool-test", "pool", 1, 1);
+        executor.initialize();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        try {
+            executor.execute(() -> {
+                started.countDown();
+                await(release);
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            executor.execute(() -> { });
+
+            assertEquals(1, gauge("chat.channel.pending", "pool-test"));
+            assertEquals(1, gauge("chat.channel.active", "pool-test"));
+
+            // Queue is full: the caller pays for the task instead of it being dropped
+            AtomicReference<Thread> ranOn = new AtomicReference<>();
+            executor.execute(() -> ranOn.set(Thread.currentThread()));
+            assertSame(Thread.currentThread(), ranOn.get());
+            assertEquals(1, meterRegistry.get("chat.channel.caller-runs").tag("channel", "pool-test")
+                    .functionCounter().count());
+        } finally {
+            release.countDown();
+            executor.getThreadPoolExecutor().shutdown();
+        }
+        assertTrue(executor.getThreadPoolExecutor().awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(0, gauge("chat.channel.pending", "pool-test"));
+        assertEquals(3, meterRegistry.get("chat.channel.wait").tag("channel", "pool-test").timer().count());
+    }
+
+    @Test
+    void virtualThreadsAreCappedAtPoolSize() throws Exception {
+        SimpleAsyncTaskExecutor executor =
+                (SimpleAsyncTaskExecutor) channelExecutors.create("virtual-test", "virtual", 2, 0);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(20);
+
+        Thread submitter = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < 20; i++) {
+                executor.execute(() -> {
+                    assertTrue(Thread.currentThread().isVirtual());
+                    peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    sleep(5);
+                    running.decrementAndGet();
+                    done.countDown();
+                });
+            }
+        });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        submitter.join();
+        assertTrue(peak.get() <= 2, "peak concurrency " + peak.get());
+        executor.close();
+    }
+
+    @Test
+    void directRunsOnSubmitterAndUnknownTypeIsRejected() {
+        Executor direct = channelExecutors.create("direct-test", "direct", 1, 0);
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+        direct.execute(() -> ranOn.set(Thread.currentThread()));
+        assertSame(Thread.currentThread(), ranOn.get());
+
+        assertThrows(IllegalArgumentException.class, () -> channelExecutors.create("bad", "fork-join", 1, 0));
+    }
+
+    private double gauge(String name, String channel) {
+        return meterRegistry.get(name).tag("channel", channel).gauge().value();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
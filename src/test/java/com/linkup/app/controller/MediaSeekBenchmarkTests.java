@@ -0,0 +1,190 @@
+package com.linkup.app.controller;
+
+import com.linkup.app.service.HotMediaCache;
+import com.linkup.app.util.MediaStorageLayout;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Concurrent video seeks (single 256KB byte ranges at random offsets of a 64MB file)
+ * through MediaServingController and through the ResourceHttpRequestHandler chain
+ * that served /uploads before it: throughput, latency and heap bytes allocated per
+ * request. Responses go to a discarding stream, so only the handlers' own buffers
+ * count. Without a servlet container there is no sendfile, so the controller takes
+ * its transferTo fallback here. Excluded from the default build; run with
+ * mvn test -Pbenchmark.
+ */
+@Tag("benchmark")
+@SpringJUnitConfig({MediaServingController.class, MediaStorageLayout.class})
+class MediaSeekBenchmarkTests {
+
+    private static final String NAME = "seek.mp4";
+    private static final int FILE_SIZE = 64 * 1024 * 1024;
+    private static final int RANGE_SIZE = 256 * 1024;
+    private static final int THREADS = 8;
+    private static final int WARMUP = 2_000;
+    private static final int MEASURED = 10_000;
+
+    @TempDir
+    static Path uploadDir;
+
+    @DynamicPropertySource
+    static void uploadDir(DynamicPropertyRegistry registry) {
+        registry.add("file.upload-dir", uploadDir::toString);
+    }
+
+    private interface Handler {
+        void handle(MockHttpServletRequest request, MockHttpServletResponse response) throws Exception;
+    }
+
+    @MockitoBean
+    private HotMediaCache hotMediaCache;
+
+    @Autowired
+    private MediaServingController controller;
+
+    @Autowired
+    private MediaStorageLayout storageLayout;
+
+    @Test
+    void reportsSeekThroughputAndAllocation() throws Exception {
+        Path file = storageLayout.resolve(NAME);
+        Files.createDirectories(file.getParent());
+        byte[] bytes = new byte[FILE_SIZE];
+        new Random(42).nextBytes(bytes);
+        Files.write(file, bytes);
+
+        ResourceHttpRequestHandler resourceChain = new ResourceHttpRequestHandler();
+        resourceChain.setLocations(List.of(new FileSystemResource(file.getParent().toString() + "/")));
+        resourceChain.setServletContext(new MockServletContext());
+        resourceChain.afterPropertiesSet();
+
+        Handler mediaHandler = (request, response) -> controller.serve(NAME, null, request, response);
+        Handler resourceHandler = (request, response) -> {
+            request.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, NAME);
+            resourceChain.handleRequest(request, response);
+        };
+
+        // Alternate warm-ups so neither side runs on colder code
+        run(mediaHandler, WARMUP);
+        run(resourceHandler, WARMUP);
+        report("resource chain", run(resourceHandler, MEASURED));
+        report("media handler", run(mediaHandler, MEASURED));
+    }
+
+    private record Result(List<Long> latencies, long allocatedBytes, long elapsedNanos) {
+    }
+
+    private Result run(Handler handler, int requests) throws Exception {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicLong allocated = new AtomicLong();
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            long started = System.nanoTime();
+            for (int t = 0; t < THREADS; t++) {
+                int seed = t;
+                workers.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+                    for (int i = 0; i < requests / THREADS; i++) {
+                        long start = (long) random.nextInt(FILE_SIZE - RANGE_SIZE);
+                        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/uploads/" + NAME);
+                        request.addHeader("Range", "bytes=" + start + "-" + (start + RANGE_SIZE - 1));
+                        DiscardingResponse response = new DiscardingResponse();
+
+                        long requestStarted = System.nanoTime();
+                        handler.handle(request, response);
+                        latencies.add(System.nanoTime() - requestStarted);
+
+                        assertEquals(206, response.getStatus());
+                        assertEquals(RANGE_SIZE, response.written);
+                    }
+                    allocated.addAndGet(threads.getCurrentThreadAllocatedBytes() - allocatedBefore);
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+            return new Result(latencies, allocated.get(), System.nanoTime() - started);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void report(String name, Result result) {
+        List<Long> latencies = new ArrayList<>(result.latencies());
+        Collections.sort(latencies);
+        int requests = latencies.size();
+        double seconds = result.elapsedNanos() / 1e9;
+        System.out.printf("Video seeks, %s, %d threads: %.0f requests/s, p50 %.1f us, p99 %.1f us, "
+                        + "%.1f KB allocated per request (%.0f MB/s)%n",
+                name, THREADS, requests / seconds, latencies.get(requests / 2) / 1000.0,
+                latencies.get(requests * 99 / 100) / 1000.0, result.allocatedBytes() / 1024.0 / requests,
+                result.allocatedBytes() / 1024.0 / 1024.0 / seconds);
+    }
+
+    /**
+     * Counts body bytes instead of keeping them
+     */
+    private static class DiscardingResponse extends MockHttpServletResponse {
+        private long written;
+
+        private final ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                written++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                written += len;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+            }
+        };
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return out;
+        }
+    }
+}
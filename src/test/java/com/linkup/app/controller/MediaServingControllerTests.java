@@ -0,0 +1,103 @@
+package com.linkup.app.controller;
+
+import com.linkup.app.service.HotMediaCache;
+import com.linkup.app.util.MediaStorageLayout;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringJUnitConfig({MediaServingController.class, MediaStorageLayout.class})
+class MediaServingControllerTests {
+
+    private static final String NAME = "clip.mp4";
+    private static final String BODY = "0123456789";
+
+    @TempDir
+    static Path uploadDir;
+
+    @DynamicPropertySource
+    static void uploadDir(DynamicPropertyRegistry registry) {
+        registry.add("file.upload-dir", uploadDir::toString);
+    }
+
+    @MockitoBean
+    private HotMediaCache hotMediaCache;
+
+    @Autowired
+    private MediaServingController controller;
+
+    @Autowired
+    private MediaStorageLayout storageLayout;
+
+    @BeforeEach
+    void store() throws Exception {
+        Path file = storageLayout.resolve(NAME);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, BODY);
+    }
+
+    @Test
+    void malformedRangeIsIgnoredAndTheWholeFileSent() throws Exception {
+        for (String range : new String[]{"bytes=abc", "items=0-1", "bytes=5-2"}) {
+            MockHttpServletResponse response = get(range);
+
+            assertEquals(200, response.getStatus(), range);
+            assertEquals(BODY, response.getContentAsString(), range);
+        }
+    }
+
+    @Test
+    void onlyRangesOutsideTheFileAreUnsatisfiable() throws Exception {
+        MockHttpServletResponse beyond = get("bytes=20-30");
+        assertEquals(416, beyond.getStatus());
+        assertEquals("bytes */10", beyond.getHeader("Content-Range"));
+
+        assertEquals(416, get("bytes=-0").getStatus());
+
+        // The satisfiable part of a mixed header is still served
+        MockHttpServletResponse mixed = get("bytes=20-30,2-4");
+        assertEquals(206, mixed.getStatus());
+        assertEquals("bytes 2-4/10", mixed.getHeader("Content-Range"));
+        assertEquals("234", mixed.getContentAsString());
+    }
+
+    @Test
+    void overlappingRangesAreMergedAndRepeatsSendTheFileOnce() throws Exception {
+        MockHttpServletResponse repeated = get("bytes=0-,0-,0-");
+        assertEquals(200, repeated.getStatus());
+        assertEquals(BODY, repeated.getContentAsString());
+
+        MockHttpServletResponse overlapping = get("bytes=2-5,0-3");
+        assertEquals(206, overlapping.getStatus());
+        assertEquals("bytes 0-5/10", overlapping.getHeader("Content-Range"));
+        assertEquals("012345", overlapping.getContentAsString());
+
+        MockHttpServletResponse twoParts = get("bytes=8-9,0-1,2-3");
+        assertEquals(206, twoParts.getStatus());
+        String body = twoParts.getContentAsString();
+        assertTrue(body.contains("Content-Range: bytes 0-3/10\r\n\r\n0123"));
+        assertTrue(body.contains("Content-Range: bytes 8-9/10\r\n\r\n89"));
+        assertEquals(2, body.split("Content-Range").length - 1);
+    }
+
+    private MockHttpServletResponse get(String range) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/uploads/" + NAME);
+        request.addHeader("Range", range);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.serve(NAME, null, request, response);
+        return response;
+    }
+}
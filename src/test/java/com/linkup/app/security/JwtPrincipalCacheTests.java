@@ -0,0 +1,100 @@
+package com.linkup.app.security;
+
+import com.linkup.app.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.jwt.secret=test-secret-test-secret-test-secret-0123456789",
+        "app.chat.principal-cache.max-size=2"
+})
+@Import({JwtTokenProvider.class, JwtPrincipalCache.class})
+class JwtPrincipalCacheTests {
+
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+
+    @Autowired
+    private JwtPrincipalCache principalCache;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @BeforeEach
+    void emptyCache() {
+        // Shared by every test in the cached context
+        principalCache.clear();
+    }
+
+    @Test
+    void principalIsResolvedOnceAndNamedByUserId() {
+        User alice = newUser("alice");
+        String token = tokenFor(alice);
+
+        ChatPrincipal principal = principalCache.authenticate(token).orElseThrow();
+        assertEquals(alice.getUserId().toString(), principal.getName());
+        assertEquals("alice", principal.userName());
+
+        // Cached: no longer needs the row
+        entityManager.remove(alice);
+        entityManager.flush();
+        assertEquals(Optional.of(principal), principalCache.authenticate(token));
+    }
+
+    @Test
+    void tamperedTokenIsRejectedAndNotCached() {
+        String token = tokenFor(newUser("bob"));
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertTrue(principalCache.authenticate(tampered).isEmpty());
+        assertTrue(principalCache.authenticate("not-a-jwt").isEmpty());
+        assertEquals(0, principalCache.size());
+    }
+
+    @Test
+    void leastRecentlyUsedPrincipalIsDroppedPastMaxSize() {
+        String carol = tokenFor(newUser("carol"));
+        String dave = tokenFor(newUser("dave"));
+        String erin = tokenFor(newUser("erin"));
+
+        principalCache.authenticate(carol);
+        principalCache.authenticate(dave);
+        principalCache.authenticate(carol);
+        principalCache.authenticate(erin);
+
+        assertEquals(2, principalCache.size());
+        User removed = entityManager.getEntityManager()
+                .createQuery("select u from User u where u.userName = 'dave'", User.class).getSingleResult();
+        entityManager.remove(removed);
+        entityManager.flush();
+        // Dave was evicted, so his token is looked up again and his row is gone
+        assertTrue(principalCache.authenticate(dave).isEmpty());
+        assertTrue(principalCache.authenticate(carol).isPresent());
+    }
+
+    private String tokenFor(User user) {
+        org.springframework.security.core.userdetails.User details =
+                new org.springframework.security.core.userdetails.User(user.getEmail(), "secret", List.of());
+        return tokenProvider.generateToken(new UsernamePasswordAuthenticationToken(details, null, List.of()));
+    }
+
+    private User newUser(String name) {
+        User user = new User();
+        user.setUserName(name);
+        user.setEmail(name + "@example.com");
+        user.setPassword("secret");
+        return entityManager.persist(user);
+    }
+}
@@ -0,0 +1,42 @@
+package com.linkup.app.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A second relay node in its own JVM, for {@link ClusterChatRelayTests}: holds a
+ * session for user "echo" and sends every frame it gets back to user "probe".
+ */
+public class ClusterChatRelayNode {
+
+    public static void main(String[] args) throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        AtomicReference<ClusterChatRelay> relay = new AtomicReference<>();
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> {
+            if ("/user/echo/queue/ping".equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))) {
+                try {
+                    relay.get().sendToUser("probe", "/queue/pong",
+                            objectMapper.readTree((byte[]) message.getPayload()));
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+            return true;
+        });
+
+        InetSocketAddress peer = new InetSocketAddress("127.0.0.1", Integer.parseInt(args[0]));
+        relay.set(new ClusterChatRelay(new InetSocketAddress("127.0.0.1", 0), null, List.of(peer),
+                null, null, 500, ClusterChatRelayTests.SECRET, template, objectMapper));
+        relay.get().sessionOpened("echo-session", "echo");
+        relay.get().start();
+        System.out.println("READY " + relay.get().getPort());
+
+        // Runs until the parent test destroys the process
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,216 @@
+package com.linkup.app.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusterChatRelayTests {
+
+    static final byte[] SECRET = "test-cluster-secret-0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void forwardsFramesOnlyToTheNodeHoldingTheUser() throws Exception {
+        List<Message<?>> onA = new CopyOnWriteArrayList<>();
+        List<Message<?>> onB = new CopyOnWriteArrayList<>();
+        List<Message<?>> onC = new CopyOnWriteArrayList<>();
+
+        try (ClusterChatRelay a = node(onA, List.of());
+             ClusterChatRelay b = node(onB, List.of(address(a)));
+             ClusterChatRelay c = node(onC, List.of(address(a)))) {
+            b.sessionOpened("s1", "bob");
+            b.sessionOpened("s2", "bob");
+            awaitTrue(() -> a.remoteNodesFor("bob").equals(Set.of(b.getNodeId())));
+            awaitTrue(() -> c.remoteNodesFor("bob").equals(Set.of(b.getNodeId())));
+
+            a.sendToUser("bob", "/queue/messages", Map.of("content", "hello"));
+            awaitTrue(() -> onB.size() == 1);
+            assertEquals("/user/bob/queue/messages", SimpMessageHeaderAccessor.getDestination(onB.get(0).getHeaders()));
+            assertEquals("hello", objectMapper.readTree((byte[]) onB.get(0).getPayload()).get("content").asText());
+
+            // Bob is still connected on one device; the last disconnect withdraws him
+            b.sessionClosed("s1");
+            b.sessionClosed("s1");
+            Thread.sleep(100);
+            assertEquals(Set.of(b.getNodeId()), a.remoteNodesFor("bob"));
+            b.sessionClosed("s2");
+            awaitTrue(() -> a.remoteNodesFor("bob").isEmpty());
+
+            a.sendToUser("bob", "/queue/messages", Map.of("content", "nobody home"));
+            Thread.sleep(100);
+            assertEquals(1, onB.size());
+            assertTrue(onA.isEmpty());
+            assertTrue(onC.isEmpty());
+        }
+    }
+
+    @Test
+    void dropsForgedFramesAndNodesWithoutTheSecret() throws Exception {
+        List<Message<?>> onA = new CopyOnWriteArrayList<>();
+        List<Message<?>> onIntruder = new CopyOnWriteArrayList<>();
+        byte[] otherSecret = "some-other-secret-0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+
+        try (ClusterChatRelay a = node(onA, List.of());
+             ClusterChatRelay intruder = node(onIntruder, List.of(address(a)), otherSecret);
+             DatagramChannel raw = DatagramChannel.open()) {
+            a.sessionOpened("s1", "alice");
+
+            // A frame in the relay's format with no valid MAC
+            byte[] sender = "forger".getBytes(StandardCharsets.UTF_8);
+            byte[] user = "alice".getBytes(StandardCharsets.UTF_8);
+            byte[] destination = "/queue/messages".getBytes(StandardCharsets.UTF_8);
+            byte[] json = "{\"content\":\"spoofed\"}".getBytes(StandardCharsets.UTF_8);
+            ByteBuffer forged = ByteBuffer.allocate(256).put((byte) 3);
+            for (byte[] field : List.of(sender, user, destination)) {
+                forged.putShort((short) field.length).put(field);
+            }
+            forged.putInt(json.length).put(json).put(new byte[40]).flip();
+            raw.send(forged, address(a));
+
+            // The intruder announces itself with the wrong key
+            intruder.sessionOpened("s2", "mallory");
+            awaitTrue(() -> a.getRejectedPackets() >= 2);
+            assertTrue(a.remoteNodesFor("mallory").isEmpty());
+            assertTrue(onA.isEmpty());
+        }
+    }
+
+    @Test
+    void dropsReplayedPackets() throws Exception {
+        List<Message<?>> onA = new CopyOnWriteArrayList<>();
+        List<Message<?>> onB = new CopyOnWriteArrayList<>();
+
+        try (DatagramChannel eavesdropper = DatagramChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+             DatagramChannel replayer = DatagramChannel.open();
+             ClusterChatRelay a = node(onA, List.of());
+             ClusterChatRelay b = node(onB, List.of(address(a),
+                     (InetSocketAddress) eavesdropper.getLocalAddress()))) {
+            b.sessionOpened("s1", "bob");
+            awaitTrue(() -> a.remoteNodesFor("bob").equals(Set.of(b.getNodeId())));
+
+            // Capture a genuine withdrawal, then bring bob back
+            b.sessionClosed("s1");
+            ByteBuffer withdrawal = ByteBuffer.allocate(65_536);
+            eavesdropper.configureBlocking(true);
+            do {
+                withdrawal.clear();
+                eavesdropper.receive(withdrawal);
+                withdrawal.flip();
+            } while (withdrawal.get(0) != 2);
+            awaitTrue(() -> a.remoteNodesFor("bob").isEmpty());
+            b.sessionOpened("s2", "bob");
+            awaitTrue(() -> a.remoteNodesFor("bob").equals(Set.of(b.getNodeId())));
+
+            long rejected = a.getRejectedPackets();
+            replayer.send(withdrawal.duplicate(), address(a));
+            awaitTrue(() -> a.getRejectedPackets() == rejected + 1);
+            assertEquals(Set.of(b.getNodeId()), a.remoteNodesFor("bob"));
+        }
+    }
+
+    @Test
+    void measuresCrossNodeDeliveryLatencyBetweenJvms() throws Exception {
+        Map<Integer, Long> received = new ConcurrentHashMap<>();
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> {
+            try {
+                JsonNode payload = objectMapper.readTree((byte[]) message.getPayload());
+                received.put(payload.get("seq").asInt(), System.nanoTime());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return true;
+        });
+
+        try (ClusterChatRelay probe = new ClusterChatRelay(new InetSocketAddress("127.0.0.1", 0), null, List.of(),
+                null, null, 500, SECRET, template, objectMapper)) {
+            probe.sessionOpened("probe-session", "probe");
+            probe.start();
+
+            String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            Process echo = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    ClusterChatRelayNode.class.getName(), String.valueOf(probe.getPort()))
+                    .redirectErrorStream(true)
+                    .start();
+            try {
+                BufferedReader output = new BufferedReader(new InputStreamReader(echo.getInputStream()));
+                String line;
+                while ((line = output.readLine()) != null && !line.startsWith("READY")) {
+                    // Skip startup logging
+                }
+                assertNotNull(line, "Echo node did not start");
+                awaitTrue(() -> !probe.remoteNodesFor("echo").isEmpty());
+
+                int warmup = 200;
+                int measured = 1000;
+                List<Long> roundTrips = new ArrayList<>();
+                for (int seq = 0; seq < warmup + measured; seq++) {
+                    long sent = System.nanoTime();
+                    probe.sendToUser("echo", "/queue/ping", Map.of("seq", seq));
+                    int expected = seq;
+                    awaitTrue(() -> received.containsKey(expected));
+                    if (seq >= warmup) {
+                        roundTrips.add(received.get(seq) - sent);
+                    }
+                }
+
+                Collections.sort(roundTrips);
+                // One way is half a round trip through both relays
+                System.out.printf("Cross-JVM relay delivery over %d frames: p50 %.1f us, p99 %.1f us (one way)%n",
+                        measured, roundTrips.get(measured / 2) / 2000.0, roundTrips.get(measured * 99 / 100) / 2000.0);
+                assertEquals(measured, roundTrips.size());
+            } finally {
+                echo.destroyForcibly().waitFor(10, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private ClusterChatRelay node(List<Message<?>> delivered, List<InetSocketAddress> peers) throws Exception {
+        return node(delivered, peers, SECRET);
+    }
+
+    private ClusterChatRelay node(List<Message<?>> delivered, List<InetSocketAddress> peers,
+                                  byte[] secret) throws Exception {
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> delivered.add(message));
+        ClusterChatRelay relay = new ClusterChatRelay(new InetSocketAddress("127.0.0.1", 0), null, peers,
+                null, null, 200, secret, template, objectMapper);
+        relay.start();
+        return relay;
+    }
+
+    private InetSocketAddress address(ClusterChatRelay relay) {
+        return new InetSocketAddress("127.0.0.1", relay.getPort());
+    }
+
+    private void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for the relay");
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.linkup.app.service;
+
+import com.linkup.app.dto.ConversationSummary;
+import com.linkup.app.model.Message;
+import com.linkup.app.model.User;
+import com.linkup.app.repository.MessageBatchRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@ImportAutoConfiguration(TransactionAutoConfiguration.class)
+@Import({MessageService.class, ConversationService.class, MessageWriteBehindService.class,
+        MessageIdAllocator.class, MessageBatchRepository.class})
+class ConversationServiceTests {
+
+    @MockitoBean
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User alice;
+    private User bob;
+    private User carol;
+
+    @BeforeEach
+    void seed() {
+        alice = newUser("alice");
+        bob = newUser("bob");
+        carol = newUser("carol");
+        entityManager.flush();
+    }
+
+    @Test
+    void inboxListsConversationsNewestFirstWithUnreadCounts() {
+        messageService.saveMessage(alice.getUserId(), bob.getUserId(), "hi bob");
+        messageService.saveMessage(bob.getUserId(), alice.getUserId(), "hi alice");
+        messageService.saveMessage(bob.getUserId(), alice.getUserId(), "how are you?");
+        messageService.saveMessage(carol.getUserId(), alice.getUserId(), "x".repeat(500));
+
+        List<ConversationSummary> inbox = messageService.getInbox(alice.getUserId());
+
+        assertEquals(List.of("carol", "bob"), inbox.stream().map(ConversationSummary::getOtherUserName).toList());
+        assertEquals(1, inbox.get(0).getUnreadCount());
+        assertEquals(140, inbox.get(0).getLastMessagePreview().length());
+        assertEquals("how are you?", inbox.get(1).getLastMessagePreview());
+        assertEquals(bob.getUserId(), inbox.get(1).getLastSenderId());
+        assertEquals(2, inbox.get(1).getUnreadCount());
+
+        ConversationSummary fromBob = messageService.getInbox(bob.getUserId()).get(0);
+        assertEquals(alice.getUserId(), fromBob.getOtherUserId());
+        assertEquals(1, fromBob.getUnreadCount());
+
+        assertEquals(List.of(carol.getUserId(), bob.getUserId()),
+                messageService.getChatUsers(alice.getUserId()).stream().map(User::getUserId).toList());
+    }
+
+    @Test
+    void readingMessagesClearsTheReadersUnreadCount() {
+        Message first = messageService.saveMessage(bob.getUserId(), alice.getUserId(), "one");
+        Message second = messageService.saveMessage(bob.getUserId(), alice.getUserId(), "two");
+
+        messageService.markAsRead(first.getMessageId());
+        assertEquals(1, messageService.getInbox(alice.getUserId()).get(0).getUnreadCount());
+
+        messageService.markAsRead(second.getMessageId());
+        assertEquals(0, messageService.getInbox(alice.getUserId()).get(0).getUnreadCount());
+    }
+
+    @Test
+    void readReceiptsSubtractFromTheCounterInsteadOfOverwritingIt() {
+        messageService.saveMessage(bob.getUserId(), alice.getUserId(), "one");
+        messageService.saveMessage(bob.getUserId(), alice.getUserId(), "two");
+        // Sent after the receipt's status UPDATE, before its counter update
+        messageService.saveMessage(bob.getUserId(), alice.getUserId(), "three");
+
+        conversationService.markRead(alice.getUserId(), bob.getUserId(), 2);
+        assertEquals(1, conversationService.getInbox(alice.getUserId()).get(0).getUnreadCount());
+
+        conversationService.markRead(alice.getUserId(), bob.getUserId(), 5);
+        assertEquals(0, conversationService.getInbox(alice.getUserId()).get(0).getUnreadCount());
+        assertEquals(0, conversationService.getInbox(bob.getUserId()).get(0).getUnreadCount());
+    }
+
+    @Test
+    void backfillBuildsConversationsFromExistingMessages() {
+        newMessage(alice, bob, "old one", Message.MessageStatus.READ);
+        newMessage(bob, alice, "old two", Message.MessageStatus.SENT);
+        newMessage(carol, bob, "old three", Message.MessageStatus.SENT);
+        entityManager.flush();
+
+        assertEquals(2, conversationService.backfill());
+
+        ConversationSummary aliceAndBob = conversationService.getInbox(alice.getUserId()).get(0);
+        assertEquals(bob.getUserId(), aliceAndBob.getOtherUserId());
+        assertEquals("old two", aliceAndBob.getLastMessagePreview());
+        assertEquals(1, aliceAndBob.getUnreadCount());
+        assertEquals(List.of("carol", "alice"), conversationService.getInbox(bob.getUserId()).stream()
+                .map(ConversationSummary::getOtherUserName).toList());
+    }
+
+    @Test
+    void backfillSkipsPairsThatAlreadyHaveAConversation() {
+        newMessage(carol, bob, "old one", Message.MessageStatus.SENT);
+        entityManager.flush();
+        // A first message on a live node created this pair's row before the backfill ran
+        messageService.saveMessage(alice.getUserId(), bob.getUserId(), "new one");
+
+        assertEquals(1, conversationService.backfill());
+        assertEquals(0, conversationService.backfill());
+
+        assertEquals(List.of("alice", "carol"), conversationService.getInbox(bob.getUserId()).stream()
+                .map(ConversationSummary::getOtherUserName).toList());
+        assertEquals("old one", conversationService.getInbox(carol.getUserId()).get(0).getLastMessagePreview());
+    }
+
+    @Test
+    void reconcileRepairsDriftedCountsAndPairsWrittenWithoutARow() {
+        Message first = messageService.saveMessage(bob.getUserId(), alice.getUserId(), "one");
+        messageService.saveMessage(bob.getUserId(), alice.getUserId(), "two");
+        messageService.markAsRead(first.getMessageId());
+        // Drift, and a message from a node that did not maintain conversations
+        jdbcTemplate.update("UPDATE conversations SET unread_low = 7, unread_high = 3, last_message_id = ?",
+                first.getMessageId());
+        newMessage(carol, bob, "from an old node", Message.MessageStatus.SENT);
+        entityManager.flush();
+
+        conversationService.reconcile();
+
+        ConversationSummary aliceAndBob = conversationService.getInbox(alice.getUserId()).get(0);
+        assertEquals("two", aliceAndBob.getLastMessagePreview());
+        assertEquals(1, aliceAndBob.getUnreadCount());
+        assertEquals(0, conversationService.getInbox(bob.getUserId()).stream()
+                .filter(c -> c.getOtherUserId().equals(alice.getUserId())).findFirst().orElseThrow().getUnreadCount());
+        assertEquals(List.of("carol", "alice"), conversationService.getInbox(bob.getUserId()).stream()
+                .map(ConversationSummary::getOtherUserName).toList());
+    }
+
+    private void newMessage(User sender, User receiver, String content, Message.MessageStatus status) {
+        Message message = new Message();
+        message.setSender(sender);
+        message.setReceiver(receiver);
+        message.setContent(content);
+        message.setStatus(status);
+        entityManager.persist(message);
+    }
+
+    private User newUser(String name) {
+        User user = new User();
+        user.setUserName(name);
+        user.setEmail(name + "@example.com");
+        user.setPassword("secret");
+        return entityManager.persist(user);
+    }
+}
@@ -0,0 +1,111 @@
+package com.linkup.app.service;
+
+import com.linkup.app.dto.FeedPageResponse;
+import com.linkup.app.model.User;
+import com.linkup.app.util.CursorUtils;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Home feed page latency as the posts table grows from 1k to 100k rows, for the
+ * newest page and for a page next to the oldest post. Keyset pages should cost the
+ * same at every size and depth. Excluded from the default build; run with
+ * mvn test -Pbenchmark.
+ */
+@Tag("benchmark")
+// Statement logging would dominate the timings
+@DataJpaTest(showSql = false, properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "logging.level.org.hibernate.SQL=off",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=off"
+})
+@Import({FeedService.class, PostCounterService.class})
+class FeedBenchmarkTests {
+
+    private static final int[] TABLE_SIZES = {1_000, 10_000, 100_000};
+    private static final int INSERT_BATCH = 5_000;
+    private static final int PAGE_SIZE = 20;
+    private static final int WARMUP = 200;
+    private static final int MEASURED = 1_000;
+
+    private static final String INSERT_SQL = "INSERT INTO posts (post_type, description, created_at, "
+            + "likes_count, comments_count, user_id) VALUES ('skill_sharing', ?, ?, 0, 0, ?)";
+
+    @Autowired
+    private FeedService feedService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void reportsPageLatencyAsThePostsTableGrows() {
+        User author = new User();
+        author.setUserName("author");
+        author.setEmail("author@example.com");
+        author.setPassword("secret");
+        entityManager.persistAndFlush(author);
+
+        int seeded = 0;
+        for (int size : TABLE_SIZES) {
+            seed(author.getUserId(), seeded, size);
+            seeded = size;
+
+            Long oldestId = jdbcTemplate.queryForObject("SELECT MIN(post_id) FROM posts", Long.class);
+            String deepCursor = CursorUtils.encode(oldestId + PAGE_SIZE + 1);
+
+            measure("newest page", size, () -> feedService.getFeed(null, PAGE_SIZE));
+            measure("oldest page", size, () -> feedService.getFeed(deepCursor, PAGE_SIZE));
+        }
+    }
+
+    private void seed(Long userId, int from, int to) {
+        LocalDateTime start = LocalDateTime.now().minusYears(1);
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            batch.add(new Object[]{"post " + i, Timestamp.valueOf(start.plusMinutes(i)), userId});
+            if (batch.size() == INSERT_BATCH) {
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+        }
+    }
+
+    private void measure(String name, int size, Supplier<FeedPageResponse> page) {
+        List<Long> timings = new ArrayList<>();
+        for (int i = 0; i < WARMUP + MEASURED; i++) {
+            long started = System.nanoTime();
+            FeedPageResponse response = page.get();
+            long elapsed = System.nanoTime() - started;
+
+            assertEquals(PAGE_SIZE, response.getPosts().size());
+            if (i >= WARMUP) {
+                timings.add(elapsed);
+            }
+        }
+
+        Collections.sort(timings);
+        System.out.printf("Home feed, %s of %d over %d posts: p50 %.1f us, p99 %.1f us%n",
+                name, PAGE_SIZE, size, timings.get(MEASURED / 2) / 1000.0,
+                timings.get(MEASURED * 99 / 100) / 1000.0);
+    }
+}
@@ -0,0 +1,142 @@
+package com.linkup.app.service;
+
+import com.linkup.app.dto.FeedPageResponse;
+import com.linkup.app.dto.PostResponse;
+import com.linkup.app.model.Comment;
+import com.linkup.app.model.Content;
+import com.linkup.app.model.Like;
+import com.linkup.app.model.Post;
+import com.linkup.app.model.User;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({FeedService.class, PostCounterService.class})
+class FeedServiceTests {
+
+    private static final int POSTS = 30;
+    private static final int FEED_QUERIES = 3;
+
+    @Autowired
+    private FeedService feedService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void seed() {
+        User author = newUser("author");
+        User reader = newUser("reader");
+
+        for (int i = 0; i < POSTS; i++) {
+            Post post = new Post();
+            post.setUser(author);
+            post.setPostType("skill_sharing");
+            post.setDescription("post " + i);
+            post.setLikesCount(1);
+            post.setCommentsCount(1);
+            entityManager.persist(post);
+
+            for (int c = 0; c < 2; c++) {
+                Content content = new Content();
+                content.setPath("file-" + i + "-" + c + ".png");
+                content.setFileName("file.png");
+                content.setFileSize(10L);
+                content.setFileType("image");
+                content.setPost(post);
+                entityManager.persist(content);
+            }
+
+            Comment comment = new Comment();
+            comment.setUser(reader);
+            comment.setPost(post);
+            comment.setContent("nice");
+            comment.setCreatedAt(LocalDateTime.now());
+            entityManager.persist(comment);
+
+            Like like = new Like();
+            like.setUser(reader);
+            like.setPost(post);
+            like.setCreatedAt(LocalDateTime.now());
+            entityManager.persist(like);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void feedPageUsesFixedNumberOfQueries() {
+        assertEquals(FEED_QUERIES, countQueries(() -> feedService.getFeed(null, 5)));
+        assertEquals(FEED_QUERIES, countQueries(() -> feedService.getFeed(null, 25)));
+    }
+
+    @Test
+    void feedPagesFollowCursor() {
+        FeedPageResponse first = feedService.getFeed(null, 20);
+        assertEquals(20, first.getPosts().size());
+        assertNotNull(first.getNextCursor());
+        assertEquals(2, first.getPosts().get(0).getContents().size());
+        assertEquals(1, first.getPosts().get(0).getLikesCount());
+        assertEquals(1, first.getPosts().get(0).getCommentsCount());
+        assertEquals("reader", first.getPosts().get(0).getComments().get(0).getUserName());
+
+        FeedPageResponse second = feedService.getFeed(first.getNextCursor(), 20);
+        assertEquals(POSTS - 20, second.getPosts().size());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void feedInlinesOnlyLatestComments() {
+        Post newest = entityManager.find(Post.class, feedService.getFeed(null, 1).getPosts().get(0).getPostId());
+        User reader = newUser("chatty");
+        for (int c = 0; c < 5; c++) {
+            Comment comment = new Comment();
+            comment.setUser(reader);
+            comment.setPost(newest);
+            comment.setContent("comment " + c);
+            comment.setCreatedAt(LocalDateTime.now().plusMinutes(c + 1));
+            entityManager.persist(comment);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        PostResponse post = feedService.getFeed(null, 1).getPosts().get(0);
+        assertEquals(3, post.getComments().size());
+        assertEquals("comment 4", post.getComments().get(0).getContent());
+    }
+
+    private long countQueries(Runnable action) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        action.run();
+        entityManager.clear();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private User newUser(String name) {
+        User user = new User();
+        user.setUserName(name);
+        user.setEmail(name + "@example.com");
+        user.setPassword("secret");
+        return entityManager.persist(user);
+    }
+}
@@ -0,0 +1,115 @@
+package com.linkup.app.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HotMediaCacheTests {
+
+    private static final long MODIFIED = 1_700_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private final HotMediaCache cache = new HotMediaCache(true, DataSize.ofBytes(1000), DataSize.ofBytes(100),
+            new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+
+    @Test
+    void frequentlyUsedFileSurvivesScanOfOneOffFiles() throws Exception {
+        Path hot = write("hot.png", "x".repeat(90));
+        for (int i = 0; i < 5; i++) {
+            get("hot.png", hot, 90);
+        }
+        for (int i = 0; i < 50; i++) {
+            Path oneOff = write("scan-" + i + ".png", "y".repeat(90));
+            get("scan-" + i + ".png", oneOff, 90);
+        }
+
+        // Served from memory: the file itself is gone
+        Files.delete(hot);
+        assertEquals("x".repeat(90), get("hot.png", hot, 90));
+        assertTrue(cache.getBytesHeld() <= 1000);
+        assertTrue(cache.getEvictionCount() > 0);
+    }
+
+    @Test
+    void invalidatedFileIsReadFromDiskAgain() throws Exception {
+        Path file = write("post.png", "picture");
+        get("post.png", file, 7);
+
+        cache.invalidate("post.png");
+        Files.delete(file);
+
+        assertThrows(NoSuchFileException.class, () -> get("post.png", file, 7));
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    void refusedCandidateEvictsNothingAndOneOffsAreNotLoaded() throws Exception {
+        // Main area (900 bytes) ends up as a0, a1, a2..a9 in probation; c sits in the window
+        Path coldest = write("a0.png", "0".repeat(50));
+        get("a0.png", coldest, 50);
+        Path warm = write("a1.png", "1".repeat(50));
+        for (int i = 0; i < 5; i++) {
+            get("a1.png", warm, 50);
+        }
+        for (int n = 2; n <= 9; n++) {
+            Path file = write("a" + n + ".png", "z".repeat(100));
+            for (int i = 0; i < 5; i++) {
+                get("a" + n + ".png", file, 100);
+            }
+        }
+        Path candidate = write("c.png", "c".repeat(100));
+        for (int i = 0; i < 3; i++) {
+            get("c.png", candidate, 100);
+        }
+        assertEquals(1000, cache.getBytesHeld());
+
+        // Full and never seen before: served from disk without allocating
+        Path next = write("next.png", "n".repeat(100));
+        assertNull(cache.get("next.png", next, 100, MODIFIED));
+        assertEquals(0, cache.getEvictionCount());
+
+        // Seen twice: loaded, pushing c out of the window. c would need a0 and a1 gone,
+        // beats a0 but not a1, so it is refused and a0 stays
+        get("next.png", next, 100);
+        assertEquals(1, cache.getEvictionCount());
+        Files.delete(coldest);
+        assertEquals("0".repeat(50), get("a0.png", coldest, 50));
+        assertEquals(1000, cache.getBytesHeld());
+    }
+
+    @Test
+    void filesAboveEntryLimitAreNotCached() throws Exception {
+        Path large = write("large.png", "x".repeat(101));
+        assertNull(cache.get("large.png", large, 101, MODIFIED));
+    }
+
+    private String get(String key, Path file, long size) throws Exception {
+        ByteBuffer data = cache.get(key, file, size, MODIFIED);
+        if (data == null) {
+            // Not worth caching: served from disk, as the controller does
+            return Files.readString(file);
+        }
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Path write(String name, String content) throws Exception {
+        return Files.writeString(dir.resolve(name), content);
+    }
+}
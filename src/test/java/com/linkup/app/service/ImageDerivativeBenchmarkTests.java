@@ -0,0 +1,130 @@
+package com.linkup.app.service;
+
+import com.linkup.app.util.ImageUtils;
+import com.linkup.app.util.MediaStorageLayout;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Images per second through variant generation (thumbnail and medium from one
+ * original) for 12 megapixel JPEG originals, on one thread and on as many threads
+ * as the default worker pool and the machine have. Excluded from the default build;
+ * run with mvn test -Pbenchmark.
+ */
+@Tag("benchmark")
+@DataJpaTest(showSql = false, properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "logging.level.org.hibernate.SQL=off"
+})
+@ImportAutoConfiguration(TransactionAutoConfiguration.class)
+@Import({ImageDerivativeService.class, ImageUtils.class, MediaStorageLayout.class})
+class ImageDerivativeBenchmarkTests {
+
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 3000;
+    private static final int ORIGINALS = 24;
+    private static final int THUMBNAIL_WIDTH = 200;
+    private static final int MEDIUM_WIDTH = 640;
+
+    @TempDir
+    static Path uploadDir;
+
+    @DynamicPropertySource
+    static void uploadDir(DynamicPropertyRegistry registry) {
+        registry.add("file.upload-dir", uploadDir::toString);
+    }
+
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+
+    @Autowired
+    private MediaStorageLayout storageLayout;
+
+    @Test
+    void reportsImagesPerSecond() throws Exception {
+        List<String> originals = writeOriginals();
+
+        // Warm up the decoder and encoder, then start from no variants
+        generateAll(originals.subList(0, 4), 1);
+        deleteVariants(originals);
+
+        for (int threads : new TreeSet<>(List.of(1, 2, Runtime.getRuntime().availableProcessors()))) {
+            long started = System.nanoTime();
+            generateAll(originals, threads);
+            double seconds = (System.nanoTime() - started) / 1e9;
+            System.out.printf("Image variants, %d threads: %.1f images/s (%d %dx%d JPEG originals)%n",
+                    threads, ORIGINALS / seconds, ORIGINALS, WIDTH, HEIGHT);
+            deleteVariants(originals);
+        }
+    }
+
+    private void generateAll(List<String> originals, int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> jobs = new ArrayList<>();
+            for (String original : originals) {
+                jobs.add(executor.submit(() -> {
+                    imageDerivativeService.generate(original, ImageDerivativeService.THUMBNAIL, THUMBNAIL_WIDTH);
+                    return imageDerivativeService.generate(original, ImageDerivativeService.MEDIUM, MEDIUM_WIDTH);
+                }));
+            }
+            for (Future<?> job : jobs) {
+                job.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private List<String> writeOriginals() throws Exception {
+        // A gradient with noise, so the JPEG is about as hard to decode as a photo
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int noise = random.nextInt(32);
+                image.setRGB(x, y, ((x * 255 / WIDTH) << 16) | ((y * 255 / HEIGHT) << 8) | (noise * 4));
+            }
+        }
+
+        List<String> originals = new ArrayList<>();
+        for (int i = 0; i < ORIGINALS; i++) {
+            String name = String.format("%08x-original.jpg", i);
+            Path file = storageLayout.resolve(name);
+            Files.createDirectories(file.getParent());
+            image.setRGB(0, 0, i);
+            ImageIO.write(image, "jpg", file.toFile());
+            originals.add(name);
+        }
+        return originals;
+    }
+
+    private void deleteVariants(List<String> originals) throws Exception {
+        for (String original : originals) {
+            Files.deleteIfExists(storageLayout.resolve(
+                    storageLayout.variantName(original, ImageDerivativeService.THUMBNAIL)));
+            Files.deleteIfExists(storageLayout.resolve(
+                    storageLayout.variantName(original, ImageDerivativeService.MEDIUM)));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.linkup.app.service;
+
+import com.linkup.app.repository.MediaBlobRepository;
+import com.linkup.app.util.ImageUtils;
+import com.linkup.app.util.MediaStorageLayout;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@ImportAutoConfiguration(TransactionAutoConfiguration.class)
+@Import({MediaBlobService.class, MediaStorageLayout.class, ImageDerivativeService.class, ImageUtils.class})
+class MediaBlobServiceTests {
+
+    private static final String HASH = "a".repeat(64);
+
+    @TempDir
+    static Path uploadDir;
+
+    @DynamicPropertySource
+    static void uploadDir(DynamicPropertyRegistry registry) {
+        registry.add("file.upload-dir", uploadDir::toString);
+    }
+
+    @Autowired
+    private MediaBlobService mediaBlobService;
+
+    @Autowired
+    private MediaBlobRepository mediaBlobRepository;
+
+    @Autowired
+    private MediaStorageLayout storageLayout;
+
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+
+    @Test
+    void identicalUploadsShareOneBlobUntilLastRelease() throws Exception {
+        String first = mediaBlobService.acquire(stage("same bytes"), HASH, "png", 10);
+        String second = mediaBlobService.acquire(stage("same bytes"), HASH, "jpg", 10);
+
+        assertEquals(HASH + ".png", first);
+        assertEquals(uploadDir.resolve("aa/aa/" + first), storageLayout.resolve(first));
+        assertEquals(first, second);
+        assertEquals(2, mediaBlobRepository.findById(HASH).orElseThrow().getRefCount());
+
+        mediaBlobService.release(first);
+        assertTrue(Files.exists(storageLayout.resolve(first)));
+
+        mediaBlobService.release(second);
+        assertFalse(Files.exists(storageLayout.resolve(first)));
+        assertTrue(mediaBlobRepository.findById(HASH).isEmpty());
+    }
+
+    @Test
+    void variantsOfAReleasedBlobAreDiscarded() throws Exception {
+        Path staged = Files.createTempFile(uploadDir, "staged-", "");
+        ImageIO.write(new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB), "png", staged.toFile());
+        String blob = mediaBlobService.acquire(staged, "b".repeat(64), "png", Files.size(staged));
+        Path thumbnail = storageLayout.resolve(storageLayout.variantName(blob, ImageDerivativeService.THUMBNAIL));
+
+        // Last reference dropped while the job was resizing, before release deleted the row
+        mediaBlobRepository.decrementRefCount(blob);
+        assertThrows(IOException.class,
+                () -> imageDerivativeService.generate(blob, ImageDerivativeService.THUMBNAIL, 200));
+        assertFalse(Files.exists(thumbnail));
+        try (var files = Files.list(thumbnail.getParent())) {
+            assertTrue(files.noneMatch(file -> file.getFileName().toString().startsWith("variant-")));
+        }
+
+        mediaBlobRepository.incrementRefCount("b".repeat(64));
+        imageDerivativeService.generate(blob, ImageDerivativeService.THUMBNAIL, 200);
+        assertTrue(Files.exists(thumbnail));
+    }
+
+    private Path stage(String content) throws Exception {
+        return Files.writeString(Files.createTempFile(uploadDir, "staged-", ""), content);
+    }
+}
@@ -0,0 +1,145 @@
+package com.linkup.app.service;
+
+import com.linkup.app.dto.MessagePageResponse;
+import com.linkup.app.dto.MessageRow;
+import com.linkup.app.model.Message;
+import com.linkup.app.model.User;
+import com.linkup.app.repository.MessageBatchRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Page latency of conversation history over 100k seeded messages. Excluded from the
+ * default build; run with mvn test -Pbenchmark. H2 sorts each direction's index range
+ * rather than reading it backwards as MySQL does, so compare runs with each other, not
+ * with production numbers.
+ */
+@Tag("benchmark")
+// Statement logging would dominate the timings
+@DataJpaTest(showSql = false, properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "logging.level.org.hibernate.SQL=off",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=off"
+})
+@ImportAutoConfiguration(TransactionAutoConfiguration.class)
+@Import({MessageService.class, ConversationService.class, MessageWriteBehindService.class,
+        MessageIdAllocator.class, MessageBatchRepository.class})
+class MessageHistoryBenchmarkTests {
+
+    private static final int MESSAGES = 100_000;
+    private static final int OTHER_USERS = 20;
+    private static final int INSERT_BATCH = 5_000;
+    private static final int PAGE_SIZE = 50;
+    private static final int WARMUP = 200;
+    private static final int MEASURED = 1_000;
+
+    @MockitoBean
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private MessageBatchRepository messageBatchRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private User alice;
+    private User bob;
+    private final List<Long> conversationIds = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        alice = newUser("alice");
+        bob = newUser("bob");
+        List<User> others = new ArrayList<>();
+        for (int i = 0; i < OTHER_USERS; i++) {
+            others.add(newUser("other" + i));
+        }
+        entityManager.flush();
+
+        // Half of the table is the measured conversation, the rest is traffic between
+        // both of its users and everyone else that the index has to skip
+        LocalDateTime start = LocalDateTime.now().minusDays(30);
+        List<MessageRow> batch = new ArrayList<>();
+        for (long id = 1; id <= MESSAGES; id++) {
+            User sender;
+            User receiver;
+            if (id % 2 == 0) {
+                sender = id % 4 == 0 ? alice : bob;
+                receiver = sender == alice ? bob : alice;
+                conversationIds.add(id);
+            } else {
+                sender = id % 3 == 0 ? alice : bob;
+                receiver = others.get((int) (id % OTHER_USERS));
+            }
+            batch.add(new MessageRow(id, sender.getUserId(), receiver.getUserId(), "message " + id,
+                    start.plusSeconds(id), Message.MessageStatus.READ));
+            if (batch.size() == INSERT_BATCH) {
+                messageBatchRepository.insertAll(batch);
+                batch.clear();
+            }
+        }
+        messageBatchRepository.insertAll(batch);
+    }
+
+    @Test
+    void reportsPageLatencyOverOneHundredThousandMessages() {
+        Long newestFirst = conversationIds.get(conversationIds.size() - PAGE_SIZE);
+        Long middle = conversationIds.get(conversationIds.size() / 2);
+        Long oldestAfter = conversationIds.get(0);
+
+        measure("newest page", newestFirst,
+                () -> messageService.getConversationPage(alice.getUserId(), bob.getUserId(), null, null, PAGE_SIZE));
+        measure("page before the middle", conversationIds.get(conversationIds.size() / 2 - PAGE_SIZE),
+                () -> messageService.getConversationPage(alice.getUserId(), bob.getUserId(), middle, null, PAGE_SIZE));
+        measure("page after the oldest", conversationIds.get(1),
+                () -> messageService.getConversationPage(bob.getUserId(), alice.getUserId(), null, oldestAfter, PAGE_SIZE));
+    }
+
+    private void measure(String name, Long expectedFirstId, Supplier<MessagePageResponse> page) {
+        List<Long> timings = new ArrayList<>();
+        for (int i = 0; i < WARMUP + MEASURED; i++) {
+            long started = System.nanoTime();
+            MessagePageResponse response = page.get();
+            long elapsed = System.nanoTime() - started;
+
+            assertEquals(PAGE_SIZE, response.getMessages().size());
+            assertEquals(expectedFirstId, response.getMessages().get(0).getMessageId());
+            if (i >= WARMUP) {
+                timings.add(elapsed);
+            }
+        }
+
+        Collections.sort(timings);
+        System.out.printf("Conversation history, %s of %d over %d messages: p50 %.1f us, p99 %.1f us%n",
+                name, PAGE_SIZE, MESSAGES, timings.get(MEASURED / 2) / 1000.0,
+                timings.get(MEASURED * 99 / 100) / 1000.0);
+    }
+
+    private User newUser(String name) {
+        User user = new User();
+        user.setUserName(name);
+        user.setEmail(name + "@example.com");
+        user.setPassword("secret");
+        return entityManager.persist(user);
+    }
+}
@@ -0,0 +1,100 @@
+package com.linkup.app.service;
+
+import com.linkup.app.dto.MessageRow;
+import com.linkup.app.model.Message;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageJournalTests {
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysUndrainedMessagesAfterRestartAcrossSegments() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        try (MessageJournal journal = new MessageJournal(dir, SEGMENT_SIZE);
+             ExecutorService senders = Executors.newFixedThreadPool(8)) {
+            // Roughly 1KB per record, so this spans several segments
+            for (long id = 1; id <= 300; id++) {
+                long messageId = id;
+                ids.add(messageId);
+                senders.submit(() -> {
+                    journal.append(message(messageId, "x".repeat(1000)));
+                    return null;
+                });
+            }
+        }
+
+        List<Long> drained = new ArrayList<>();
+        try (MessageJournal journal = new MessageJournal(dir, SEGMENT_SIZE)) {
+            MessageJournal.Batch first = journal.read(100);
+            first.messages().forEach(m -> drained.add(m.getMessageId()));
+            journal.markDrained(first.end());
+        }
+
+        try (MessageJournal journal = new MessageJournal(dir, SEGMENT_SIZE)) {
+            MessageJournal.Batch rest = journal.read(1000);
+            rest.messages().forEach(m -> drained.add(m.getMessageId()));
+            assertEquals("x".repeat(1000), rest.messages().get(0).getContent());
+            journal.markDrained(rest.end());
+            assertTrue(journal.isDrained());
+        }
+
+        assertEquals(ids, drained.stream().sorted().toList());
+        assertEquals(300, drained.stream().distinct().count());
+        try (Stream<Path> files = Files.list(dir)) {
+            // Only the checkpoint and the segments opened after the last drain remain
+            assertTrue(files.filter(f -> f.getFileName().toString().endsWith(".log")).count() <= 2);
+        }
+    }
+
+    @Test
+    void stopsAtARecordTornByACrash() throws IOException {
+        try (MessageJournal journal = new MessageJournal(dir, SEGMENT_SIZE)) {
+            journal.append(message(1, "kept"));
+            journal.append(message(2, "torn"));
+        }
+
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.filter(f -> f.getFileName().toString().endsWith(".log")).sorted().findFirst().orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            // Flip a byte in the second record's content
+            long second = 8 + (8 * 4 + 4) + "kept".length();
+            file.seek(second + 8 + (8 * 4 + 4));
+            file.write('T');
+        }
+
+        try (MessageJournal journal = new MessageJournal(dir, SEGMENT_SIZE)) {
+            MessageJournal.Batch batch = journal.read(10);
+            assertEquals(List.of("kept"), batch.messages().stream().map(MessageRow::getContent).toList());
+            journal.append(message(3, "after restart"));
+            journal.markDrained(batch.end());
+            assertEquals(List.of("after restart"), journal.read(10).messages().stream()
+                    .map(MessageRow::getContent).toList());
+        }
+    }
+
+    private MessageRow message(long id, String content) {
+        return new MessageRow(id, 1L, 2L, content, LocalDateTime.of(2025, 1, 1, 12, 0, 0, 123_456_789),
+                Message.MessageStatus.SENT);
+    }
+}
@@ -0,0 +1,116 @@
+package com.linkup.app.service;
+
+import com.linkup.app.dto.ReceiptEvent;
+import com.linkup.app.model.Message;
+import com.linkup.app.model.User;
+import com.linkup.app.repository.MessageBatchRepository;
+import com.linkup.app.repository.MessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        // Flushed by the test itself, inside its transaction
+        "app.messages.receipts.flush-interval-ms=3600000"
+})
+@ImportAutoConfiguration(TransactionAutoConfiguration.class)
+@Import({MessageService.class, ConversationService.class, MessageWriteBehindService.class,
+        MessageIdAllocator.class, MessageBatchRepository.class, MessageReceiptService.class})
+class MessageReceiptServiceTests {
+
+    @MockitoBean
+    private SimpMessagingTemplate messagingTemplate;
+
+    @MockitoBean
+    private ChatRelay chatRelay;
+
+    @MockitoBean
+    private PresenceRegistry presenceRegistry;
+
+    @BeforeEach
+    void everyoneOnline() {
+        when(presenceRegistry.isOnline(anyLong())).thenReturn(true);
+    }
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private MessageReceiptService receiptService;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void coalescesReceiptsIntoOneWatermarkPerConversation() {
+        User alice = newUser("alice");
+        User bob = newUser("bob");
+        List<Long> fromBob = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            fromBob.add(messageService.saveMessage(bob, alice.getUserId(), "b" + i).getMessageId());
+        }
+        Long fromAlice = messageService.saveMessage(alice, bob.getUserId(), "reply").getMessageId();
+
+        // A client acking message by message, out of order, then reading the first 20
+        for (int i = 24; i >= 0; i--) {
+            receiptService.acknowledge(alice.getUserId(), bob.getUserId(), fromBob.get(i),
+                    Message.MessageStatus.DELIVERED);
+        }
+        receiptService.acknowledge(alice.getUserId(), bob.getUserId(), fromBob.get(19), Message.MessageStatus.READ);
+        receiptService.flush();
+
+        assertEquals(Message.MessageStatus.READ, status(fromBob.get(19)));
+        assertEquals(Message.MessageStatus.DELIVERED, status(fromBob.get(20)));
+        assertEquals(Message.MessageStatus.DELIVERED, status(fromBob.get(24)));
+        assertEquals(Message.MessageStatus.SENT, status(fromBob.get(25)));
+        // Only bob's messages to alice are affected
+        assertEquals(Message.MessageStatus.SENT, status(fromAlice));
+        assertEquals(10, messageService.getInbox(alice.getUserId()).get(0).getUnreadCount());
+
+        verify(chatRelay).sendToUser(bob.getUserId().toString(), "/queue/receipts",
+                new ReceiptEvent(alice.getUserId(), Message.MessageStatus.DELIVERED, fromBob.get(24)));
+        verify(chatRelay).sendToUser(bob.getUserId().toString(), "/queue/receipts",
+                new ReceiptEvent(alice.getUserId(), Message.MessageStatus.READ, fromBob.get(19)));
+
+        // A stale receipt changes nothing and is not echoed
+        receiptService.acknowledge(alice.getUserId(), bob.getUserId(), fromBob.get(5), Message.MessageStatus.DELIVERED);
+        receiptService.flush();
+        verify(chatRelay, times(2)).sendToUser(anyString(), eq("/queue/receipts"), any(Object.class));
+    }
+
+    private Message.MessageStatus status(Long messageId) {
+        entityManager.clear();
+        return messageRepository.findById(messageId).orElseThrow().getStatus();
+    }
+
+    private User newUser(String name) {
+        User user = new User();
+        user.setUserName(name);
+        user.setEmail(name + "@example.com");
+        user.setPassword("secret");
+        return entityManager.persist(user);
+    }
+}
@@ -0,0 +1,105 @@
+package com.linkup.app.service;
+
+import com.linkup.app.dto.MessagePageResponse;
+import com.linkup.app.dto.MessageResponse;
+import com.linkup.app.model.Message;
+import com.linkup.app.model.User;
+import com.linkup.app.repository.MessageBatchRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@ImportAutoConfiguration(TransactionAutoConfiguration.class)
+@Import({MessageService.class, ConversationService.class, MessageWriteBehindService.class,
+        MessageIdAllocator.class, MessageBatchRepository.class})
+class MessageServiceTests {
+
+    private static final int MESSAGES = 250;
+
+    @MockitoBean
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private User alice;
+    private User bob;
+    private final List<Long> conversationIds = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        alice = newUser("alice");
+        bob = newUser("bob");
+        User carol = newUser("carol");
+
+        for (int i = 0; i < MESSAGES; i++) {
+            // Mixed directions, plus unrelated traffic that must not leak into the page
+            Message message = newMessage(i % 3 == 0 ? bob : alice, i % 3 == 0 ? alice : bob, "m" + i);
+            conversationIds.add(message.getMessageId());
+            newMessage(alice, carol, "other " + i);
+        }
+        entityManager.flush();
+    }
+
+    @Test
+    void pagesBackwardsThroughTheWholeConversation() {
+        List<Long> seen = new ArrayList<>();
+        Long before = null;
+        do {
+            MessagePageResponse page = messageService.getConversationPage(
+                    alice.getUserId(), bob.getUserId(), before, null, 40);
+            List<Long> ids = page.getMessages().stream().map(MessageResponse::getMessageId).toList();
+            seen.addAll(0, ids);
+            before = page.getOlderCursor();
+        } while (before != null);
+
+        assertEquals(conversationIds, seen);
+    }
+
+    @Test
+    void catchesUpWithNewerMessagesAfterAnId() {
+        Long after = conversationIds.get(MESSAGES - 11);
+
+        MessagePageResponse page = messageService.getConversationPage(
+                bob.getUserId(), alice.getUserId(), null, after, 50);
+
+        assertEquals(conversationIds.subList(MESSAGES - 10, MESSAGES),
+                page.getMessages().stream().map(MessageResponse::getMessageId).toList());
+        assertNull(page.getNewerCursor());
+        assertEquals("bob", page.getMessages().stream()
+                .filter(m -> m.getSenderId().equals(bob.getUserId())).findFirst().orElseThrow().getSenderName());
+    }
+
+    private Message newMessage(User sender, User receiver, String content) {
+        Message message = new Message();
+        message.setSender(sender);
+        message.setReceiver(receiver);
+        message.setContent(content);
+        return entityManager.persist(message);
+    }
+
+    private User newUser(String name) {
+        User user = new User();
+        user.setUserName(name);
+        user.setEmail(name + "@example.com");
+        user.setPassword("secret");
+        return entityManager.persist(user);
+    }
+}
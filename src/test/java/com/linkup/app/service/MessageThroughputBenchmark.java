@@ -0,0 +1,154 @@
+package com.linkup.app.service;
+
+import com.linkup.app.model.User;
+import com.linkup.app.repository.MessageBatchRepository;
+import com.linkup.app.repository.UserRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Messages per second through MessageService.saveMessage with write-behind off
+ * (insert and conversation update per message) and on (journal append with a shared
+ * fsync, stored later by the drain), from one sender and from several at once.
+ * Write-behind also reports how fast the drain stores what was accepted. Each sender
+ * commits on its own, outside any test transaction. Each mode is a subclass, so it
+ * gets its own context and database. Excluded from the default build; run with
+ * mvn test -Pbenchmark.
+ */
+@Tag("benchmark")
+// Statement logging would dominate the timings
+@DataJpaTest(showSql = false, properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "logging.level.org.hibernate.SQL=off",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=off",
+        // Drained by the benchmark once sending has finished
+        "app.messages.write-behind.drain-interval-ms=3600000"
+})
+@ImportAutoConfiguration(TransactionAutoConfiguration.class)
+@Import({MessageService.class, ConversationService.class, MessageWriteBehindService.class,
+        MessageIdAllocator.class, MessageBatchRepository.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+abstract class MessageThroughputBenchmark {
+
+    private static final int[] SENDERS = {1, 8};
+    private static final int WARMUP = 1_000;
+    private static final int MEASURED = 8_000;
+
+    @TempDir
+    static Path journalDir;
+
+    @DynamicPropertySource
+    static void journal(DynamicPropertyRegistry registry) {
+        registry.add("app.messages.write-behind.journal-dir", () -> journalDir.toString());
+    }
+
+    @MockitoBean
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private MessageWriteBehindService writeBehindService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void reportsMessagesPerSecond() throws Exception {
+        String mode = writeBehindService.isEnabled() ? "write-behind on" : "write-behind off";
+        int stored = 0;
+        for (int senders : SENDERS) {
+            List<User[]> pairs = new ArrayList<>();
+            for (int i = 0; i < senders; i++) {
+                pairs.add(new User[]{newUser(mode, senders, "sender" + i), newUser(mode, senders, "receiver" + i)});
+            }
+
+            send(pairs, WARMUP);
+            List<Long> timings = Collections.synchronizedList(new ArrayList<>());
+            long started = System.nanoTime();
+            send(pairs, MEASURED, timings);
+            double seconds = (System.nanoTime() - started) / 1e9;
+
+            Collections.sort(timings);
+            System.out.printf("Chat messages, %s, %d senders: %.0f msgs/s, p50 %.1f us, p99 %.1f us%n",
+                    mode, senders, MEASURED / seconds, timings.get(timings.size() / 2) / 1000.0,
+                    timings.get(timings.size() * 99 / 100) / 1000.0);
+
+            stored += WARMUP + MEASURED;
+            if (writeBehindService.isEnabled()) {
+                long drainStarted = System.nanoTime();
+                int drained = 0;
+                int batch;
+                while ((batch = writeBehindService.drain()) > 0) {
+                    drained += batch;
+                }
+                double drainSeconds = (System.nanoTime() - drainStarted) / 1e9;
+                System.out.printf("Chat messages, %s, %d senders: drain stored %d messages at %.0f msgs/s%n",
+                        mode, senders, drained, drained / drainSeconds);
+            }
+            assertEquals(stored, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM messages", Integer.class));
+        }
+    }
+
+    private void send(List<User[]> pairs, int messages) throws Exception {
+        send(pairs, messages, new ArrayList<>());
+    }
+
+    private void send(List<User[]> pairs, int messages, List<Long> timings) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(pairs.size());
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (User[] pair : pairs) {
+                workers.add(executor.submit(() -> {
+                    for (int i = 0; i < messages / pairs.size(); i++) {
+                        long started = System.nanoTime();
+                        messageService.saveMessage(pair[0], pair[1].getUserId(), "message " + i);
+                        timings.add(System.nanoTime() - started);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private User newUser(String mode, int senders, String name) {
+        String userName = mode.replace(' ', '-') + "-" + senders + "-" + name;
+        User user = new User();
+        user.setUserName(userName);
+        user.setEmail(userName + "@example.com");
+        user.setPassword("secret");
+        return userRepository.save(user);
+    }
+}
@@ -0,0 +1,7 @@
+package com.linkup.app.service;
+
+import org.springframework.test.context.TestPropertySource;
+
+@TestPropertySource(properties = "app.messages.write-behind.enabled=false")
+class MessageThroughputWriteBehindOffBenchmarkTests extends MessageThroughputBenchmark {
+}
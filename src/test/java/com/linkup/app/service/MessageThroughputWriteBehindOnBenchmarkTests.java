@@ -0,0 +1,7 @@
+package com.linkup.app.service;
+
+import org.springframework.test.context.TestPropertySource;
+
+@TestPropertySource(properties = "app.messages.write-behind.enabled=true")
+class MessageThroughputWriteBehindOnBenchmarkTests extends MessageThroughputBenchmark {
+}
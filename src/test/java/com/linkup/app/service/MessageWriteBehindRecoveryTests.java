@@ -0,0 +1,110 @@
+package com.linkup.app.service;
+
+import com.linkup.app.dto.MessageRow;
+import com.linkup.app.model.Message;
+import com.linkup.app.model.User;
+import com.linkup.app.repository.MessageBatchRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.messages.write-behind.enabled=false",
+        "app.messages.write-behind.drain-interval-ms=3600000"
+})
+@ImportAutoConfiguration(TransactionAutoConfiguration.class)
+@Import({MessageService.class, ConversationService.class, MessageWriteBehindService.class,
+        MessageIdAllocator.class, MessageBatchRepository.class})
+class MessageWriteBehindRecoveryTests {
+
+    private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    @TempDir
+    static Path journalDir;
+
+    @DynamicPropertySource
+    static void journal(DynamicPropertyRegistry registry) {
+        registry.add("app.messages.write-behind.journal-dir", () -> journalDir.toString());
+    }
+
+    @MockitoBean
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private MessageWriteBehindService writeBehindService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void journalLeftByEarlierRunIsStoredEvenWithWriteBehindOff() throws Exception {
+        User alice = newUser("alice");
+        User bob = newUser("bob");
+        entityManager.flush();
+        LocalDateTime sentAt = LocalDateTime.now();
+        try (MessageJournal journal = new MessageJournal(journalDir, SEGMENT_SIZE)) {
+            for (long id = 1000; id < 1002; id++) {
+                journal.append(new MessageRow(id, alice.getUserId(), bob.getUserId(), "m" + id, sentAt,
+                        Message.MessageStatus.SENT));
+            }
+        }
+        // An ID reused by a plain insert while the journal was stranded
+        jdbcTemplate.update("INSERT INTO messages (message_id, sender_id, receiver_id, content, timestamp, status) "
+                + "VALUES (1001, ?, ?, 'reused', ?, 'SENT')", bob.getUserId(), alice.getUserId(),
+                Timestamp.valueOf(sentAt.minusHours(1)));
+
+        // Refuses to start rather than dropping message 1001
+        assertThrows(IllegalStateException.class, () -> writeBehindService.open());
+
+        jdbcTemplate.update("DELETE FROM messages WHERE message_id = 1001");
+        writeBehindService.open();
+
+        assertFalse(writeBehindService.isEnabled());
+        assertEquals(List.of("m1000", "m1001"), jdbcTemplate.queryForList(
+                "SELECT content FROM messages WHERE sender_id = ? ORDER BY message_id", String.class,
+                alice.getUserId()));
+    }
+
+    @Test
+    void refusesToStartWhileAnotherNodeWritesBehind() throws Exception {
+        jdbcTemplate.update("INSERT INTO id_sequences (name, next_value, owner, owner_expires_at) VALUES (?, 1, ?, ?)",
+                MessageIdAllocator.SEQUENCE, "other-node", Timestamp.valueOf(LocalDateTime.now().plusMinutes(1)));
+        assertThrows(IllegalStateException.class, () -> writeBehindService.open());
+
+        // An expired lease belongs to a node that is gone
+        jdbcTemplate.update("UPDATE id_sequences SET owner_expires_at = ? WHERE name = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusMinutes(1)), MessageIdAllocator.SEQUENCE);
+        writeBehindService.open();
+    }
+
+    private User newUser(String name) {
+        User user = new User();
+        user.setUserName(name);
+        user.setEmail(name + "@example.com");
+        user.setPassword("secret");
+        return entityManager.persist(user);
+    }
+}
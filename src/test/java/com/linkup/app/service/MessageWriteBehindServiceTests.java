@@ -0,0 +1,194 @@
+package com.linkup.app.service;
+
+import com.linkup.app.dto.ConversationSummary;
+import com.linkup.app.dto.MessagePageResponse;
+import com.linkup.app.dto.MessageResponse;
+import com.linkup.app.model.Message;
+import com.linkup.app.model.User;
+import com.linkup.app.repository.MessageBatchRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.messages.write-behind.enabled=true",
+        "app.messages.write-behind.id-block-size=10",
+        // Drained by the test itself, inside its transaction
+        "app.messages.write-behind.drain-interval-ms=3600000",
+        "app.messages.receipts.flush-interval-ms=3600000"
+})
+@ImportAutoConfiguration(TransactionAutoConfiguration.class)
+@Import({MessageService.class, ConversationService.class, MessageWriteBehindService.class,
+        MessageIdAllocator.class, MessageBatchRepository.class, MessageReceiptService.class})
+// The allocator's reserved ID block outlives each rolled-back test transaction
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class MessageWriteBehindServiceTests {
+
+    @TempDir
+    static Path journalDir;
+
+    @DynamicPropertySource
+    static void journal(DynamicPropertyRegistry registry) {
+        registry.add("app.messages.write-behind.journal-dir", () -> journalDir.toString());
+    }
+
+    @MockitoBean
+    private SimpMessagingTemplate messagingTemplate;
+
+    @MockitoBean
+    private ChatRelay chatRelay;
+
+    @MockitoBean
+    private PresenceRegistry presenceRegistry;
+
+    @Autowired
+    private MessageReceiptService receiptService;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private MessageWriteBehindService writeBehindService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MessageIdAllocator idAllocator;
+
+    @Test
+    void deliversFirstAndInsertsOnDrain() {
+        User alice = newUser("alice");
+        User bob = newUser("bob");
+        Message existing = new Message();
+        existing.setSender(bob);
+        existing.setReceiver(alice);
+        existing.setContent("before write-behind");
+        entityManager.persist(existing);
+        entityManager.flush();
+
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            Message sent = messageService.saveMessage(alice, bob.getUserId(), "m" + i);
+            ids.add(sent.getMessageId());
+        }
+        // IDs are handed out before the insert, above everything already stored
+        assertTrue(ids.get(0) > existing.getMessageId());
+        assertEquals(ids.stream().sorted().distinct().toList(), ids);
+        assertEquals(1, page(bob, alice).getMessages().size());
+
+        assertEquals(25, writeBehindService.drain());
+        entityManager.clear();
+
+        List<Long> stored = page(bob, alice).getMessages().stream().map(MessageResponse::getMessageId).toList();
+        assertEquals(26, stored.size());
+        assertEquals(ids, stored.subList(1, 26));
+
+        ConversationSummary inbox = messageService.getInbox(bob.getUserId()).get(0);
+        assertEquals("m24", inbox.getLastMessagePreview());
+        assertEquals(25, inbox.getUnreadCount());
+
+        // A second drain finds nothing left
+        assertEquals(0, writeBehindService.drain());
+    }
+
+    @Test
+    void idTakenByDifferentMessageStopsDrainInsteadOfDroppingIt() {
+        User alice = newUser("carol");
+        User bob = newUser("dave");
+        Message first = messageService.saveMessage(alice, bob.getUserId(), "first");
+        // Something else stored a message under the next preallocated ID
+        jdbcTemplate.update("INSERT INTO messages (message_id, sender_id, receiver_id, content, timestamp, status) "
+                        + "VALUES (?, ?, ?, 'other', ?, 'SENT')", first.getMessageId() + 1, bob.getUserId(),
+                alice.getUserId(), Timestamp.valueOf(LocalDateTime.now().minusDays(1)));
+        Message second = messageService.saveMessage(alice, bob.getUserId(), "second");
+        assertEquals(first.getMessageId() + 1, second.getMessageId());
+
+        assertEquals(0, writeBehindService.drain());
+        assertEquals(0, messageCount(alice, bob));
+
+        jdbcTemplate.update("DELETE FROM messages WHERE message_id = ?", second.getMessageId());
+        assertEquals(2, writeBehindService.drain());
+        assertEquals(2, messageCount(alice, bob));
+    }
+
+    @Test
+    void receiptsForJournaledMessagesWaitForTheDrain() {
+        User alice = newUser("gina");
+        User bob = newUser("hank");
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(messageService.saveMessage(alice, bob.getUserId(), "m" + i).getMessageId());
+        }
+        receiptService.acknowledge(bob.getUserId(), alice.getUserId(), ids.get(2), Message.MessageStatus.READ);
+
+        // Nothing to update yet; the watermark is kept rather than dropped
+        receiptService.flush();
+        assertEquals(0, messageCount(alice, bob));
+
+        assertEquals(3, writeBehindService.drain());
+        assertEquals(3, messageService.getInbox(bob.getUserId()).get(0).getUnreadCount());
+        receiptService.flush();
+
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM messages WHERE sender_id = ? AND status = 'READ'",
+                Integer.class, alice.getUserId()));
+        entityManager.clear();
+        assertEquals(0, messageService.getInbox(bob.getUserId()).get(0).getUnreadCount());
+    }
+
+    @Test
+    void onlyTheNodeHoldingTheLeaseHandsOutIds() {
+        User alice = newUser("erin");
+        User bob = newUser("frank");
+        assertNotNull(idAllocator.currentOwner());
+        assertThrows(IllegalStateException.class, () -> idAllocator.claim("other-node"));
+
+        // Taken over after this node's lease lapsed
+        jdbcTemplate.update("UPDATE id_sequences SET owner = 'other-node' WHERE name = ?", MessageIdAllocator.SEQUENCE);
+        idAllocator.renew();
+        assertThrows(IllegalStateException.class, () -> messageService.saveMessage(alice, bob.getUserId(), "late"));
+    }
+
+    private int messageCount(User sender, User receiver) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM messages WHERE sender_id = ? AND receiver_id = ?",
+                Integer.class, sender.getUserId(), receiver.getUserId());
+    }
+
+    private MessagePageResponse page(User user, User other) {
+        return messageService.getConversationPage(user.getUserId(), other.getUserId(), null, null, 100);
+    }
+
+    private User newUser(String name) {
+        User user = new User();
+        user.setUserName(name);
+        user.setEmail(name + "@example.com");
+        user.setPassword("secret");
+        return entityManager.persist(user);
+    }
+}
@@ -0,0 +1,138 @@
+package com.linkup.app.service;
+
+import com.linkup.app.model.Content;
+import com.linkup.app.model.MediaBlob;
+import com.linkup.app.util.MediaStorageLayout;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "file.orphan-gc.quarantine-hours=0",
+        "file.orphan-gc.files-per-second=0"
+})
+@ImportAutoConfiguration(TransactionAutoConfiguration.class)
+@Import({OrphanMediaCollector.class, HotMediaCache.class, MediaStorageLayout.class})
+class OrphanMediaCollectorTests {
+
+    @TempDir
+    static Path uploadDir;
+
+    @DynamicPropertySource
+    static void uploadDir(DynamicPropertyRegistry registry) {
+        registry.add("file.upload-dir", uploadDir::toString);
+    }
+
+    @Autowired
+    private OrphanMediaCollector collector;
+
+    @Autowired
+    private MediaStorageLayout storageLayout;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void quarantinesThenDeletesOnlyOldUnreferencedFiles() throws Exception {
+        Path referenced = store("aaaa0001.png", "kept", true);
+        Path orphan = store("bbbb0002.png", "orphan", true);
+        Path recent = store("cccc0003.png", "still uploading", false);
+        Path legacy = store("dddd0004-legacy.png", "legacy orphan", true);
+        Files.move(legacy, uploadDir.resolve(legacy.getFileName()));
+
+        Content content = new Content();
+        content.setPath("aaaa0001.png");
+        entityManager.persistAndFlush(content);
+
+        collector.collect();
+
+        assertTrue(Files.exists(referenced));
+        assertTrue(Files.exists(recent));
+        assertFalse(Files.exists(orphan));
+        assertTrue(Files.exists(uploadDir.resolve(".quarantine/bbbb0002.png")));
+        assertTrue(Files.exists(uploadDir.resolve(".quarantine/dddd0004-legacy.png")));
+
+        Thread.sleep(20);
+        long reclaimed = collector.collect();
+
+        assertEquals("orphan".length() + "legacy orphan".length(), reclaimed);
+        assertFalse(Files.exists(uploadDir.resolve(".quarantine/bbbb0002.png")));
+        assertTrue(Files.exists(referenced));
+    }
+
+    @Test
+    void restoresReusedFilesEarlyAndKeepsBlobsStillReferenced() throws Exception {
+        ReflectionTestUtils.setField(collector, "quarantineHours", 72L);
+        Path reused = store("eeee0005.png", "reused", true);
+        Path uploading = store("ffff0006.png", "uploading", true);
+        Path variantTemp = store("variant-123.tmp", "partial", true);
+        try {
+            // Blob row taken by an upload whose Content row is not saved yet
+            entityManager.persistAndFlush(new MediaBlob("ffff0006", "ffff0006.png", 9L, 1, null));
+
+            collector.collect();
+
+            assertFalse(Files.exists(reused));
+            assertTrue(Files.exists(uploading));
+            assertFalse(Files.exists(variantTemp));
+
+            Content content = new Content();
+            content.setPath("eeee0005.png");
+            entityManager.persistAndFlush(content);
+
+            collector.collect();
+
+            assertTrue(Files.exists(reused));
+            assertFalse(Files.exists(uploadDir.resolve(".quarantine/eeee0005.png")));
+        } finally {
+            ReflectionTestUtils.setField(collector, "quarantineHours", 0L);
+            Files.deleteIfExists(reused);
+            Files.deleteIfExists(uploading);
+            Files.deleteIfExists(uploadDir.resolve(".quarantine/eeee0005.png"));
+        }
+    }
+
+    @Test
+    void blobRowLeftAtZeroReferencesGoesWithItsFile() throws Exception {
+        Path orphan = store("gggg0007.png", "released", true);
+        entityManager.persistAndFlush(new MediaBlob("gggg0007", "gggg0007.png", 8L, 0, null));
+
+        collector.collect();
+
+        assertFalse(Files.exists(orphan));
+        assertTrue(Files.exists(uploadDir.resolve(".quarantine/gggg0007.png")));
+        entityManager.clear();
+        assertNull(entityManager.find(MediaBlob.class, "gggg0007"));
+        Files.deleteIfExists(uploadDir.resolve(".quarantine/gggg0007.png"));
+    }
+
+    private Path store(String name, String bytes, boolean old) throws Exception {
+        Path file = storageLayout.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, bytes);
+        if (old) {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+        }
+        return file;
+    }
+}
@@ -0,0 +1,173 @@
+package com.linkup.app.service;
+
+import com.linkup.app.model.Post;
+import com.linkup.app.model.User;
+import com.linkup.app.repository.PostRepository;
+import com.linkup.app.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.counters.flush-interval-ms=3600000"
+})
+@ImportAutoConfiguration(TransactionAutoConfiguration.class)
+@Import({PostCounterService.class, LikeService.class})
+// Deltas are only counted after a real commit
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PostCounterServiceTests {
+
+    @Autowired
+    private PostCounterService postCounterService;
+
+    @Autowired
+    private LikeService likeService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private User alice;
+    private User bob;
+    private Post post;
+
+    @BeforeEach
+    void seed() {
+        alice = newUser("alice");
+        bob = newUser("bob");
+        post = new Post();
+        post.setPostType("skill_sharing");
+        post.setDescription("counted");
+        post.setUser(alice);
+        post = postRepository.save(post);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        postCounterService.reconcile();
+        jdbcTemplate.update("DELETE FROM likes");
+        jdbcTemplate.update("DELETE FROM posts");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    void likesAreCountedOnceTheirTransactionCommits() {
+        likeService.toggleLike(alice.getUserId(), post.getPostId());
+        transactionTemplate.executeWithoutResult(status -> {
+            likeService.toggleLike(bob.getUserId(), post.getPostId());
+            status.setRollbackOnly();
+        });
+
+        assertEquals(1, postCounterService.pendingLikes(post.getPostId()));
+        assertEquals(0, storedLikes());
+        assertEquals(1, likeService.getLikesCount(post.getPostId()));
+    }
+
+    @Test
+    void flushAppliesEachDeltaOnce() {
+        postCounterService.incrementLikes(post.getPostId(), 3);
+        postCounterService.incrementComments(post.getPostId(), 2);
+        postCounterService.incrementLikes(post.getPostId(), -1);
+
+        postCounterService.flush();
+        postCounterService.flush();
+
+        assertEquals(2, storedLikes());
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT comments_count FROM posts WHERE post_id = ?",
+                Long.class, post.getPostId()));
+        assertEquals(0, postCounterService.pendingLikes(post.getPostId()));
+        assertEquals(0, postCounterService.pendingComments(post.getPostId()));
+    }
+
+    @Test
+    void reconcileReplacesDeltasTheRecountAlreadyHas() {
+        likeService.toggleLike(alice.getUserId(), post.getPostId());
+        likeService.toggleLike(bob.getUserId(), post.getPostId());
+        jdbcTemplate.update("UPDATE posts SET likes_count = 10 WHERE post_id = ?", post.getPostId());
+
+        postCounterService.reconcile();
+        postCounterService.flush();
+
+        assertEquals(2, storedLikes());
+        assertEquals(2, likeService.getLikesCount(post.getPostId()));
+    }
+
+    @Test
+    void reconcileWaitsForALikeThatHasCommittedButNotCountedYet() throws Exception {
+        CountDownLatch committed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> like = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(s -> {
+            // Registered first, so it runs after the commit and before the delta is added
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    committed.countDown();
+                    await(release);
+                }
+            });
+            likeService.toggleLike(alice.getUserId(), post.getPostId());
+        }));
+        assertTrue(committed.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Void> reconcile = CompletableFuture.runAsync(postCounterService::reconcile);
+        Thread.sleep(200);
+        assertFalse(reconcile.isDone());
+
+        release.countDown();
+        like.get(5, TimeUnit.SECONDS);
+        reconcile.get(5, TimeUnit.SECONDS);
+        postCounterService.flush();
+
+        assertEquals(1, storedLikes());
+        assertEquals(1, likeService.getLikesCount(post.getPostId()));
+    }
+
+    private long storedLikes() {
+        return jdbcTemplate.queryForObject("SELECT likes_count FROM posts WHERE post_id = ?", Long.class,
+                post.getPostId());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private User newUser(String name) {
+        User user = new User();
+        user.setUserName(name);
+        user.setEmail(name + "@example.com");
+        user.setPassword("secret");
+        return userRepository.save(user);
+    }
+}
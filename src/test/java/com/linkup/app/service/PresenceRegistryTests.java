@@ -0,0 +1,193 @@
+package com.linkup.app.service;
+
+import com.linkup.app.dto.MissedMessages;
+import com.linkup.app.model.User;
+import com.linkup.app.repository.UserRepository;
+import com.linkup.app.security.ChatPrincipal;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringJUnitConfig({PresenceRegistry.class, OfflineSyncQueue.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = {
+        "app.chat.heartbeat-ms=10",
+        "app.chat.presence.max-offline-users=2",
+        "app.chat.presence.offline-ttl-hours=0"
+})
+class PresenceRegistryTests {
+
+    @MockitoBean
+    private ChatRelay chatRelay;
+
+    @MockitoBean
+    private SimpUserRegistry simpUserRegistry;
+
+    @MockitoBean
+    private UserRepository userRepository;
+
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+
+    @Autowired
+    private OfflineSyncQueue offlineSyncQueue;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void userDetailsPrincipalNamedByEmailIsOnlineByUserId() {
+        User carol = new User();
+        carol.setUserId(42L);
+        carol.setEmail("carol@example.com");
+        when(userRepository.findByEmail("carol@example.com")).thenReturn(Optional.of(carol));
+        UserDetails details = new org.springframework.security.core.userdetails.User(
+                "carol@example.com", "secret", List.of());
+
+        presenceRegistry.onSessionConnected(connected("carol-phone",
+                new UsernamePasswordAuthenticationToken(details, null, List.of())));
+        presenceRegistry.onSessionConnected(connected("carol-laptop", new UsernamePasswordAuthenticationToken(
+                new ChatPrincipal(42L, "carol@example.com", "carol"), null, List.of())));
+
+        assertTrue(presenceRegistry.isOnline(42L));
+        assertEquals(2, presenceRegistry.getSessionCount(42L));
+        verify(chatRelay).sessionOpened("carol-phone", "42");
+
+        presenceRegistry.onSessionDisconnect(new SessionDisconnectEvent(new Object(),
+                connectedMessage("carol-phone"), "carol-phone", CloseStatus.NORMAL));
+        presenceRegistry.onSessionDisconnect(new SessionDisconnectEvent(new Object(),
+                connectedMessage("carol-laptop"), "carol-laptop", CloseStatus.NORMAL));
+        assertFalse(presenceRegistry.isOnline(42L));
+    }
+
+    @Test
+    void userStaysOnlineUntilTheirLastDeviceDisconnects() {
+        presenceRegistry.sessionOpened("phone", 1L, 0);
+        presenceRegistry.sessionOpened("laptop", 1L, 0);
+        presenceRegistry.sessionOpened("other", 2L, 0);
+        assertEquals(2, presenceRegistry.getSessionCount(1L));
+
+        presenceRegistry.sessionClosed("phone");
+        // Disconnect events can arrive twice for one session
+        presenceRegistry.sessionClosed("phone");
+        assertEquals(Map.of(1L, true, 2L, true, 3L, false),
+                presenceRegistry.getOnlineStatus(List.of(1L, 2L, 3L)));
+
+        presenceRegistry.sessionClosed("laptop");
+        presenceRegistry.sessionClosed("other");
+        assertFalse(presenceRegistry.isOnline(1L));
+        verify(chatRelay).sessionClosed("laptop");
+    }
+
+    @Test
+    void silentSessionIsDroppedAfterMissedHeartbeats() throws Exception {
+        presenceRegistry.sessionOpened("quiet", 4L, 10);
+        presenceRegistry.sessionOpened("chatty", 5L, 10);
+
+        for (int i = 0; i < 5; i++) {
+            Thread.sleep(10);
+            presenceRegistry.preSend(heartbeat("chatty"), null);
+        }
+        presenceRegistry.evictSilentSessions();
+
+        assertFalse(presenceRegistry.isOnline(4L));
+        assertTrue(presenceRegistry.isOnline(5L));
+        presenceRegistry.sessionClosed("chatty");
+    }
+
+    @Test
+    void missedMessagesAreSentOnceWhenTheUserSubscribesToSync() {
+        offlineSyncQueue.record(6L, 1L, 100L);
+        offlineSyncQueue.record(6L, 1L, 105L);
+        offlineSyncQueue.record(6L, 2L, 101L);
+
+        offlineSyncQueue.onSubscribe(subscribe(6L, "/user/queue/messages"));
+        verify(chatRelay, never()).sendToUser(anyString(), eq("/queue/sync"), any());
+
+        List<MissedMessages> missed = offlineSyncQueue.peek(6L);
+        offlineSyncQueue.onSubscribe(subscribe(6L, "/user/queue/sync"));
+        verify(chatRelay).sendToUser("6", "/queue/sync", missed);
+        assertTrue(missed.contains(new MissedMessages(1L, 100L, 105L, 2)));
+        assertTrue(missed.contains(new MissedMessages(2L, 101L, 101L, 1)));
+        assertTrue(offlineSyncQueue.peek(6L).isEmpty());
+    }
+
+    @Test
+    void usersPastTheCapAreCountedAndUncollectedRangesExpire() throws Exception {
+        offlineSyncQueue.record(7L, 1L, 200L);
+        offlineSyncQueue.record(8L, 1L, 201L);
+        offlineSyncQueue.record(9L, 1L, 202L);
+        // Users already held keep collecting ranges
+        offlineSyncQueue.record(7L, 2L, 203L);
+
+        assertTrue(offlineSyncQueue.peek(9L).isEmpty());
+        assertEquals(2, offlineSyncQueue.peek(7L).size());
+        assertEquals(1.0, meterRegistry.get("chat.offline.discarded").tag("reason", "full")
+                .functionCounter().count());
+
+        Thread.sleep(5);
+        offlineSyncQueue.expire();
+        assertTrue(offlineSyncQueue.peek(7L).isEmpty());
+        assertTrue(offlineSyncQueue.peek(8L).isEmpty());
+        assertEquals(2.0, meterRegistry.get("chat.offline.discarded").tag("reason", "expired")
+                .functionCounter().count());
+
+        offlineSyncQueue.record(9L, 1L, 204L);
+        assertEquals(List.of(new MissedMessages(1L, 204L, 204L, 1)), offlineSyncQueue.peek(9L));
+        offlineSyncQueue.onSubscribe(subscribe(9L, "/user/queue/sync"));
+    }
+
+    private static Message<byte[]> heartbeat(String sessionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.createForHeartbeat();
+        accessor.setSessionId(sessionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> connectedMessage(String sessionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECTED);
+        accessor.setSessionId(sessionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static SessionConnectedEvent connected(String sessionId, Principal user) {
+        return new SessionConnectedEvent(new Object(), connectedMessage(sessionId), user);
+    }
+
+    private static SessionSubscribeEvent subscribe(Long userId, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId("s-" + userId);
+        accessor.setDestination(destination);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        return new SessionSubscribeEvent(new Object(), message, new UsernamePasswordAuthenticationToken(
+                new ChatPrincipal(userId, userId + "@example.com", "user" + userId), null, List.of()));
+    }
+}
@@ -0,0 +1,154 @@
+package com.linkup.app.service;
+
+import com.linkup.app.model.Content;
+import com.linkup.app.model.Post;
+import com.linkup.app.model.UploadSession;
+import com.linkup.app.model.User;
+import com.linkup.app.util.ImageUtils;
+import com.linkup.app.util.MediaStorageLayout;
+import com.linkup.app.util.VideoUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "file.allowed-image-types=image/png",
+        "file.allowed-video-types=video/mp4",
+        "file.max-video-duration-seconds=30",
+        "file.resumable.max-sessions-per-user=2",
+        "app.quota.max-bytes-per-user=64B"
+})
+@Import({ResumableUploadService.class, FileStorageService.class, MediaBlobService.class, HotMediaCache.class,
+        MediaStorageLayout.class, VideoUtils.class, ImageUtils.class, ImageDerivativeService.class,
+        StorageQuotaService.class})
+@ImportAutoConfiguration(TransactionAutoConfiguration.class)
+class ResumableUploadServiceTests {
+
+    @TempDir
+    static Path uploadDir;
+
+    @DynamicPropertySource
+    static void uploadDir(DynamicPropertyRegistry registry) {
+        registry.add("file.upload-dir", uploadDir::toString);
+    }
+
+    @Autowired
+    private ResumableUploadService resumableUploadService;
+
+    @Autowired
+    private MediaStorageLayout storageLayout;
+
+    @Autowired
+    private StorageQuotaService storageQuotaService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void chunksResumeFromStoredOffsetAndCompleteIntoContent() throws Exception {
+        User user = new User();
+        user.setUserName("uploader");
+        user.setEmail("uploader@example.com");
+        user.setPassword("secret");
+        entityManager.persist(user);
+
+        Post post = new Post();
+        post.setUser(user);
+        post.setPostType("skill_sharing");
+        entityManager.persist(post);
+
+        UploadSession session = resumableUploadService.createSession(user.getUserId(), "clip.png", "image/png", 10L);
+        String uploadId = session.getId();
+
+        assertEquals(5, resumableUploadService.appendChunk(uploadId, user.getUserId(), 0, chunk("hello")));
+        // A retried chunk at a stale offset is refused instead of overwriting received bytes
+        assertThrows(IllegalStateException.class,
+                () -> resumableUploadService.appendChunk(uploadId, user.getUserId(), 0, chunk("HELLO")));
+        assertEquals(5, resumableUploadService.getSession(uploadId, user.getUserId()).getReceivedBytes());
+        assertEquals(10, resumableUploadService.appendChunk(uploadId, user.getUserId(), 5, chunk("world")));
+
+        Content content = resumableUploadService.complete(uploadId, user.getUserId(), post.getPostId());
+
+        assertEquals("image", content.getFileType());
+        assertEquals("helloworld", Files.readString(storageLayout.resolve(content.getPath())));
+        assertEquals(0, Files.list(uploadDir.resolve(".multipart")).count());
+    }
+
+    @Test
+    void rawUploadIsAttachedToThePostAndChargedToTheQuota() throws Exception {
+        User user = new User();
+        user.setUserName("streamer");
+        user.setEmail("streamer@example.com");
+        user.setPassword("secret");
+        entityManager.persist(user);
+
+        Post post = new Post();
+        post.setUser(user);
+        post.setPostType("skill_sharing");
+        entityManager.persist(post);
+
+        Content content = resumableUploadService.storeRaw(user.getUserId(), post.getPostId(),
+                chunk("raw bytes"), "image/png; name=\"raw.png\"", "raw.png", 1024);
+
+        assertEquals(post.getPostId(), content.getPost().getPostId());
+        assertEquals("image/png", content.getContentType());
+        assertEquals(9, content.getFileSize());
+        assertEquals(9, storageQuotaService.getUsage(user.getUserId()));
+        assertEquals("raw bytes", Files.readString(storageLayout.resolve(content.getPath())));
+    }
+
+    @Test
+    void openSessionsAreCappedAndAFailedCompletionEndsTheSession() throws Exception {
+        User user = new User();
+        user.setUserName("hoarder");
+        user.setEmail("hoarder@example.com");
+        user.setPassword("secret");
+        entityManager.persist(user);
+
+        Post post = new Post();
+        post.setUser(user);
+        post.setPostType("skill_sharing");
+        entityManager.persist(post);
+
+        Long userId = user.getUserId();
+        UploadSession first = resumableUploadService.createSession(userId, "a.png", "image/png", 40L);
+        // Open sessions count against the quota before anything is stored
+        assertThrows(StorageQuotaService.QuotaExceededException.class,
+                () -> resumableUploadService.createSession(userId, "b.png", "image/png", 30L));
+        UploadSession second = resumableUploadService.createSession(userId, "c.mp4", "video/mp4", 20L);
+        assertThrows(IllegalStateException.class,
+                () -> resumableUploadService.createSession(userId, "d.png", "image/png", 1L));
+
+        resumableUploadService.appendChunk(second.getId(), userId, 0, chunk("not really a video!!"));
+        assertThrows(IOException.class, () -> resumableUploadService.complete(second.getId(), userId, post.getPostId()));
+
+        // Not left half-completed: the session and its staged bytes are gone
+        assertThrows(NoSuchElementException.class, () -> resumableUploadService.getSession(second.getId(), userId));
+        assertEquals(1, Files.list(uploadDir.resolve(".multipart")).count());
+        assertEquals(0, storageQuotaService.getUsage(userId));
+
+        resumableUploadService.cancel(first.getId(), userId);
+    }
+
+    private ByteArrayInputStream chunk(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,73 @@
+package com.linkup.app.service;
+
+import com.linkup.app.model.Content;
+import com.linkup.app.model.Post;
+import com.linkup.app.model.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.quota.max-bytes-per-user=100B"
+})
+@Import(StorageQuotaService.class)
+class StorageQuotaServiceTests {
+
+    @Autowired
+    private StorageQuotaService storageQuotaService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void reservationsStopAtTheLimitAndReleaseGivesBytesBack() {
+        Long userId = newUser().getUserId();
+
+        storageQuotaService.reserve(userId, 60);
+        assertThrows(StorageQuotaService.QuotaExceededException.class,
+                () -> storageQuotaService.reserve(userId, 50));
+        assertThrows(StorageQuotaService.QuotaExceededException.class,
+                () -> storageQuotaService.checkQuota(userId, 41));
+        assertEquals(60, storageQuotaService.getUsage(userId));
+
+        storageQuotaService.release(userId, 20);
+        storageQuotaService.reserve(userId, 50);
+        assertEquals(90, storageQuotaService.getUsage(userId));
+    }
+
+    @Test
+    void reconcileRecountsFromContents() {
+        User user = newUser();
+        Post post = new Post();
+        post.setUser(user);
+        post.setPostType("skill_sharing");
+        entityManager.persist(post);
+        for (long size : new long[]{30, 12}) {
+            Content content = new Content();
+            content.setPath("file-" + size + ".png");
+            content.setFileSize(size);
+            content.setPost(post);
+            entityManager.persist(content);
+        }
+        entityManager.flush();
+        storageQuotaService.reserve(user.getUserId(), 99);
+
+        storageQuotaService.reconcile();
+
+        assertEquals(42, storageQuotaService.getUsage(user.getUserId()));
+    }
+
+    private User newUser() {
+        User user = new User();
+        user.setUserName("quota-user");
+        user.setEmail("quota-user@example.com");
+        user.setPassword("secret");
+        return entityManager.persistAndFlush(user);
+    }
+}
@@ -0,0 +1,178 @@
+package com.linkup.app.service;
+
+import com.linkup.app.util.ImageUtils;
+import com.linkup.app.util.MediaStorageLayout;
+import com.linkup.app.util.VideoUtils;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Upload throughput and bytes written per uploaded byte for the copy-based store
+ * that preceded content-addressed storage, the multipart path that renames the
+ * spooled part into place, and the raw streaming path. Multipart timings include
+ * spooling the part, as the container does while reading the request. Bytes written
+ * come from wchar in /proc/self/io, so they count write calls, not device I/O.
+ * Excluded from the default build; run with mvn test -Pbenchmark.
+ */
+@Tag("benchmark")
+@DataJpaTest(showSql = false, properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "logging.level.org.hibernate.SQL=off",
+        "logging.level.com.linkup.app.service.FileStorageService=warn",
+        "file.allowed-image-types=image/png",
+        "file.allowed-video-types=video/mp4",
+        "file.max-video-duration-seconds=30"
+})
+@Import({FileStorageService.class, MediaBlobService.class, HotMediaCache.class, MediaStorageLayout.class,
+        VideoUtils.class, ImageUtils.class})
+class UploadThroughputBenchmarkTests {
+
+    private static final int FILE_SIZE = 32 * 1024 * 1024;
+    private static final int WARMUP = 2;
+    private static final int MEASURED = 8;
+
+    @TempDir
+    static Path uploadDir;
+
+    @DynamicPropertySource
+    static void uploadDir(DynamicPropertyRegistry registry) {
+        registry.add("file.upload-dir", uploadDir::toString);
+    }
+
+    private interface Upload {
+        void store(byte[] body) throws IOException;
+    }
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Test
+    void reportsUploadThroughputAndBytesWritten() throws Exception {
+        byte[] body = new byte[FILE_SIZE];
+        new Random(42).nextBytes(body);
+
+        measure("copy of the spooled part", body, bytes -> {
+            MultipartFile part = spool(bytes);
+            Path target = uploadDir.resolve(UUID.randomUUID() + ".png");
+            try (InputStream in = part.getInputStream()) {
+                Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.delete(target);
+            // The container deletes the spooled part after the request
+            part.transferTo(uploadDir.resolve("discarded").toFile());
+            Files.delete(uploadDir.resolve("discarded"));
+        });
+        measure("spooled part moved into place", body, bytes -> {
+            String stored = fileStorageService.storeFile(spool(bytes));
+            fileStorageService.deleteFile(stored);
+        });
+        measure("raw streamed body", body, bytes -> {
+            String stored = fileStorageService.storeStream(new ByteArrayInputStream(bytes), "image/png",
+                    "raw.png", FILE_SIZE);
+            fileStorageService.deleteFile(stored);
+        });
+    }
+
+    private void measure(String name, byte[] body, Upload upload) throws IOException {
+        long elapsed = 0;
+        long written = 0;
+        for (int i = 0; i < WARMUP + MEASURED; i++) {
+            // A different hash each time, so no upload is deduplicated against the last
+            body[0] = (byte) i;
+            body[1] = (byte) name.hashCode();
+            long writtenBefore = writtenBytes();
+            long started = System.nanoTime();
+            upload.store(body);
+            if (i >= WARMUP) {
+                elapsed += System.nanoTime() - started;
+                written += writtenBytes() - writtenBefore;
+            }
+        }
+
+        double megabytes = (double) FILE_SIZE * MEASURED / (1024 * 1024);
+        System.out.printf("Upload, %s: %.0f MB/s, %.2f bytes written per byte uploaded%n",
+                name, megabytes / (elapsed / 1e9), written < 0 ? Double.NaN : (double) written / FILE_SIZE / MEASURED);
+    }
+
+    /**
+     * What the container hands over: a part already written to a temp file, whose
+     * transferTo renames it when the target is on the same filesystem
+     */
+    private MultipartFile spool(byte[] bytes) throws IOException {
+        Path spooled = Files.write(uploadDir.resolve("part-" + UUID.randomUUID()), bytes);
+        return new MultipartFile() {
+            @Override
+            public String getName() {
+                return "files";
+            }
+
+            @Override
+            public String getOriginalFilename() {
+                return "upload.png";
+            }
+
+            @Override
+            public String getContentType() {
+                return "image/png";
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return bytes.length == 0;
+            }
+
+            @Override
+            public long getSize() {
+                return bytes.length;
+            }
+
+            @Override
+            public byte[] getBytes() throws IOException {
+                return Files.readAllBytes(spooled);
+            }
+
+            @Override
+            public InputStream getInputStream() throws IOException {
+                return Files.newInputStream(spooled);
+            }
+
+            @Override
+            public void transferTo(File dest) throws IOException {
+                Files.move(spooled, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        };
+    }
+
+    /**
+     * @return Bytes this process has passed to write calls so far, or -1 off Linux
+     */
+    private static long writtenBytes() throws IOException {
+        Path io = Path.of("/proc/self/io");
+        if (!Files.isReadable(io)) {
+            return -1;
+        }
+        for (String line : Files.readAllLines(io)) {
+            if (line.startsWith("wchar:")) {
+                return Long.parseLong(line.substring("wchar:".length()).trim());
+            }
+        }
+        return -1;
+    }
+}
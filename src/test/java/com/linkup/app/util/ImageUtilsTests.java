@@ -0,0 +1,56 @@
+package com.linkup.app.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageUtilsTests {
+
+    @TempDir
+    Path dir;
+
+    private final ImageUtils imageUtils = new ImageUtils();
+
+    @Test
+    void readsDimensionsAndColorGrid() throws Exception {
+        BufferedImage image = new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, 200, 200);
+        g.setColor(Color.BLUE);
+        g.fillRect(200, 0, 200, 200);
+        g.dispose();
+        Path file = dir.resolve("wide.png");
+        ImageIO.write(image, "png", file.toFile());
+
+        ImageMetadata metadata = imageUtils.readMetadata(file);
+
+        assertEquals(400, metadata.getWidth());
+        assertEquals(200, metadata.getHeight());
+        assertTrue(metadata.getPlaceholder().startsWith("4x2:"));
+        byte[] rgb = Base64.getUrlDecoder().decode(metadata.getPlaceholder().substring(4));
+        assertEquals(4 * 2 * 3, rgb.length);
+        // First cell red, last cell blue
+        assertEquals(255, rgb[0] & 0xff);
+        assertEquals(0, rgb[2] & 0xff);
+        assertEquals(255, rgb[rgb.length - 1] & 0xff);
+    }
+
+    @Test
+    void rejectsNonImages() throws Exception {
+        Path file = Files.writeString(dir.resolve("notes.png"), "not an image");
+        assertThrows(IOException.class, () -> imageUtils.readMetadata(file));
+    }
+}
@@ -0,0 +1,25 @@
+package com.linkup.app.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MediaUrlsTests {
+
+    private static final String HASH = "0123456789abcdef".repeat(4);
+
+    @Test
+    void blobNamesAndVariantsAreFingerprinted() {
+        assertEquals("/media/" + HASH + ".png", MediaUrls.of(HASH + ".png"));
+        assertEquals("/media/" + HASH + "_thumb.jpg", MediaUrls.of(HASH + "_thumb.jpg"));
+    }
+
+    @Test
+    void legacyNamesStayOnUploads() {
+        String legacy = "3f2504e0-4f89-11d3-9a0c-0305e82c3301.png";
+        assertEquals("/uploads/" + legacy, MediaUrls.of(legacy));
+        assertEquals("/uploads/" + HASH + "x.png", MediaUrls.of(HASH + "x.png"));
+        assertNull(MediaUrls.of(null));
+    }
+}
@@ -0,0 +1,139 @@
+package com.linkup.app.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VideoUtilsTests {
+
+    @TempDir
+    Path tempDir;
+
+    private final VideoUtils videoUtils = new VideoUtils();
+
+    @Test
+    void readsMetadataWhenMoovFollowsLargeMdat() throws IOException {
+        // 10 MB of media data before the movie header, as written by many phone cameras
+        Path file = writeMp4(10 * 1024 * 1024, 12_500);
+
+        VideoMetadata metadata = videoUtils.readMetadata(file);
+
+        assertEquals(12.5, metadata.getDurationSeconds(), 0.0001);
+        assertEquals(1280, metadata.getWidth());
+        assertEquals(720, metadata.getHeight());
+        assertEquals("avc1", metadata.getCodec());
+        assertEquals(13, videoUtils.getVideoDuration(file));
+    }
+
+    @Test
+    void enforcesMaximumDuration() throws IOException {
+        ReflectionTestUtils.setField(videoUtils, "maxVideoDurationSeconds", 30);
+
+        assertTrue(videoUtils.isVideoDurationValid(writeMp4(16, 30_000)));
+        assertFalse(videoUtils.isVideoDurationValid(writeMp4(16, 30_001)));
+    }
+
+    @Test
+    void rejectsFilesWithoutMovieHeader() throws IOException {
+        Path file = Files.write(tempDir.resolve("not-a-video.mp4"), "plain text".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IOException.class, () -> videoUtils.readMetadata(file));
+    }
+
+    @Test
+    void fragmentedFilesUseTheFragmentDurationOrAreRejected() throws IOException {
+        ReflectionTestUtils.setField(videoUtils, "maxVideoDurationSeconds", 30);
+
+        // mvhd duration unknown (all ones) or 0, length given by mehd
+        assertFalse(videoUtils.isVideoDurationValid(writeMp4(16, -1, 45_000)));
+        assertEquals(45.0, videoUtils.readMetadata(writeMp4(16, 0, 45_000)).getDurationSeconds(), 0.0001);
+        assertTrue(videoUtils.isVideoDurationValid(writeMp4(16, 0, 20_000)));
+
+        // No usable duration anywhere
+        assertThrows(IOException.class, () -> videoUtils.isVideoDurationValid(writeMp4(16, -1, null)));
+        assertThrows(IOException.class, () -> videoUtils.isVideoDurationValid(writeMp4(16, 0, null)));
+        assertThrows(IOException.class, () -> videoUtils.isVideoDurationValid(writeMp4(16, 0, -1)));
+    }
+
+    private Path writeMp4(int mdatBytes, int durationMillis) throws IOException {
+        return writeMp4(mdatBytes, durationMillis, null);
+    }
+
+    /**
+     * @param fragmentMillis mehd duration, or null for an unfragmented file
+     */
+    private Path writeMp4(int mdatBytes, int durationMillis, Integer fragmentMillis) throws IOException {
+        byte[] ftyp = box("ftyp", concat("isom".getBytes(StandardCharsets.ISO_8859_1), new byte[8]));
+
+        ByteBuffer mvhd = ByteBuffer.allocate(100);
+        mvhd.putInt(0);                 // version 0, flags
+        mvhd.putInt(0).putInt(0);       // creation, modification
+        mvhd.putInt(1000);              // timescale
+        mvhd.putInt(durationMillis);    // duration
+
+        ByteBuffer tkhd = ByteBuffer.allocate(84);
+        tkhd.position(76);
+        tkhd.putInt(1280 << 16).putInt(720 << 16);
+
+        ByteBuffer hdlr = ByteBuffer.allocate(24);
+        hdlr.position(8);
+        hdlr.put("vide".getBytes(StandardCharsets.ISO_8859_1));
+
+        ByteBuffer stsd = ByteBuffer.allocate(16);
+        stsd.putInt(0).putInt(1).putInt(86);
+        stsd.put("avc1".getBytes(StandardCharsets.ISO_8859_1));
+
+        byte[] stbl = box("stbl", box("stsd", stsd.array()));
+        byte[] mdia = box("mdia", concat(box("hdlr", hdlr.array()), box("minf", stbl)));
+        byte[] trak = box("trak", concat(box("tkhd", tkhd.array()), mdia));
+        byte[] mvex = new byte[0];
+        if (fragmentMillis != null) {
+            ByteBuffer mehd = ByteBuffer.allocate(8);
+            mehd.putInt(0);             // version 0, flags
+            mehd.putInt(fragmentMillis);
+            mvex = box("mvex", box("mehd", mehd.array()));
+        }
+        byte[] moov = box("moov", concat(box("mvhd", mvhd.array()), trak, mvex));
+
+        Path file = Files.createTempFile(tempDir, "video-", ".mp4");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(ftyp));
+            ByteBuffer mdatHeader = ByteBuffer.allocate(8).putInt(8 + mdatBytes)
+                    .put("mdat".getBytes(StandardCharsets.ISO_8859_1)).flip();
+            channel.write(mdatHeader);
+            // Sparse media payload: only the moov after it is written
+            channel.write(ByteBuffer.wrap(moov), ftyp.length + 8L + mdatBytes);
+        }
+        return file;
+    }
+
+    private byte[] box(String type, byte[] payload) {
+        return ByteBuffer.allocate(8 + payload.length)
+                .putInt(8 + payload.length)
+                .put(type.getBytes(StandardCharsets.ISO_8859_1))
+                .put(payload)
+                .array();
+    }
+
+    private byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}